@@ -0,0 +1,9 @@
+///usr/bin/env jbang "$0" "$@" ; exit $?
+
+class exit {
+
+	public static void main(String... args) {
+		System.out.print("exiting with " + args[0]);
+		System.exit(Integer.parseInt(args[0]));
+	}
+}
@@ -12,3 +12,13 @@ Scenario: as code option 3
   * command('jbang "--code=$(cat helloworld.java)" jbangtest')
   * match err == "[jbang] Building jar...\n"
   * match out == "Hello jbangtest\n"
+
+Scenario: in-process System.exit keeps output without newline
+  * command('jbang --in-process exit.java 3')
+  * match out == "exiting with 3"
+  * match exit == 3
+
+Scenario: in-process System.exit with 255 is not taken as a command line
+  * command('jbang --in-process exit.java 255')
+  * match out == "exiting with 255"
+  * match exit == 255
@@ -6,12 +6,14 @@ import java.nio.file.Path;
 
 import dev.jbang.cli.ExitException;
 import dev.jbang.net.JdkManager;
+import dev.jbang.util.JdkInfo;
+import dev.jbang.util.LockFile;
 import dev.jbang.util.Util;
 
 public class Cache {
 
 	public enum CacheClass {
-		urls, jars, jdks, kotlincs, groovycs, projects, scripts, stdins, deps
+		urls, jars, jdks, kotlincs, groovycs, projects, scripts, stdins, deps, aliases, scans, integrations
 	}
 
 	static void setupCache(Path dir) {
@@ -19,6 +21,31 @@ public class Cache {
 		dir.toFile().mkdirs();
 	}
 
+	/**
+	 * Acquires a lock, shared between all JBang processes, for the given item in
+	 * the given cache. It should be held while the item is being downloaded,
+	 * installed or otherwise written so that concurrent processes wait for the
+	 * result instead of doing the same work and racing each other.
+	 *
+	 * @param cclass The cache the item belongs to
+	 * @param item   The name of the item within the cache
+	 * @return A <code>LockFile</code> that must be closed to release the lock
+	 */
+	public static LockFile lock(CacheClass cclass, String item) {
+		return LockFile.acquire(Settings.getCacheDir(cclass).resolve(item + ".lock"));
+	}
+
+	/**
+	 * Acquires a lock, shared between all JBang processes, for the given file. The
+	 * lock file is created next to it.
+	 *
+	 * @param file The file to lock
+	 * @return A <code>LockFile</code> that must be closed to release the lock
+	 */
+	public static LockFile lock(Path file) {
+		return LockFile.acquire(file.resolveSibling(file.getFileName() + ".lock"));
+	}
+
 	public static void clearCache(CacheClass... classes) {
 		for (CacheClass cc : classes) {
 			Util.infoMsg("Clearing cache for " + cc.name());
@@ -29,6 +56,15 @@ public class Cache {
 					JdkManager.uninstallJdk(v);
 				}
 			}
+			if (cc == CacheClass.jdks) {
+				try {
+					Files.deleteIfExists(Settings.getCacheJdkFile());
+					JdkInfo.clearCache();
+				} catch (IOException io) {
+					throw new ExitException(-1, "Could not delete JDK cache " + Settings.getCacheJdkFile().toString(),
+							io);
+				}
+			}
 			if (cc == CacheClass.deps) {
 				try {
 					if (Settings.getCacheDependencyFile().toFile().exists()) {
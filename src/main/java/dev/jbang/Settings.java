@@ -3,6 +3,9 @@ package dev.jbang;
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import dev.jbang.catalog.Catalog;
 import dev.jbang.util.Util;
@@ -14,17 +17,30 @@ public class Settings {
 
 	public static final String TRUSTED_SOURCES_JSON = "trusted-sources.json";
 	public static final String DEPENDENCY_CACHE_JSON = "dependency_cache.json";
+	public static final String JDK_CACHE_JSON = "jdk_cache.json";
 	public static final String CURRENT_JDK = "currentjdk";
 	public static final String JBANG_DOT_DIR = ".jbang";
 	public static final String BIN_DIR = "bin";
 	public static final String EDITOR_DIR = "editor";
 
+	// The files that get looked for in the current folder, its parents and their
+	// .jbang folders, they are all found using a single directory scan
+	public static final List<String> LOCAL_FILES = Collections.unmodifiableList(
+			Arrays.asList(Configuration.JBANG_CONFIG_PROPS, Catalog.JBANG_CATALOG_JSON));
+
 	public static final String ENV_DEFAULT_JAVA_VERSION = "JBANG_DEFAULT_JAVA_VERSION";
 	public static final String ENV_NO_VERSION_CHECK = "JBANG_NO_VERSION_CHECK";
+	public static final String ENV_NO_JDK_DISCOVERY = "JBANG_NO_JDK_DISCOVERY";
+	public static final String ENV_NO_INPROCESS_COMPILE = "JBANG_NO_INPROCESS_COMPILE";
+	public static final String ENV_STDOUT = "JBANG_STDOUT";
 
 	public static final int DEFAULT_JAVA_VERSION = 11;
 	public static final int DEFAULT_ALPINE_JAVA_VERSION = 16;
 
+	public static final String CONFIG_CATALOG_CACHE_TTL = "catalog.cache-ttl";
+	public static final String CONFIG_JSH_COMPILE = "jsh.compile";
+	public static final long DEFAULT_CATALOG_CACHE_TTL = 24 * 60 * 60;
+
 	final public static String CP_SEPARATOR = File.pathSeparator;
 
 	public static Path getLocalMavenRepo() {
@@ -42,6 +58,10 @@ public class Settings {
 		return getCacheDir(true).resolve(DEPENDENCY_CACHE_JSON);
 	}
 
+	public static Path getCacheJdkFile() {
+		return getCacheDir(true).resolve(JDK_CACHE_JSON);
+	}
+
 	public static Path getConfigDir(boolean init) {
 		Path dir;
 		String jd = System.getenv(JBANG_DIR);
@@ -113,6 +133,32 @@ public class Settings {
 		}
 	}
 
+	/**
+	 * Returns the number of seconds a remote catalog can be used from the cache
+	 * before checking if it has changed. Can be set using the
+	 * <code>catalog.cache-ttl</code> configuration option.
+	 */
+	public static long getCatalogCacheTtl() {
+		String v = Configuration.instance().get(CONFIG_CATALOG_CACHE_TTL);
+		if (v != null) {
+			try {
+				return Long.parseLong(v.trim());
+			} catch (NumberFormatException ex) {
+				Util.warnMsg("Invalid value for " + CONFIG_CATALOG_CACHE_TTL + ": " + v);
+			}
+		}
+		return DEFAULT_CATALOG_CACHE_TTL;
+	}
+
+	/**
+	 * Determines if non-interactive <code>.jsh</code> scripts should be compiled
+	 * to a jar instead of being run by JShell. Can be enabled by setting the
+	 * <code>jsh.compile</code> configuration option to <code>true</code>.
+	 */
+	public static boolean isJshCompileEnabled() {
+		return Boolean.parseBoolean(Configuration.instance().get(CONFIG_JSH_COMPILE, "false"));
+	}
+
 	public static Path getTrustedSourcesFile() {
 		return getConfigDir().resolve(TRUSTED_SOURCES_JSON);
 	}
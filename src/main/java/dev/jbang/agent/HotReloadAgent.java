@@ -0,0 +1,107 @@
+package dev.jbang.agent;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.instrument.ClassDefinition;
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.Instrumentation;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Java agent that gets added to scripts run with <code>--hot-reload</code>. It
+ * connects back to the JBang process watching the script and waits for it to
+ * send the classes that changed, which then get redefined in place. Changed
+ * classes that haven't been loaded yet are replaced when they do get loaded.
+ * The result of each request is sent back, an empty string meaning success
+ * and anything else being the reason the classes could not be redefined, in
+ * which case JBang will restart the script instead.
+ *
+ * This class gets copied into a separate agent jar, so it must not use
+ * anything but the JDK's own classes.
+ */
+public class HotReloadAgent implements ClassFileTransformer {
+	// Classes that were redefined, keyed by their internal name
+	private final Map<String, byte[]> replaced = new ConcurrentHashMap<>();
+	private final Instrumentation inst;
+
+	private HotReloadAgent(Instrumentation inst) {
+		this.inst = inst;
+	}
+
+	/**
+	 * @param args The port to connect to and a token identifying this process,
+	 *             separated by a colon
+	 */
+	public static void premain(String args, Instrumentation inst) {
+		String[] parts = args.split(":", 2);
+		int port = Integer.parseInt(parts[0]);
+		String token = parts.length > 1 ? parts[1] : "";
+		HotReloadAgent agent = new HotReloadAgent(inst);
+		inst.addTransformer(agent);
+		Thread t = new Thread(() -> agent.listen(port, token), "jbang-hot-reload");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private void listen(int port, String token) {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+				DataInputStream in = new DataInputStream(socket.getInputStream());
+				DataOutputStream out = new DataOutputStream(socket.getOutputStream())) {
+			out.writeUTF(token);
+			out.flush();
+			while (true) {
+				int count = in.readInt();
+				Map<String, byte[]> classes = new HashMap<>();
+				for (int i = 0; i < count; i++) {
+					String name = in.readUTF();
+					byte[] bytes = new byte[in.readInt()];
+					in.readFully(bytes);
+					classes.put(name, bytes);
+				}
+				String error = redefine(classes);
+				out.writeUTF(error != null ? error : "");
+				out.flush();
+			}
+		} catch (EOFException e) {
+			// JBang went away
+		} catch (IOException e) {
+			System.err.println("[jbang] Hot reload disabled: " + e);
+		}
+	}
+
+	private String redefine(Map<String, byte[]> classes) {
+		List<ClassDefinition> defs = new ArrayList<>();
+		for (Class<?> cls : inst.getAllLoadedClasses()) {
+			byte[] bytes = classes.get(cls.getName().replace('.', '/'));
+			if (bytes != null && inst.isModifiableClass(cls)) {
+				defs.add(new ClassDefinition(cls, bytes));
+			}
+		}
+		try {
+			inst.redefineClasses(defs.toArray(new ClassDefinition[0]));
+		} catch (Exception | LinkageError e) {
+			return e.toString();
+		}
+		replaced.putAll(classes);
+		return null;
+	}
+
+	@Override
+	public byte[] transform(ClassLoader loader, String className, Class<?> classBeingRedefined,
+			ProtectionDomain protectionDomain, byte[] classfileBuffer) {
+		if (classBeingRedefined == null && className != null) {
+			// the class on the class path is outdated
+			return replaced.get(className);
+		}
+		return null;
+	}
+}
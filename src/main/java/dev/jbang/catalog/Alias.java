@@ -79,10 +79,24 @@ public class Alias extends CatalogItem {
 	 * @return An Alias object or null if no alias was found
 	 */
 	public static Alias get(String aliasName) {
+		Path cwd = Util.getCwd();
+		if (!Util.isFresh()) {
+			Alias indexed = AliasIndex.get(cwd, aliasName);
+			if (indexed != null) {
+				return indexed;
+			}
+		}
 		HashSet<String> names = new HashSet<>();
 		Alias alias = new Alias();
 		Alias result = merge(alias, aliasName, Alias::getLocal, names);
-		return result.scriptRef != null ? result : null;
+		if (result.scriptRef == null) {
+			return null;
+		}
+		if (names.stream().noneMatch(n -> n.contains("@"))) {
+			// Only aliases from local catalogs can be indexed
+			AliasIndex.put(cwd, aliasName, result);
+		}
+		return result;
 	}
 
 	/**
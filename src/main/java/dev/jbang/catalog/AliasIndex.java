@@ -0,0 +1,177 @@
+package dev.jbang.catalog;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+import dev.jbang.source.ResourceRef;
+import dev.jbang.util.DirectoryScan;
+import dev.jbang.util.Util;
+
+/**
+ * An index of fully resolved aliases for a particular working directory. Looking
+ * up an alias normally means walking up the directory tree and parsing every
+ * catalog that's found on the way. The index stores the result of such a lookup
+ * together with the modification times of all the catalog files that could have
+ * been involved, so as long as none of them were added, changed or removed the
+ * next lookup only needs to read the index. Which catalog files exist is
+ * determined using a (cached) <code>DirectoryScan</code>.
+ *
+ * Only aliases that are resolved using local catalogs are indexed, aliases that
+ * refer to registered or remote catalogs are always looked up the normal way.
+ */
+class AliasIndex {
+	// File modifications that are this recent can't be reliably detected
+	// using timestamps, so in that case we don't update the index
+	private static final long RACY_INTERVAL = 2000;
+
+	Map<String, Long> stamps = new LinkedHashMap<>();
+	Map<String, IndexedAlias> aliases = new HashMap<>();
+
+	static class IndexedAlias {
+		Alias alias;
+		String catalogFile;
+		String catalogResource;
+		String catalogBaseRef;
+		boolean builtin;
+	}
+
+	/**
+	 * Returns the indexed alias with the given name for the given directory
+	 *
+	 * @param dir       The directory where the alias lookup starts
+	 * @param aliasName The name of an Alias
+	 * @return An Alias object or null if the alias isn't in the index or if the
+	 *         index is out-of-date
+	 */
+	static Alias get(Path dir, String aliasName) {
+		AliasIndex index = read(dir);
+		if (index == null || !index.stamps.equals(getStamps(dir))) {
+			return null;
+		}
+		IndexedAlias ia = index.aliases.get(aliasName);
+		if (ia == null || ia.alias == null) {
+			return null;
+		}
+		Util.verboseMsg("Found alias '" + aliasName + "' in alias index");
+		Catalog catalog;
+		if (ia.builtin) {
+			catalog = Catalog.getBuiltin();
+		} else {
+			ResourceRef ref = ResourceRef.forNamedFile(ia.catalogResource, Paths.get(ia.catalogFile));
+			catalog = new Catalog(ia.catalogBaseRef, null, ref, Collections.emptyMap(), Collections.emptyMap(),
+					Collections.emptyMap());
+		}
+		Alias a = ia.alias;
+		return new Alias(a.scriptRef, a.description, a.arguments, a.javaOptions, a.sources, a.resources,
+				a.dependencies, a.repositories, a.classpaths, a.properties, a.javaVersion, a.mainClass, catalog);
+	}
+
+	/**
+	 * Adds the given fully resolved alias to the index for the given directory.
+	 * Any out-of-date information in the index will be discarded.
+	 *
+	 * @param dir       The directory where the alias lookup started
+	 * @param aliasName The name of the Alias
+	 * @param alias     The resolved Alias
+	 */
+	static void put(Path dir, String aliasName, Alias alias) {
+		Map<String, Long> stamps = getStamps(dir);
+		long now = System.currentTimeMillis();
+		if (stamps.values().stream().anyMatch(t -> t > now - RACY_INTERVAL)) {
+			return;
+		}
+		if (alias.catalog == null || alias.catalog.catalogRef == null) {
+			return;
+		}
+		IndexedAlias ia = new IndexedAlias();
+		ia.alias = alias;
+		ia.builtin = alias.catalog.catalogRef.isClasspath();
+		if (!ia.builtin) {
+			if (alias.catalog.catalogRef.getFile() == null) {
+				return;
+			}
+			ia.catalogFile = alias.catalog.catalogRef.getFile().toString();
+			ia.catalogResource = alias.catalog.catalogRef.getOriginalResource();
+			ia.catalogBaseRef = alias.catalog.baseRef;
+		}
+
+		AliasIndex index = read(dir);
+		if (index == null || !index.stamps.equals(stamps)) {
+			index = new AliasIndex();
+			index.stamps = stamps;
+		}
+		index.aliases.put(aliasName, ia);
+		write(dir, index);
+	}
+
+	// Returns the modification times of all the catalog files that
+	// could be involved in an alias lookup starting at the given folder
+	private static Map<String, Long> getStamps(Path dir) {
+		Map<String, Long> stamps = new LinkedHashMap<>();
+		for (Path catalogFile : DirectoryScan.findAll(dir, Catalog.JBANG_CATALOG_JSON, Settings.LOCAL_FILES)) {
+			addStamp(stamps, catalogFile);
+		}
+		addStamp(stamps, Settings.getUserCatalogFile());
+		addStamp(stamps, Settings.getUserImplicitCatalogFile());
+		return stamps;
+	}
+
+	private static void addStamp(Map<String, Long> stamps, Path file) {
+		long mtime;
+		try {
+			mtime = Files.getLastModifiedTime(file).toMillis();
+		} catch (NoSuchFileException e) {
+			mtime = -1;
+		} catch (IOException e) {
+			// Make sure the index will never validate
+			mtime = Long.MAX_VALUE;
+		}
+		stamps.put(file.toString(), mtime);
+	}
+
+	private static Path getIndexFile(Path dir) {
+		return Settings	.getCacheDir(Cache.CacheClass.aliases)
+						.resolve(Util.getStableID(dir.toAbsolutePath().toString()) + ".json");
+	}
+
+	private static AliasIndex read(Path dir) {
+		Path indexFile = getIndexFile(dir);
+		if (Files.isRegularFile(indexFile)) {
+			try (Reader in = Files.newBufferedReader(indexFile)) {
+				return new Gson().fromJson(in, AliasIndex.class);
+			} catch (IOException | JsonParseException e) {
+				Util.verboseMsg("Unable to read alias index " + indexFile, e);
+			}
+		}
+		return null;
+	}
+
+	private static void write(Path dir, AliasIndex index) {
+		Path indexFile = getIndexFile(dir);
+		try {
+			Files.createDirectories(indexFile.getParent());
+			Path tmpFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+			try (Writer out = Files.newBufferedWriter(tmpFile)) {
+				new Gson().toJson(index, out);
+			}
+			Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to write alias index " + indexFile, e);
+		}
+	}
+}
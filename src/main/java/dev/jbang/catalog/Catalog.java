@@ -14,6 +14,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 
 import com.google.gson.Gson;
@@ -30,7 +34,7 @@ public class Catalog {
 	public static final String JBANG_CATALOG_JSON = "jbang-catalog.json";
 	public static final String JBANG_IMPLICIT_CATALOG_JSON = "implicit-catalog.json";
 
-	static final Map<String, Catalog> catalogCache = new HashMap<>();
+	static final Map<String, Catalog> catalogCache = new ConcurrentHashMap<>();
 
 	static final String JBANG_CATALOG_REPO = "jbang-catalog";
 
@@ -39,6 +43,8 @@ public class Catalog {
 
 	private static final String CACHE_BUILTIN = ":::BUILTIN:::";
 
+	private static final int MAX_PARALLEL_FETCHES = 8;
+
 	public Map<String, CatalogRef> catalogs = new HashMap<>();
 	public Map<String, Alias> aliases = new HashMap<>();
 	public Map<String, Template> templates = new HashMap<>();
@@ -189,7 +195,9 @@ public class Catalog {
 		}
 		Path catalogPath = null;
 		try {
-			Catalog catalog = get(ResourceRef.forResource(catalogRef));
+			ResourceRef ref = Util.isRemoteRef(catalogRef) ? fetchRemote(catalogRef)
+					: ResourceRef.forResource(catalogRef);
+			Catalog catalog = get(ref);
 			if (catalog == null) {
 				throw new ExitException(EXIT_UNEXPECTED_STATE,
 						"Unable to download catalog: " + catalogRef);
@@ -216,6 +224,18 @@ public class Catalog {
 		}
 	}
 
+	// Remote catalogs are kept in the cache for a limited time only,
+	// after which we check with the server if they have changed
+	private static ResourceRef fetchRemote(String catalogRef) {
+		try {
+			String url = Util.swizzleURL(catalogRef);
+			Path path = Util.downloadAndCacheFile(url, Settings.getCatalogCacheTtl());
+			return ResourceRef.forCachedResource(catalogRef, path);
+		} catch (IOException e) {
+			throw new ExitException(EXIT_INVALID_INPUT, "Could not download " + catalogRef, e);
+		}
+	}
+
 	/**
 	 * Returns a Catalog containing all the aliases from local catalog files merged
 	 * into one. This follows the system where aliases that are "nearest" have
@@ -232,24 +252,55 @@ public class Catalog {
 			return false;
 		});
 
-		Catalog result = Catalog.empty();
-		for (Catalog catalog : catalogs) {
-			if (!includeImplicits
-					&& catalog.catalogRef.getFile().equals(Settings.getUserImplicitCatalogFile())) {
-				continue;
-			}
-			merge(catalog, result);
+		if (!includeImplicits) {
+			catalogs.removeIf(cat -> cat.catalogRef.getFile().equals(Settings.getUserImplicitCatalogFile()));
 		}
 
-		return result;
+		// Fetch all referenced catalogs concurrently, the merging itself
+		// must still be done in order of priority
+		List<CatalogRef> refs = new ArrayList<>();
+		catalogs.forEach(cat -> refs.addAll(cat.catalogs.values()));
+		Map<String, CompletableFuture<Catalog>> fetched = new HashMap<>();
+		ExecutorService executor = null;
+		if (refs.size() > 1) {
+			executor = Executors.newFixedThreadPool(Math.min(refs.size(), MAX_PARALLEL_FETCHES));
+		}
+		try {
+			for (CatalogRef ref : refs) {
+				if (!fetched.containsKey(ref.catalogRef)) {
+					CompletableFuture<Catalog> f;
+					if (executor != null) {
+						f = CompletableFuture.supplyAsync(() -> getByRef(ref.catalogRef), executor);
+					} else {
+						f = new CompletableFuture<>();
+						try {
+							f.complete(getByRef(ref.catalogRef));
+						} catch (Exception ex) {
+							f.completeExceptionally(ex);
+						}
+					}
+					fetched.put(ref.catalogRef, f);
+				}
+			}
+
+			Catalog result = Catalog.empty();
+			for (Catalog catalog : catalogs) {
+				merge(catalog, result, fetched);
+			}
+			return result;
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
 	}
 
-	private static void merge(Catalog catalog, Catalog result) {
+	private static void merge(Catalog catalog, Catalog result, Map<String, CompletableFuture<Catalog>> fetched) {
 		// Merge the aliases and templates of the catalog refs
 		// into the current catalog
 		for (CatalogRef ref : catalog.catalogs.values()) {
 			try {
-				Catalog cat = getByRef(ref.catalogRef);
+				Catalog cat = fetched.get(ref.catalogRef).join();
 				result.aliases.putAll(cat.aliases);
 				result.templates.putAll(cat.templates);
 			} catch (Exception ex) {
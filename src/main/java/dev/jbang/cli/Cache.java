@@ -30,6 +30,12 @@ public class Cache {
 					"--script" }, description = "clear script cache only", negatable = true) Boolean scripts,
 			@CommandLine.Option(names = {
 					"--stdin" }, description = "clear stdin cache only", negatable = true) Boolean stdins,
+			@CommandLine.Option(names = {
+					"--alias" }, description = "clear alias index cache only", negatable = true) Boolean aliases,
+			@CommandLine.Option(names = {
+					"--scan" }, description = "clear directory scan cache only", negatable = true) Boolean scans,
+			@CommandLine.Option(names = {
+					"--integration" }, description = "clear integration cache only", negatable = true) Boolean integrations,
 			@CommandLine.Option(names = { "--all" }, description = "clear all caches") boolean all) {
 		EnumSet<dev.jbang.Cache.CacheClass> classes = EnumSet.noneOf(dev.jbang.Cache.CacheClass.class);
 
@@ -44,7 +50,10 @@ public class Cache {
 				&& projects == null
 				&& scripts == null
 				&& stdins == null
-				&& deps == null) {
+				&& deps == null
+				&& aliases == null
+				&& scans == null
+				&& integrations == null) {
 			// add the default (safe) set
 			classes.add(dev.jbang.Cache.CacheClass.urls);
 			classes.add(dev.jbang.Cache.CacheClass.jars);
@@ -53,6 +62,9 @@ public class Cache {
 			classes.add(dev.jbang.Cache.CacheClass.scripts);
 			classes.add(dev.jbang.Cache.CacheClass.stdins);
 			classes.add(dev.jbang.Cache.CacheClass.deps);
+			classes.add(dev.jbang.Cache.CacheClass.aliases);
+			classes.add(dev.jbang.Cache.CacheClass.scans);
+			classes.add(dev.jbang.Cache.CacheClass.integrations);
 		}
 
 		// we only toggle on or off those that are actually present
@@ -65,6 +77,9 @@ public class Cache {
 		toggleCache(projects, dev.jbang.Cache.CacheClass.projects, classes);
 		toggleCache(scripts, dev.jbang.Cache.CacheClass.scripts, classes);
 		toggleCache(stdins, dev.jbang.Cache.CacheClass.stdins, classes);
+		toggleCache(aliases, dev.jbang.Cache.CacheClass.aliases, classes);
+		toggleCache(scans, dev.jbang.Cache.CacheClass.scans, classes);
+		toggleCache(integrations, dev.jbang.Cache.CacheClass.integrations, classes);
 
 		dev.jbang.Cache.CacheClass[] ccs = classes.toArray(new dev.jbang.Cache.CacheClass[0]);
 		dev.jbang.Cache.clearCache(ccs);
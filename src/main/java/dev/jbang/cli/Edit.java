@@ -7,15 +7,9 @@ import static java.lang.System.out;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
-import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardWatchEventKinds;
-import java.nio.file.WatchEvent;
-import java.nio.file.WatchKey;
-import java.nio.file.WatchService;
 import java.util.*;
-import java.util.concurrent.Callable;
 import java.util.stream.Collectors;
 
 import dev.jbang.Cache;
@@ -60,12 +54,15 @@ public class Edit extends BaseCommand {
 		scriptMixin.validate();
 
 		RunContext ctx = getRunContext();
-		final Project prj = ctx.forResource(scriptMixin.scriptOrFile);
+		Project prj = ctx.forResource(scriptMixin.scriptOrFile);
 
 		if (prj.isJar() || prj.getMainSourceSet().getSources().isEmpty()) {
 			throw new ExitException(EXIT_INVALID_INPUT, "You can only edit source files");
 		}
 
+		// Must be determined before creating the project because that might
+		// add default repositories to it
+		ProjectWatcher.State state = new ProjectWatcher.State(prj);
 		Path project = createProjectForLinkedEdit(prj, ctx, false);
 		String projectPathString = Util.pathToString(project.toAbsolutePath());
 		// err.println(project.getAbsolutePath());
@@ -77,56 +74,36 @@ public class Edit extends BaseCommand {
 		if (!live) {
 			out.println(projectPathString); // quit(project.getAbsolutePath());
 		} else {
-			watchForChanges(prj, () -> {
-				// TODO only regenerate when dependencies changes.
-				info("Regenerating project.");
-				try {
-					createProjectForLinkedEdit(prj, RunContext.empty(), true);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
-				}
-				return null;
-			});
+			watchForChanges(prj, state);
 		}
 		return EXIT_OK;
 	}
 
-	private void watchForChanges(Code code, Callable<Object> action) throws IOException {
-		try (final WatchService watchService = FileSystems.getDefault().newWatchService()) {
-			Path orginalFile = code.getResourceRef().getFile();
-			if (!Files.exists(orginalFile)) {
-				throw new ExitException(EXIT_UNEXPECTED_STATE,
-						"Cannot live edit " + code.getResourceRef().getOriginalResource());
-			}
-			Path watched = orginalFile.toAbsolutePath().getParent();
-			watched.register(watchService,
-					StandardWatchEventKinds.ENTRY_MODIFY);
-			info("Watching for changes in " + watched);
+	private void watchForChanges(Code code, ProjectWatcher.State state) throws IOException {
+		Path orginalFile = code.getResourceRef().getFile();
+		if (!Files.exists(orginalFile)) {
+			throw new ExitException(EXIT_UNEXPECTED_STATE,
+					"Cannot live edit " + code.getResourceRef().getOriginalResource());
+		}
+		try (ProjectWatcher watcher = new ProjectWatcher()) {
+			watcher.watch(state.files);
 			while (true) {
-				final WatchKey wk = watchService.take();
-				for (WatchEvent<?> event : wk.pollEvents()) {
-					// we only register "ENTRY_MODIFY" so the context is always a Path.
-					// but relative to the watched directory
-					final Path changed = watched.resolve((Path) event.context());
-					verboseMsg("Changed file: " + changed.toString());
-					if (Files.isSameFile(orginalFile, changed)) {
-						try {
-							action.call();
-						} catch (RuntimeException ee) {
-							warn("Error when re-generating project. Ignoring it, but state might be undefined: "
-									+ ee.getMessage());
-						} catch (IOException ioe) {
-							throw ioe;
-						} catch (Exception e) {
-							throw new ExitException(EXIT_GENERIC_ERROR, "Exception when re-generating project. Exiting",
-									e);
-						}
+				watcher.awaitChanges();
+				try {
+					RunContext ctx = getRunContext();
+					Project prj = ctx.forResource(scriptMixin.scriptOrFile);
+					ProjectWatcher.State newState = new ProjectWatcher.State(prj);
+					if (newState.equals(state)) {
+						verboseMsg("Dependencies, repositories, sources and files unchanged, not regenerating project");
+					} else {
+						info("Regenerating project.");
+						createProjectForLinkedEdit(prj, ctx, true);
 					}
-				}
-				// reset the key
-				boolean valid = wk.reset();
-				if (!valid) {
-					warn("edit-live file watch key no longer valid!");
+					state = newState;
+					watcher.watch(state.files);
+				} catch (RuntimeException ee) {
+					warn("Error when re-generating project. Ignoring it, but state might be undefined: "
+							+ ee.getMessage());
 				}
 			}
 		} catch (InterruptedException e) {
@@ -3,23 +3,43 @@ package dev.jbang.cli;
 import static dev.jbang.source.builders.BaseBuilder.getImageName;
 import static dev.jbang.util.JavaUtil.resolveInJavaHome;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.Attributes;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.jboss.shrinkwrap.resolver.api.maven.coordinate.MavenCoordinate;
 
 import dev.jbang.Settings;
 import dev.jbang.dependencies.ArtifactInfo;
 import dev.jbang.dependencies.DependencyUtil;
+import dev.jbang.net.JdkManager;
 import dev.jbang.source.Code;
 import dev.jbang.source.RunContext;
+import dev.jbang.util.CommandBuffer;
+import dev.jbang.util.JarMerger;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.OciImageWriter;
 import dev.jbang.util.TemplateEngine;
 import dev.jbang.util.Util;
 
@@ -28,7 +48,8 @@ import picocli.CommandLine;
 import picocli.CommandLine.Command;
 
 @Command(name = "export", description = "Export the result of a build.", subcommands = { ExportPortable.class,
-		ExportLocal.class, ExportMavenPublish.class, ExportNative.class })
+		ExportLocal.class, ExportMavenPublish.class, ExportNative.class, ExportFatjar.class,
+		ExportJlink.class, ExportImage.class })
 public class Export {
 }
 
@@ -138,6 +159,11 @@ class ExportLocal extends BaseExportCommand {
 class ExportPortable extends BaseExportCommand {
 
 	public static final String LIB = "lib";
+	private static final int MAX_PARALLEL_COPIES = 4;
+
+	@CommandLine.Option(names = {
+			"--link" }, description = "Clone or hard link the dependencies into the lib folder instead of copying them, where the file system supports it. Hard linked files share their contents with the local Maven repository.")
+	boolean link;
 
 	@Override
 	int apply(Code code, RunContext ctx) throws IOException {
@@ -160,10 +186,12 @@ class ExportPortable extends BaseExportCommand {
 			Path libDir = outputPath.getParent().resolve(LIB);
 			Util.mkdirs(libDir);
 			StringBuilder newPath = new StringBuilder();
+			List<Path> files = new ArrayList<>();
 			for (ArtifactInfo dep : deps) {
-				Files.copy(dep.getFile(), libDir.resolve(dep.getFile().getFileName()));
+				files.add(dep.getFile());
 				newPath.append(" " + LIB + "/" + dep.getFile().getFileName());
 			}
+			exportDependencies(files, libDir);
 
 			Path tempManifest = createManifest(newPath.toString());
 
@@ -175,6 +203,91 @@ class ExportPortable extends BaseExportCommand {
 		Util.infoMsg("Exported to " + outputPath);
 		return EXIT_OK;
 	}
+
+	private void exportDependencies(List<Path> files, Path libDir) throws IOException {
+		for (Path file : files) {
+			Files.deleteIfExists(libDir.resolve(file.getFileName()));
+		}
+		List<Path> remaining = files;
+		if (link) {
+			remaining = cloneFiles(remaining, libDir);
+			remaining = linkFiles(remaining, libDir);
+			Util.verboseMsg("Linked " + (files.size() - remaining.size()) + " of " + files.size() + " dependencies");
+		}
+		copyFiles(remaining, libDir);
+	}
+
+	// Creates copy-on-write clones of the files, which only works on file
+	// systems that support it (like Btrfs, XFS or APFS). Returns the files
+	// that could not be cloned.
+	private static List<Path> cloneFiles(List<Path> files, Path libDir) throws IOException {
+		List<String> cmd = new ArrayList<>();
+		if (Util.getOS() == Util.OS.linux) {
+			cmd.add("cp");
+			cmd.add("--reflink=always");
+		} else if (Util.isMac()) {
+			cmd.add("cp");
+			cmd.add("-c");
+		} else {
+			return files;
+		}
+		files.forEach(f -> cmd.add(f.toString()));
+		cmd.add(libDir.toString());
+		Util.verboseMsg(String.join(" ", cmd));
+		if (Util.runCommand(cmd.toArray(new String[0])) == null) {
+			Util.verboseMsg("Cloning failed for some or all dependencies");
+		}
+		// a failed clone can leave an incomplete file behind
+		List<Path> remaining = new ArrayList<>();
+		for (Path file : files) {
+			Path target = libDir.resolve(file.getFileName());
+			if (!Files.isRegularFile(target) || Files.size(target) != Files.size(file)) {
+				Files.deleteIfExists(target);
+				remaining.add(file);
+			}
+		}
+		return remaining;
+	}
+
+	// Hard links only work when the files are on the same file system as
+	// the lib folder. Returns the files that could not be linked.
+	private static List<Path> linkFiles(List<Path> files, Path libDir) {
+		List<Path> remaining = new ArrayList<>();
+		for (Path file : files) {
+			try {
+				Files.createLink(libDir.resolve(file.getFileName()), file);
+			} catch (IOException | UnsupportedOperationException e) {
+				Util.verboseMsg("Hard linking " + file + " failed: " + e);
+				remaining.add(file);
+			}
+		}
+		return remaining;
+	}
+
+	private static void copyFiles(List<Path> files, Path libDir) throws IOException {
+		if (files.isEmpty()) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(files.size(), MAX_PARALLEL_COPIES));
+		try {
+			List<Future<Path>> copies = new ArrayList<>();
+			for (Path file : files) {
+				copies.add(executor.submit(() -> Files.copy(file, libDir.resolve(file.getFileName()))));
+			}
+			for (Future<Path> copy : copies) {
+				copy.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new ExitException(EXIT_GENERIC_ERROR, e.getCause());
+		} catch (InterruptedException e) {
+			throw new ExitException(EXIT_GENERIC_ERROR, e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 }
 
 @Command(name = "mavenrepo", description = "Exports directory that can be used to publish as a maven repository")
@@ -316,3 +429,324 @@ class ExportNative extends BaseExportCommand {
 		return ctx;
 	}
 }
+
+@Command(name = "fatjar", description = "Exports an executable jar with all dependencies included")
+class ExportFatjar extends BaseExportCommand {
+
+	@Override
+	int apply(Code code, RunContext ctx) throws IOException {
+		Path outputPath = exportMixin.getJarOutputPath();
+		if (outputPath.toFile().exists()) {
+			if (exportMixin.force) {
+				outputPath.toFile().delete();
+			} else {
+				Util.warnMsg("Cannot export as " + outputPath + " already exists. Use --force to overwrite.");
+				return EXIT_INVALID_INPUT;
+			}
+		}
+
+		// The application's own jar goes first so its manifest and entries
+		// take precedence over those of its dependencies
+		List<Path> jars = new ArrayList<>();
+		jars.add(code.getJarFile());
+		for (ArtifactInfo dep : ctx.resolveClassPath(code).getArtifacts()) {
+			if (!Files.isRegularFile(dep.getFile())) {
+				Util.warnMsg("Cannot export as " + dep.getFile() + " is not a jar file.");
+				return EXIT_INVALID_INPUT;
+			}
+			jars.add(dep.getFile());
+		}
+		Util.infoMsg("Merging " + jars.size() + " jar(s)");
+		JarMerger.merge(outputPath, jars);
+
+		Util.infoMsg("Exported to " + outputPath);
+		return EXIT_OK;
+	}
+}
+
+@Command(name = "jlink", description = "Exports a minimal Java runtime image containing the application and a launcher")
+class ExportJlink extends BaseExportCommand {
+
+	public static final String APP = "app";
+
+	@CommandLine.Option(names = {
+			"--add-modules" }, split = ",", description = "Additional JDK modules to include in the runtime, for those only used through reflection or service loading")
+	List<String> addModules;
+
+	@CommandLine.Option(names = {
+			"--cds" }, description = "Generate a default class data sharing archive for the runtime to improve startup time")
+	boolean cds;
+
+	@Override
+	int apply(Code code, RunContext ctx) throws IOException {
+		Path outputPath = exportMixin.getOutputPath();
+		if (outputPath.toFile().exists()) {
+			if (exportMixin.force) {
+				Util.deletePath(outputPath, false);
+			} else {
+				Util.warnMsg("Cannot export as " + outputPath + " already exists. Use --force to overwrite.");
+				return EXIT_INVALID_INPUT;
+			}
+		}
+		String mainClass = ctx.getMainClassOr(code);
+		if (mainClass == null) {
+			Util.warnMsg("Cannot export as no main class was found. Add --main=<class> and run again.");
+			return EXIT_INVALID_INPUT;
+		}
+		String javaVersion = exportMixin.buildMixin.javaVersion != null
+				? exportMixin.buildMixin.javaVersion
+				: code.getJavaVersion();
+		int version = JavaUtil.javaVersion(javaVersion);
+		if (version < 11) {
+			Util.warnMsg("Cannot export a runtime image for Java " + version + ", Java 11 or newer is required.");
+			return EXIT_INVALID_INPUT;
+		}
+
+		List<Path> deps = new ArrayList<>();
+		for (ArtifactInfo dep : ctx.resolveClassPath(code).getArtifacts()) {
+			deps.add(dep.getFile());
+		}
+		Set<String> modules = findModules(code.getJarFile(), deps, version, javaVersion);
+		if (addModules != null) {
+			modules.addAll(addModules);
+		}
+
+		Util.infoMsg("Creating runtime image with modules " + String.join(",", modules));
+		List<String> jlinkCmd = new ArrayList<>();
+		jlinkCmd.add(resolveInJavaHome("jlink", javaVersion));
+		jlinkCmd.add("--add-modules");
+		jlinkCmd.add(String.join(",", modules));
+		jlinkCmd.add("--strip-debug");
+		jlinkCmd.add("--no-header-files");
+		jlinkCmd.add("--no-man-pages");
+		jlinkCmd.add("--output");
+		jlinkCmd.add(outputPath.toString());
+		runTool("jlink", jlinkCmd);
+
+		// Copy the application into the image
+		Path appDir = outputPath.resolve(APP);
+		Path libDir = appDir.resolve(ExportPortable.LIB);
+		Util.mkdirs(libDir);
+		String jarName = outputPath.getFileName() + ".jar";
+		Files.copy(code.getJarFile(), appDir.resolve(jarName));
+		for (Path dep : deps) {
+			Files.copy(dep, libDir.resolve(dep.getFileName()));
+		}
+		createLauncher(outputPath, jarName, mainClass, ctx.getRuntimeOptionsMerged(code));
+
+		if (cds) {
+			Util.infoMsg("Generating class data sharing archive");
+			List<String> dumpCmd = new ArrayList<>();
+			dumpCmd.add(outputPath.resolve("bin").resolve(Util.isWindows() ? "java.exe" : "java").toString());
+			dumpCmd.add("-Xshare:dump");
+			runTool("java -Xshare:dump", dumpCmd);
+		}
+
+		Util.infoMsg("Exported to " + outputPath);
+		return EXIT_OK;
+	}
+
+	// Uses jdeps to determine the JDK modules needed by the application
+	// and its dependencies
+	private static Set<String> findModules(Path jar, List<Path> deps, int version, String javaVersion)
+			throws IOException {
+		List<String> cmd = new ArrayList<>();
+		cmd.add(resolveInJavaHome("jdeps", javaVersion));
+		cmd.add("--ignore-missing-deps");
+		cmd.add("-q");
+		cmd.add("--print-module-deps");
+		cmd.add("--multi-release");
+		cmd.add(Integer.toString(version));
+		if (!deps.isEmpty()) {
+			cmd.add("--class-path");
+			cmd.add(deps.stream().map(Path::toString).collect(Collectors.joining(Settings.CP_SEPARATOR)));
+		}
+		cmd.add(jar.toString());
+		deps.forEach(dep -> cmd.add(dep.toString()));
+		String output = runTool("jdeps", cmd);
+
+		// The modules are listed on the last line, anything before it are warnings
+		String[] lines = output.trim().split("\\r?\\n");
+		Set<String> modules = new TreeSet<>();
+		for (String module : lines[lines.length - 1].split(",")) {
+			if (!module.trim().isEmpty()) {
+				modules.add(module.trim());
+			}
+		}
+		if (modules.isEmpty()) {
+			modules.add("java.base");
+		}
+		return modules;
+	}
+
+	private static void createLauncher(Path outputPath, String jarName, String mainClass, List<String> javaOptions)
+			throws IOException {
+		Path binDir = outputPath.resolve("bin");
+		String name = outputPath.getFileName().toString();
+		if (Util.isWindows()) {
+			String opts = CommandBuffer.of(javaOptions).asCommandLine(Util.Shell.cmd);
+			List<String> lines = Arrays.asList(
+					"@echo off",
+					"\"%~dp0java.exe\" " + (opts.isEmpty() ? "" : opts + " ") + "-cp \"%~dp0..\\" + APP + "\\"
+							+ jarName + ";%~dp0..\\" + APP + "\\" + ExportPortable.LIB + "\\*\" " + mainClass
+							+ " %*");
+			Files.write(binDir.resolve(name + ".cmd"), lines);
+		} else {
+			String opts = CommandBuffer.of(javaOptions).asCommandLine(Util.Shell.bash);
+			List<String> lines = Arrays.asList(
+					"#!/bin/sh",
+					"DIR=\"$(cd \"$(dirname \"$0\")/..\" && pwd)\"",
+					"exec \"$DIR/bin/java\" " + (opts.isEmpty() ? "" : opts + " ") + "-cp \"$DIR/" + APP + "/"
+							+ jarName + ":$DIR/" + APP + "/" + ExportPortable.LIB + "/*\" " + mainClass + " \"$@\"");
+			Path launcher = binDir.resolve(name);
+			Files.write(launcher, lines);
+			if (!launcher.toFile().setExecutable(true)) {
+				Util.warnMsg("Could not make " + launcher + " executable");
+			}
+		}
+	}
+
+	// Runs the given tool, returning its output
+	private static String runTool(String name, List<String> cmd) throws IOException {
+		Util.verboseMsg(String.join(" ", cmd));
+		Process process = CommandBuffer.of(cmd).asProcessBuilder().redirectErrorStream(true).start();
+		String output;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			output = br.lines().collect(Collectors.joining("\n"));
+		}
+		try {
+			process.waitFor();
+		} catch (InterruptedException e) {
+			throw new ExitException(EXIT_GENERIC_ERROR, e);
+		}
+		if (process.exitValue() != 0) {
+			throw new ExitException(EXIT_GENERIC_ERROR, "Error running " + name + ":\n" + output);
+		}
+		Util.verboseMsg(output);
+		return output;
+	}
+}
+
+@Command(name = "image", description = "Exports a container image as an OCI image layout tar file")
+class ExportImage extends BaseExportCommand {
+
+	static final String JAVA_HOME = "/opt/java";
+	static final String APP_DIR = "/app";
+
+	@CommandLine.Option(names = {
+			"--base" }, required = true, description = "Directory containing an OCI image layout to use as the base image. It must provide the C library the JDK needs.")
+	Path base;
+
+	@CommandLine.Option(names = {
+			"--tag" }, description = "The name and tag of the image. Defaults to the name of the output file with tag `latest`.")
+	String tag;
+
+	@Override
+	int apply(Code code, RunContext ctx) throws IOException {
+		Path outputPath = exportMixin.getImageOutputPath();
+		if (outputPath.toFile().exists()) {
+			if (exportMixin.force) {
+				outputPath.toFile().delete();
+			} else {
+				Util.warnMsg("Cannot export as " + outputPath + " already exists. Use --force to overwrite.");
+				return EXIT_INVALID_INPUT;
+			}
+		}
+		if (Util.getOS() != Util.OS.linux && Util.getOS() != Util.OS.alpine_linux) {
+			Util.warnMsg("Cannot export a container image on this OS, the JDK that gets included must be one for Linux.");
+			return EXIT_INVALID_INPUT;
+		}
+		String mainClass = ctx.getMainClassOr(code);
+		if (mainClass == null) {
+			Util.warnMsg("Cannot export as no main class was found. Add --main=<class> and run again.");
+			return EXIT_INVALID_INPUT;
+		}
+		String javaVersion = exportMixin.buildMixin.javaVersion != null
+				? exportMixin.buildMixin.javaVersion
+				: code.getJavaVersion();
+		Path jdkHome = JdkManager.getCurrentJdk(javaVersion);
+		if (jdkHome == null) {
+			Util.warnMsg("Cannot export as the JDK to include could not be found. Set JAVA_HOME and run again.");
+			return EXIT_INVALID_INPUT;
+		}
+		List<Path> deps = new ArrayList<>();
+		for (ArtifactInfo dep : ctx.resolveClassPath(code).getArtifacts()) {
+			if (!Files.isRegularFile(dep.getFile())) {
+				Util.warnMsg("Cannot export as " + dep.getFile() + " is not a jar file.");
+				return EXIT_INVALID_INPUT;
+			}
+			deps.add(dep.getFile());
+		}
+		if (tag == null) {
+			tag = Util.getBaseName(outputPath.getFileName().toString()).toLowerCase(Locale.ROOT) + ":latest";
+		} else if (tag.lastIndexOf(':') <= tag.lastIndexOf('/')) {
+			tag = tag + ":latest";
+		}
+
+		// The layers are ordered from least to most likely to change, so
+		// rebuilding the application usually only results in a new top layer
+		Path jar = code.getJarFile();
+		try (OciImageWriter image = new OciImageWriter(getArchitecture())) {
+			image.setBase(base);
+			Path jdk = jdkHome.toRealPath();
+			Util.infoMsg("Adding JDK " + jdk);
+			image.addLayer("jdk", layer -> layer.addTree(JAVA_HOME, jdk));
+			if (!deps.isEmpty()) {
+				image.addLayer("dependencies", layer -> {
+					for (Path dep : deps) {
+						layer.addFile(APP_DIR + "/lib/" + dep.getFileName(), dep);
+					}
+				});
+			}
+			image.addLayer("resources", layer -> addJarEntries(layer, jar, APP_DIR + "/resources", false));
+			image.addLayer("classes", layer -> addJarEntries(layer, jar, APP_DIR + "/classes", true));
+
+			List<String> entrypoint = new ArrayList<>();
+			entrypoint.add(JAVA_HOME + "/bin/java");
+			entrypoint.addAll(ctx.getRuntimeOptionsMerged(code));
+			entrypoint.add("-cp");
+			entrypoint.add(APP_DIR + "/classes:" + APP_DIR + "/resources:" + APP_DIR + "/lib/*");
+			entrypoint.add(mainClass);
+			List<String> env = Arrays.asList(
+					"JAVA_HOME=" + JAVA_HOME,
+					"PATH=" + JAVA_HOME + "/bin:/usr/local/sbin:/usr/local/bin:/usr/sbin:/usr/bin:/sbin:/bin");
+			image.write(outputPath, tag, entrypoint, env, APP_DIR);
+		}
+
+		Util.infoMsg("Exported " + tag + " to " + outputPath);
+		return EXIT_OK;
+	}
+
+	// Adds either the classes or the other files of the jar, the
+	// manifest is left out as it's not needed
+	private static void addJarEntries(OciImageWriter.Layer layer, Path jar, String target, boolean classes)
+			throws IOException {
+		try (ZipFile zf = new ZipFile(jar.toFile())) {
+			List<? extends ZipEntry> entries = zf	.stream()
+													.filter(e -> !e.isDirectory())
+													.filter(e -> !e.getName().equals("META-INF/MANIFEST.MF"))
+													.filter(e -> e.getName().endsWith(".class") == classes)
+													.sorted(Comparator.comparing(ZipEntry::getName))
+													.collect(Collectors.toList());
+			for (ZipEntry entry : entries) {
+				try (InputStream in = zf.getInputStream(entry)) {
+					layer.addFile(target + "/" + entry.getName(), in, entry.getSize());
+				}
+			}
+		}
+	}
+
+	// Container images use the architecture names of Go
+	static String getArchitecture() {
+		String arch = System.getProperty("os.arch");
+		switch (arch) {
+		case "amd64":
+		case "x86_64":
+			return "amd64";
+		case "aarch64":
+			return "arm64";
+		default:
+			return arch;
+		}
+	}
+}
@@ -53,7 +53,16 @@ public class ExportMixin {
 		return outputPath;
 	}
 
-	private Path getOutputPath() {
+	Path getImageOutputPath() {
+		Path outputPath = getOutputPath();
+		// Ensure the file ends in `.tar`
+		if (!outputPath.toString().endsWith(".tar")) {
+			outputPath = Paths.get(outputPath + ".tar");
+		}
+		return outputPath;
+	}
+
+	Path getOutputPath() {
 		// Determine the output file location and name
 		Path cwd = Util.getCwd();
 		Path outputPath;
@@ -0,0 +1,247 @@
+package dev.jbang.cli;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+import dev.jbang.agent.HotReloadAgent;
+import dev.jbang.source.Jar;
+import dev.jbang.source.ResourceRef;
+import dev.jbang.source.RunContext;
+import dev.jbang.util.Util;
+
+/**
+ * The JBang side of hot reloading. Scripts get launched with the
+ * <code>HotReloadAgent</code> which connects back to the server socket opened
+ * here. When a rebuilt jar only differs from the one the script was launched
+ * with in the contents of existing classes, those classes are sent to the
+ * agent to be redefined. Anything else (added classes, changed resources or
+ * manifest, changes the JVM can't redefine) requires a restart.
+ */
+class HotReloader implements Closeable {
+	private static final int CONNECT_TIMEOUT_MS = 5000;
+	private static final String CLASS_EXT = ".class";
+
+	private final ServerSocket server;
+	private Socket socket;
+	private String token;
+
+	// The classes and resources in the jar the script was launched with
+	private Map<String, byte[]> launchedClasses = Collections.emptyMap();
+	private Map<String, byte[]> launchedResources = Collections.emptyMap();
+	// The classes as they are currently defined in the running script
+	private Map<String, byte[]> currentClasses = Collections.emptyMap();
+
+	HotReloader() throws IOException {
+		server = new ServerSocket(0, 5, InetAddress.getLoopbackAddress());
+		server.setSoTimeout(CONNECT_TIMEOUT_MS);
+	}
+
+	/**
+	 * Adds the hot reload agent to the given context and prepares for a new
+	 * process to be launched with the given jar.
+	 */
+	void prepareLaunch(RunContext ctx, Path jar) throws IOException {
+		closeSocket();
+		token = UUID.randomUUID().toString();
+		RunContext actx = RunContext.empty();
+		actx.setJavaAgentOption(server.getLocalPort() + ":" + token);
+		ctx.addJavaAgent(Jar.prepareJar(ResourceRef.forFile(getAgentJar())), actx);
+
+		Map<String, byte[]> classes = new HashMap<>();
+		Map<String, byte[]> resources = new HashMap<>();
+		readJar(jar, classes, resources);
+		launchedClasses = classes;
+		launchedResources = resources;
+		currentClasses = classes;
+	}
+
+	/**
+	 * Tries to redefine the classes of the running script with the ones from the
+	 * given jar.
+	 *
+	 * @return <code>true</code> if the running script is now up-to-date,
+	 *         <code>false</code> if it needs to be restarted
+	 */
+	boolean reload(Path jar) {
+		try {
+			Map<String, byte[]> classes = new HashMap<>();
+			Map<String, byte[]> resources = new HashMap<>();
+			readJar(jar, classes, resources);
+			if (!sameContents(resources, launchedResources)) {
+				Util.verboseMsg("Hot reload not possible, resources or manifest changed");
+				return false;
+			}
+			if (!launchedClasses.keySet().containsAll(classes.keySet())) {
+				Util.verboseMsg("Hot reload not possible, classes were added");
+				return false;
+			}
+			Map<String, byte[]> changed = new HashMap<>();
+			classes.forEach((name, bytes) -> {
+				if (!Arrays.equals(bytes, currentClasses.get(name))) {
+					changed.put(name, bytes);
+				}
+			});
+			if (!changed.isEmpty()) {
+				String error = send(changed);
+				if (!error.isEmpty()) {
+					Util.infoMsg("Hot reload not possible: " + error);
+					return false;
+				}
+				Util.infoMsg("Reloaded " + changed.size() + " class(es)");
+			}
+			currentClasses = classes;
+			return true;
+		} catch (IOException e) {
+			Util.verboseMsg("Hot reload failed", e);
+			return false;
+		}
+	}
+
+	private String send(Map<String, byte[]> classes) throws IOException {
+		Socket s = connect();
+		DataOutputStream out = new DataOutputStream(s.getOutputStream());
+		out.writeInt(classes.size());
+		for (Map.Entry<String, byte[]> cls : classes.entrySet()) {
+			out.writeUTF(cls.getKey());
+			out.writeInt(cls.getValue().length);
+			out.write(cls.getValue());
+		}
+		out.flush();
+		return new DataInputStream(s.getInputStream()).readUTF();
+	}
+
+	// Waits for the agent of the current process to connect, connections
+	// from previously launched processes are dropped
+	private Socket connect() throws IOException {
+		while (socket == null) {
+			Socket s;
+			try {
+				s = server.accept();
+			} catch (SocketTimeoutException e) {
+				throw new IOException("Hot reload agent did not connect", e);
+			}
+			s.setSoTimeout(CONNECT_TIMEOUT_MS);
+			if (token.equals(new DataInputStream(s.getInputStream()).readUTF())) {
+				// redefining classes can take a while
+				s.setSoTimeout(0);
+				socket = s;
+			} else {
+				s.close();
+			}
+		}
+		return socket;
+	}
+
+	// Reads all entries of the given jar, class files keyed by their
+	// internal class name and everything else by the entry's name
+	private static void readJar(Path jar, Map<String, byte[]> classes, Map<String, byte[]> resources)
+			throws IOException {
+		try (ZipFile zf = new ZipFile(jar.toFile())) {
+			Enumeration<? extends ZipEntry> entries = zf.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry ze = entries.nextElement();
+				if (ze.isDirectory()) {
+					continue;
+				}
+				byte[] bytes;
+				try (InputStream in = zf.getInputStream(ze)) {
+					bytes = readAll(in);
+				}
+				String name = ze.getName();
+				if (name.endsWith(CLASS_EXT) && !name.startsWith("META-INF/")) {
+					classes.put(name.substring(0, name.length() - CLASS_EXT.length()), bytes);
+				} else {
+					resources.put(name, bytes);
+				}
+			}
+		}
+	}
+
+	private static boolean sameContents(Map<String, byte[]> a, Map<String, byte[]> b) {
+		if (!a.keySet().equals(b.keySet())) {
+			return false;
+		}
+		return a.entrySet().stream().allMatch(e -> Arrays.equals(e.getValue(), b.get(e.getKey())));
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) != -1) {
+			out.write(buf, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Returns the jar containing the hot reload agent, creating it in the cache
+	 * if it doesn't exist yet.
+	 */
+	static Path getAgentJar() throws IOException {
+		String entryName = HotReloadAgent.class.getName().replace('.', '/') + CLASS_EXT;
+		byte[] agentClass;
+		try (InputStream in = HotReloadAgent.class.getClassLoader().getResourceAsStream(entryName)) {
+			if (in == null) {
+				throw new IOException("Unable to find " + entryName);
+			}
+			agentClass = readAll(in);
+		}
+		String id = Util.getStableID(Base64.getEncoder().encodeToString(agentClass));
+		Path jar = Settings.getCacheDir(Cache.CacheClass.jars).resolve("jbang-hot-reload-agent." + id + ".jar");
+		if (!Files.isRegularFile(jar)) {
+			Files.createDirectories(jar.getParent());
+			Manifest manifest = new Manifest();
+			Attributes attrs = manifest.getMainAttributes();
+			attrs.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+			attrs.putValue("Premain-Class", HotReloadAgent.class.getName());
+			attrs.putValue("Can-Redefine-Classes", "true");
+			Path tmpJar = Files.createTempFile(jar.getParent(), jar.getFileName().toString(), ".tmp");
+			try (OutputStream os = Files.newOutputStream(tmpJar);
+					JarOutputStream jos = new JarOutputStream(os, manifest)) {
+				jos.putNextEntry(new ZipEntry(entryName));
+				jos.write(agentClass);
+				jos.closeEntry();
+			}
+			Files.move(tmpJar, jar, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return jar;
+	}
+
+	private void closeSocket() {
+		if (socket != null) {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			socket = null;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeSocket();
+		server.close();
+	}
+}
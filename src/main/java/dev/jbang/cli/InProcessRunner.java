@@ -0,0 +1,233 @@
+package dev.jbang.cli;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import dev.jbang.Settings;
+import dev.jbang.source.Code;
+import dev.jbang.source.RunContext;
+import dev.jbang.source.Source;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.Util;
+
+/**
+ * Runs a script's main method inside the JBang JVM instead of generating a
+ * command line for the launcher to run, which saves the startup of a second
+ * JVM. The script's jar and dependencies are loaded in a class loader that's
+ * isolated from JBang's own classes. This is only possible when the script
+ * doesn't need anything that has to be passed to a JVM when it starts.
+ */
+class InProcessRunner {
+
+	/**
+	 * Checks if the given code can be run in-process by <code>jbang run</code>.
+	 *
+	 * @return The reason why the code can't be run in-process or
+	 *         <code>null</code> if it can
+	 */
+	static String checkSupported(Code code, RunContext ctx) {
+		String reason = checkCode(code, ctx);
+		if (reason == null && launchedByScript() && getStdoutFile() == null) {
+			reason = "the launcher doesn't provide access to stdout";
+		}
+		return reason;
+	}
+
+	/**
+	 * Checks if the given code can be run in a JVM that's already running.
+	 *
+	 * @return The reason why the code can't be run in-process or
+	 *         <code>null</code> if it can
+	 */
+	static String checkCode(Code code, RunContext ctx) {
+		if (code.isJShell() || ctx.getForceType() == Source.Type.jshell || ctx.isInteractive()) {
+			return "it needs JShell";
+		}
+		if (code.getJarFile() == null || ctx.isNativeImage()) {
+			return "it doesn't run from a jar";
+		}
+		if (ctx.getMainClassOr(code) == null) {
+			return "it has no main class";
+		}
+		String requestedJavaVersion = ctx.getJavaVersionOr(code);
+		int current = JavaUtil.parseJavaVersion(System.getProperty("java.version"));
+		if (current != JavaUtil.javaVersion(requestedJavaVersion)) {
+			return "it needs a different Java version";
+		}
+		if (!ctx.getJavaAgents().isEmpty()) {
+			return "it needs Java agents";
+		}
+		if (!ctx.getRuntimeOptionsMerged(code).isEmpty()
+				|| !ctx.getAutoDetectedModuleArguments(code, requestedJavaVersion).isEmpty()) {
+			return "it needs Java options";
+		}
+		if (ctx.isDebugEnabled() || ctx.isFlightRecordingEnabled() || ctx.isEnableSystemAssertions()
+				|| Optional.ofNullable(ctx.getClassDataSharing()).orElse(code.enableCDS())) {
+			return "it needs debugging, flight recording, system assertions or CDS";
+		}
+		return null;
+	}
+
+	/**
+	 * Runs the given code, waiting for the main method and any non-daemon threads
+	 * it started to finish. Any system properties set will be applied to the JBang
+	 * JVM before the main method gets called.
+	 *
+	 * @return The exit code
+	 */
+	static int run(Code code, RunContext ctx) throws IOException {
+		String mainClass = ctx.getMainClassOr(code);
+		Util.verboseMsg("Running " + mainClass + " in-process");
+
+		Properties oldProps = new Properties();
+		oldProps.putAll(System.getProperties());
+		PrintStream oldOut = System.out;
+		try (URLClassLoader cl = createClassLoader(code, ctx)) {
+			if (launchedByScript()) {
+				// Our own stdout is being captured by the launcher script. The stream
+				// isn't buffered because a System.exit() call by the script would
+				// otherwise lose anything written after the last newline
+				System.setOut(new PrintStream(new FileOutputStream(getStdoutFile().toFile(), true), true));
+			}
+			System.setProperty("java.class.path", Arrays	.stream(cl.getURLs())
+															.map(InProcessRunner::toPath)
+															.collect(Collectors.joining(Settings.CP_SEPARATOR)));
+			ctx.getProperties().forEach(System::setProperty);
+			cl.setDefaultAssertionStatus(ctx.isEnableAssertions());
+
+			Method main = findMain(cl, mainClass);
+			int exitCode = invokeMain(main, cl, ctx.getArguments().toArray(new String[0]));
+			System.out.flush();
+			return exitCode;
+		} finally {
+			System.setOut(oldOut);
+			System.setProperties(oldProps);
+		}
+	}
+
+	/**
+	 * Creates a class loader for the code's jar and its resolved class path. Its
+	 * parent is the platform class loader so none of JBang's own classes or
+	 * dependencies are visible to it.
+	 */
+	static URLClassLoader createClassLoader(Code code, RunContext ctx) throws IOException {
+		List<Path> classPath = new ArrayList<>();
+		classPath.add(code.getJarFile().toAbsolutePath());
+		ctx.resolveClassPath(code).getClassPaths().forEach(cp -> classPath.add(Paths.get(cp)));
+		URL[] urls = new URL[classPath.size()];
+		for (int i = 0; i < classPath.size(); i++) {
+			urls[i] = classPath.get(i).toUri().toURL();
+		}
+		return new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+	}
+
+	static Method findMain(ClassLoader cl, String mainClass) {
+		Method main;
+		try {
+			main = Class.forName(mainClass, false, cl).getMethod("main", String[].class);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			throw new ExitException(BaseCommand.EXIT_INVALID_INPUT,
+					"No main method found in class " + mainClass, e);
+		}
+		if (!Modifier.isStatic(main.getModifiers())) {
+			throw new ExitException(BaseCommand.EXIT_INVALID_INPUT,
+					"The main method of class " + mainClass + " is not static");
+		}
+		// the class itself doesn't have to be public
+		main.setAccessible(true);
+		return main;
+	}
+
+	/**
+	 * Calls the given main method on a new thread, in its own thread group, and
+	 * waits for it and any non-daemon threads it started to finish.
+	 *
+	 * @return The exit code
+	 */
+	static int invokeMain(Method main, ClassLoader cl, String[] args) {
+		int[] exitCode = { BaseCommand.EXIT_OK };
+		ThreadGroup group = new ThreadGroup("main");
+		Thread thread = new Thread(group, () -> {
+			try {
+				main.invoke(null, (Object) args);
+			} catch (InvocationTargetException e) {
+				System.err.print("Exception in thread \"main\" ");
+				e.getCause().printStackTrace();
+				exitCode[0] = BaseCommand.EXIT_GENERIC_ERROR;
+			} catch (IllegalAccessException e) {
+				throw new ExitException(BaseCommand.EXIT_INTERNAL_ERROR, e);
+			}
+		}, "main");
+		thread.setContextClassLoader(cl);
+		thread.start();
+		try {
+			thread.join();
+			awaitNonDaemonThreads(group);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return exitCode[0];
+	}
+
+	private static String toPath(URL url) {
+		try {
+			return Paths.get(url.toURI()).toString();
+		} catch (URISyntaxException e) {
+			return url.toString();
+		}
+	}
+
+	// Just like the JVM we wait for all non-daemon threads to end
+	private static void awaitNonDaemonThreads(ThreadGroup group) throws InterruptedException {
+		while (true) {
+			Thread[] threads = new Thread[group.activeCount() + 8];
+			int count = group.enumerate(threads, true);
+			Thread next = null;
+			for (int i = 0; i < count; i++) {
+				if (!threads[i].isDaemon() && threads[i].isAlive()) {
+					next = threads[i];
+					break;
+				}
+			}
+			if (next == null) {
+				return;
+			}
+			next.join();
+		}
+	}
+
+	static boolean launchedByScript() {
+		return System.getenv(Util.JBANG_RUNTIME_SHELL) != null;
+	}
+
+	// The launcher script can pass the file to use for writing to its stdout.
+	// Regular files are not supported because opening them again wouldn't
+	// share the file offset with the shell's file descriptor.
+	static Path getStdoutFile() {
+		String file = System.getenv(Settings.ENV_STDOUT);
+		if (file == null || file.isEmpty()) {
+			return null;
+		}
+		Path path = Paths.get(file);
+		if (!Files.isWritable(path) || Files.isRegularFile(path)) {
+			return null;
+		}
+		return path;
+	}
+}
@@ -52,7 +52,7 @@ import picocli.CommandLine.Model.UsageMessageSpec;
 		"" }, versionProvider = VersionProvider.class, subcommands = {
 				Run.class, Build.class, Edit.class, Init.class, Alias.class, Template.class, Catalog.class, Trust.class,
 				Cache.class, Completion.class, Jdk.class, Version.class, Wrapper.class, Info.class, App.class,
-				Export.class, Config.class })
+				Export.class, Config.class, Serve.class })
 public class JBang extends BaseCommand {
 
 	@CommandLine.Option(names = { "-V",
@@ -238,7 +238,7 @@ public class JBang extends BaseCommand {
 
 	public static CommandGroupRenderer getCommandRenderer() {
 		Map<String, List<String>> sections = new LinkedHashMap<>();
-		sections.put("Essentials", asList("run", "build"));
+		sections.put("Essentials", asList("run", "build", "serve"));
 		sections.put("Editing", asList("init", "edit"));
 		sections.put("Caching", asList("cache", "export", "jdk"));
 		sections.put("Configuration", asList("config", "trust", "alias", "template", "catalog", "app"));
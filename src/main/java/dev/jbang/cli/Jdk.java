@@ -5,6 +5,8 @@ import static dev.jbang.cli.BaseCommand.*;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -15,6 +17,7 @@ import com.google.gson.annotations.SerializedName;
 
 import dev.jbang.Settings;
 import dev.jbang.net.JdkManager;
+import dev.jbang.util.JdkInfo;
 import dev.jbang.util.Util;
 
 import picocli.CommandLine;
@@ -36,7 +39,7 @@ public class Jdk {
 			if (!Util.isNullOrBlankString(path)) {
 				JdkManager.linkToExistingJdk(path, version);
 			} else {
-				JdkManager.downloadAndInstallJdk(version);
+				JdkManager.downloadAndInstallJdk(version, force);
 			}
 		} else {
 			Util.infoMsg("JDK " + version + " is already installed");
@@ -44,7 +47,7 @@ public class Jdk {
 		return EXIT_OK;
 	}
 
-	@CommandLine.Command(name = "list", description = "Lists installed JDKs.")
+	@CommandLine.Command(name = "list", description = "Lists installed JDKs, including the ones installed on the system by other means than JBang.")
 	public Integer list(
 			@CommandLine.Option(names = {
 					"--available" }, description = "Shows versions available for installation") boolean available,
@@ -57,6 +60,16 @@ public class Jdk {
 		List<JdkOut> jdkOuts = jdks	.stream()
 									.map(jdk -> new JdkOut(jdk, installedJdks.contains(jdk), jdk == defaultJdk))
 									.collect(Collectors.toList());
+		if (!available) {
+			// System JDKs get used for the versions JBang didn't install itself
+			Set<Integer> versions = new HashSet<>(installedJdks);
+			for (JdkInfo jdk : JdkManager.listSystemJdks()) {
+				if (versions.add(jdk.getMajorVersion())) {
+					jdkOuts.add(new JdkOut(jdk));
+				}
+			}
+			jdkOuts.sort(Comparator.comparingInt(jdk -> jdk.version));
+		}
 		if (format == FormatMixin.Format.json) {
 			Gson parser = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
 			parser.toJson(jdkOuts, out);
@@ -69,7 +82,9 @@ public class Jdk {
 				}
 				jdkOuts.forEach(jdk -> {
 					out.print("  " + jdk.version);
-					if (jdk.version == defaultJdk) {
+					if (jdk.isSystem != null) {
+						out.print(" (system) " + jdk.javaHomeDir);
+					} else if (jdk.version == defaultJdk) {
 						out.print(" <");
 					} else if (available && installedJdks.contains(jdk.version)) {
 						out.print(" *");
@@ -88,6 +103,8 @@ public class Jdk {
 		String javaHomeDir;
 		@SerializedName("default")
 		Boolean isDefault;
+		@SerializedName("system")
+		Boolean isSystem;
 
 		public JdkOut(int version, boolean isInstalled, boolean isDefault) {
 			this.version = version;
@@ -102,6 +119,12 @@ public class Jdk {
 				this.isDefault = true;
 			}
 		}
+
+		public JdkOut(JdkInfo systemJdk) {
+			this.version = systemJdk.getMajorVersion();
+			this.javaHomeDir = systemJdk.home.toString();
+			this.isSystem = true;
+		}
 	}
 
 	@CommandLine.Command(name = "uninstall", description = "Uninstalls an existing JDK.")
@@ -0,0 +1,183 @@
+package dev.jbang.cli;
+
+import static dev.jbang.util.Util.verboseMsg;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import dev.jbang.source.Project;
+import dev.jbang.source.RefTarget;
+import dev.jbang.source.ResourceRef;
+import dev.jbang.source.SourceSet;
+import dev.jbang.util.Util;
+
+/**
+ * Watches the files that make up a project for changes. Editors often generate
+ * several events for a single save (truncate, write, rename, etc), so events
+ * are collected until things have been quiet for a short while before reporting
+ * them as a single change.
+ */
+class ProjectWatcher implements Closeable {
+	static final long DEBOUNCE_MS = 300;
+
+	private final WatchService watchService;
+	private final Set<Path> watchedDirs = new HashSet<>();
+	private final Set<Path> watchedFiles = new HashSet<>();
+
+	ProjectWatcher() throws IOException {
+		watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Sets the files to watch, replacing any previously watched files. Editors
+	 * often save by writing a new file and renaming it, so it's the folders
+	 * containing the files that are actually being watched.
+	 */
+	void watch(Collection<Path> files) throws IOException {
+		watchedFiles.clear();
+		for (Path file : files) {
+			watchedFiles.add(file);
+			Path dir = file.getParent();
+			if (dir != null && !watchedDirs.contains(dir) && Files.isDirectory(dir)) {
+				dir.register(watchService,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+				watchedDirs.add(dir);
+				Util.infoMsg("Watching for changes in " + dir);
+			}
+		}
+	}
+
+	/**
+	 * Waits until at least one of the watched files has changed.
+	 *
+	 * @return The changed files
+	 */
+	Set<Path> awaitChanges() throws InterruptedException {
+		while (true) {
+			WatchKey wk = watchService.take();
+			Set<Path> changed = new HashSet<>();
+			boolean overflow = collectChanges(wk, changed);
+			// wait for the burst of events to end
+			while ((wk = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+				overflow |= collectChanges(wk, changed);
+			}
+			if (overflow) {
+				// events were lost, so we don't know what changed
+				return new HashSet<>(watchedFiles);
+			}
+			changed.retainAll(watchedFiles);
+			if (!changed.isEmpty()) {
+				verboseMsg("Changed files: " + changed);
+				return changed;
+			}
+		}
+	}
+
+	// Adds the (absolute) paths of all changed files to the given set and
+	// returns true if events were lost
+	private boolean collectChanges(WatchKey wk, Set<Path> changed) {
+		boolean overflow = false;
+		Path dir = (Path) wk.watchable();
+		for (WatchEvent<?> event : wk.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			} else {
+				// the context is a path relative to the watched directory
+				changed.add(dir.resolve((Path) event.context()));
+			}
+		}
+		// reset the key
+		boolean valid = wk.reset();
+		if (!valid) {
+			Util.warnMsg("File watch key for " + dir + " no longer valid!");
+			watchedDirs.remove(dir);
+		}
+		return overflow;
+	}
+
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+	}
+
+	/**
+	 * Everything parsed from a script's directives that influences how it gets
+	 * built. Changes to a script that don't affect any of this (which is the case
+	 * for almost all edits) don't require, for example, the dependencies to be
+	 * resolved again.
+	 */
+	static class State {
+		final List<String> dependencies;
+		final List<String> repositories;
+		final List<String> classPaths;
+		final List<String> sources;
+		final List<String> resources;
+		final String mainPackage;
+		// All files that should be watched for changes
+		final Set<Path> files = new LinkedHashSet<>();
+
+		State(Project prj) {
+			SourceSet ss = prj.getMainSourceSet();
+			dependencies = new ArrayList<>(ss.getDependencies());
+			repositories = prj	.getRepositories()
+								.stream()
+								.map(r -> r.getId() + "=" + r.getUrl())
+								.collect(Collectors.toList());
+			classPaths = new ArrayList<>(ss.getClassPaths());
+			sources = new ArrayList<>();
+			resources = new ArrayList<>();
+			addFile(prj.getResourceRef());
+			for (ResourceRef ref : ss.getSources()) {
+				sources.add(String.valueOf(ref.getFile()));
+				addFile(ref);
+			}
+			for (RefTarget ref : ss.getResources()) {
+				resources.add(ref.getSource().getFile() + "=" + ref.getTarget());
+				addFile(ref.getSource());
+			}
+			mainPackage = prj.getMainSource() != null ? prj.getMainSource().getJavaPackage().orElse("") : "";
+		}
+
+		private void addFile(ResourceRef ref) {
+			if (ref != null && ref.getFile() != null) {
+				files.add(ref.getFile().toAbsolutePath().normalize());
+			}
+		}
+
+		/**
+		 * Returns true if the given state would result in the same resolved class
+		 * path as this one.
+		 */
+		boolean sameClassPath(State other) {
+			return dependencies.equals(other.dependencies) && repositories.equals(other.repositories)
+					&& classPaths.equals(other.classPaths);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o)
+				return true;
+			if (o == null || getClass() != o.getClass())
+				return false;
+			State that = (State) o;
+			return sameClassPath(that) && sources.equals(that.sources)
+					&& resources.equals(that.resources) && mainPackage.equals(that.mainPackage);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(dependencies, repositories, classPaths, sources, resources, mainPackage);
+		}
+	}
+}
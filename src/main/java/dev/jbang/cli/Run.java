@@ -1,11 +1,13 @@
 package dev.jbang.cli;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Stack;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,6 +16,7 @@ import dev.jbang.source.Project;
 import dev.jbang.source.RunContext;
 import dev.jbang.source.Source;
 import dev.jbang.source.resolvers.LiteralScriptResourceResolver;
+import dev.jbang.util.CommandBuffer;
 import dev.jbang.util.Util;
 
 import picocli.CommandLine;
@@ -58,14 +61,32 @@ public class Run extends BaseBuildCommand {
 			"--code" }, arity = "0..1", description = "Run the given string as code", preprocessor = StrictParameterPreprocessor.class)
 	public Optional<String> literalScript;
 
+	@CommandLine.Option(names = {
+			"--watch" }, description = "Rebuild and restart the script whenever any of its files change. The script's output is written to stderr.")
+	public boolean watch;
+
+	@CommandLine.Option(names = {
+			"--hot-reload" }, description = "Implies --watch. Redefine changed classes in the running script instead of restarting it, when possible.")
+	public boolean hotReload;
+
+	@CommandLine.Option(names = {
+			"--in-process" }, description = "Run the script inside the JBang JVM instead of starting a new one, when possible.")
+	public boolean inProcess;
+
 	@CommandLine.Parameters(index = "1..*", arity = "0..*", description = "Parameters to pass on to the script")
 	public List<String> userParams = new ArrayList<>();
 
+	// the process currently being run in watch mode
+	private volatile Process watchedProcess;
+
 	protected void requireScriptArgument() {
 		if (scriptMixin.scriptOrFile == null && ((!interactive && !literalScript.isPresent())
 				|| (literalScript.isPresent() && literalScript.get().isEmpty()))) {
 			throw new IllegalArgumentException("Missing required parameter: '<scriptOrFile>'");
 		}
+		if ((watch || hotReload) && (interactive || literalScript.isPresent())) {
+			throw new IllegalArgumentException("--watch can't be used together with --interactive or --code");
+		}
 	}
 
 	@Override
@@ -101,6 +122,8 @@ public class Run extends BaseBuildCommand {
 			}
 		}
 
+		// fetch the JDK, compiler and dependencies in parallel before building
+		ctx.provision(prj);
 		Code code = prepareArtifacts(prj, ctx);
 
 		if (ctx.isNativeImage() && (ctx.getForceType() == Source.Type.jshell || code.isJShell())) {
@@ -108,6 +131,18 @@ public class Run extends BaseBuildCommand {
 			ctx.setNativeImage(false);
 		}
 
+		if (watch || hotReload) {
+			return watchAndRun(prj, code, ctx);
+		}
+
+		if (inProcess) {
+			String reason = InProcessRunner.checkSupported(code, ctx);
+			if (reason == null) {
+				return InProcessRunner.run(code, ctx);
+			}
+			Util.verboseMsg("Not running in-process because " + reason);
+		}
+
 		String cmdline = code.cmdGenerator(ctx).generate();
 		debug("run: " + cmdline);
 		out.println(cmdline);
@@ -115,6 +150,116 @@ public class Run extends BaseBuildCommand {
 		return EXIT_EXECUTE;
 	}
 
+	/**
+	 * Runs the script and waits for any of its files to change. When they do the
+	 * script gets parsed and built again, reusing the resolved dependencies if
+	 * those didn't change, after which the running process gets replaced by a new
+	 * one. With hot reloading enabled the changed classes are redefined in the
+	 * running process instead, whenever that's possible. A failing build leaves
+	 * the running process alone.
+	 */
+	private int watchAndRun(Project prj, Code code, RunContext ctx) throws IOException {
+		Runtime.getRuntime().addShutdownHook(new Thread(this::stopWatchedProcess));
+		ProjectWatcher.State state = new ProjectWatcher.State(prj);
+		HotReloader reloader = null;
+		if (hotReload) {
+			if (code.getJarFile() != null && !code.isJShell() && !ctx.isNativeImage()) {
+				reloader = new HotReloader();
+			} else {
+				warn("Hot reloading is only supported for scripts running from a jar, restarting on changes instead.");
+			}
+		}
+		try (ProjectWatcher watcher = new ProjectWatcher()) {
+			watcher.watch(state.files);
+			launchWatchedProcess(code, ctx, reloader);
+			while (true) {
+				watcher.awaitChanges();
+				try {
+					RunContext newCtx = getRunContext();
+					Project newPrj = newCtx.forResource(scriptMixin.scriptOrFile);
+					ProjectWatcher.State newState = new ProjectWatcher.State(newPrj);
+					boolean sameClassPath = newState.sameClassPath(state);
+					if (sameClassPath) {
+						newPrj.setResolvedClassPath(prj.resolveClassPath());
+					}
+					prj = newPrj;
+					state = newState;
+					watcher.watch(state.files);
+
+					newCtx.provision(newPrj);
+					Code newCode = prepareArtifacts(newPrj, newCtx);
+					Process process = watchedProcess;
+					if (reloader != null && sameClassPath && process != null && process.isAlive()
+							&& reloader.reload(newCode.getJarFile())) {
+						continue;
+					}
+					info("Restarting " + scriptMixin.scriptOrFile);
+					stopWatchedProcess();
+					launchWatchedProcess(newCode, newCtx, reloader);
+				} catch (RuntimeException | IOException e) {
+					warn("Build failed, waiting for changes: " + e.getMessage());
+				}
+			}
+		} catch (InterruptedException e) {
+			warn("run-watch interrupted");
+		} finally {
+			stopWatchedProcess();
+			if (reloader != null) {
+				reloader.close();
+			}
+		}
+		return EXIT_OK;
+	}
+
+	private void launchWatchedProcess(Code code, RunContext ctx, HotReloader reloader) throws IOException {
+		if (reloader != null) {
+			reloader.prepareLaunch(ctx, code.getJarFile());
+		}
+		List<String> cmd = code.cmdGenerator(ctx).generateCommandLineList();
+		debug("run: " + String.join(" ", cmd));
+		// Our stdout is consumed by the jbang launcher script, so the script's
+		// output gets copied to stderr
+		Process process = CommandBuffer	.of(cmd)
+										.asProcessBuilder()
+										.redirectInput(ProcessBuilder.Redirect.INHERIT)
+										.redirectError(ProcessBuilder.Redirect.INHERIT)
+										.start();
+		watchedProcess = process;
+		Thread t = new Thread(() -> {
+			try (InputStream in = process.getInputStream()) {
+				byte[] buf = new byte[8192];
+				int n;
+				while ((n = in.read(buf)) != -1) {
+					System.err.write(buf, 0, n);
+					System.err.flush();
+				}
+				int exit = process.waitFor();
+				if (watchedProcess == process) {
+					info("Script exited with code " + exit + ", waiting for changes");
+				}
+			} catch (IOException | InterruptedException e) {
+				// process was stopped
+			}
+		}, "jbang-watch-output");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private void stopWatchedProcess() {
+		Process process = watchedProcess;
+		watchedProcess = null;
+		if (process != null && process.isAlive()) {
+			process.destroy();
+			try {
+				if (!process.waitFor(5, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
 	RunContext getRunContext() {
 		RunContext ctx = super.getRunContext();
 		ctx.setArguments(userParams);
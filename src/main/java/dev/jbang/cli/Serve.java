@@ -0,0 +1,586 @@
+package dev.jbang.cli;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import dev.jbang.Settings;
+import dev.jbang.source.Code;
+import dev.jbang.source.Project;
+import dev.jbang.source.RunContext;
+import dev.jbang.util.Util;
+
+import picocli.CommandLine;
+
+/**
+ * Keeps scripts loaded in a long-running JVM so that repeated executions don't
+ * pay for a JVM startup, nor for parsing, building and class loading, and get
+ * to run already JIT-compiled code. Each script gets its own isolated class
+ * loader which is kept around until the script's jar changes.
+ *
+ * Clients connect to a loopback socket and use a simple binary protocol
+ * (everything written with <code>DataOutputStream</code>):
+ * <ul>
+ * <li>client: the token (UTF) found in the server's token file, connections
+ * that don't send it are closed</li>
+ * <li>client: working directory (UTF) to resolve the script against, script
+ * (UTF), number of arguments (int), arguments (UTF)</li>
+ * <li>client: any number of stdin chunks, as length (int) followed by bytes,
+ * with a length of 0 signalling the end of input</li>
+ * <li>server: any number of output chunks, as channel (byte, 1 for stdout and
+ * 2 for stderr), length (int) and bytes, followed by a 0 (byte) and the exit
+ * code (int)</li>
+ * </ul>
+ *
+ * <code>jbang serve --connect &lt;port&gt; &lt;script&gt; [args]</code> is a client
+ * that speaks this protocol.
+ *
+ * The client's environment variables are not passed on, scripts see the
+ * environment of the server, because the environment of a running JVM can't
+ * be changed per execution. For the same reason a script calling
+ * <code>System.exit()</code> stops the server.
+ */
+@CommandLine.Command(name = "serve", description = "Runs a server that executes scripts in a warm JVM, or executes a script on such a server with --connect. Scripts see the environment variables of the server, not those of the client, and stop the server when they call System.exit().")
+public class Serve extends BaseCommand {
+	static final int CHANNEL_EXIT = 0;
+	static final int CHANNEL_STDOUT = 1;
+	static final int CHANNEL_STDERR = 2;
+	private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+
+	private static final InheritableThreadLocal<InputStream> stdinTarget = new InheritableThreadLocal<>();
+	private static final InheritableThreadLocal<OutputStream> stdoutTarget = new InheritableThreadLocal<>();
+	private static final InheritableThreadLocal<OutputStream> stderrTarget = new InheritableThreadLocal<>();
+	private static int servers;
+	private static InputStream originalIn;
+	private static PrintStream originalOut;
+	private static PrintStream originalErr;
+
+	@CommandLine.Option(names = {
+			"--port" }, defaultValue = "0", description = "Port to listen on, only local connections are accepted (default: a random port)")
+	int port;
+
+	@CommandLine.Option(names = {
+			"--connect" }, paramLabel = "port", description = "Executes the script on the server listening on the given local port instead of starting a server")
+	Integer connect;
+
+	@CommandLine.Parameters(index = "0", arity = "0..1", description = "A reference to a source file to execute with --connect")
+	String scriptOrFile;
+
+	@CommandLine.Parameters(index = "1..*", arity = "0..*", description = "Parameters to pass on to the script")
+	List<String> userParams = new ArrayList<>();
+
+	private final Map<String, Object> locks = new ConcurrentHashMap<>();
+	private final Map<String, LoadedScript> scripts = new HashMap<>();
+
+	private static class LoadedScript {
+		final String script;
+		final Project prj;
+		final ProjectWatcher.State state;
+		// the modification times of all the script's files
+		final Map<Path, Long> fileTimes;
+		final Path jar;
+		final long jarTime;
+		final URLClassLoader loader;
+		final Method main;
+		int active;
+		boolean retired;
+
+		LoadedScript(String script, Project prj, ProjectWatcher.State state, Map<Path, Long> fileTimes, Path jar,
+				long jarTime, URLClassLoader loader, Method main) {
+			this.script = script;
+			this.prj = prj;
+			this.state = state;
+			this.fileTimes = fileTimes;
+			this.jar = jar;
+			this.jarTime = jarTime;
+			this.loader = loader;
+			this.main = main;
+		}
+	}
+
+	@Override
+	public Integer doCall() throws IOException {
+		if (connect != null) {
+			if (scriptOrFile == null) {
+				throw new ExitException(EXIT_INVALID_INPUT, "A script to execute is required when using --connect");
+			}
+			return connect(connect, Util.getCwd(), scriptOrFile, userParams, System.in, getStdout(), System.err);
+		}
+		if (scriptOrFile != null) {
+			throw new ExitException(EXIT_INVALID_INPUT, "A script can only be given when using --connect");
+		}
+		try (ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+			String token = UUID.randomUUID().toString();
+			Path tokenFile = getTokenFile(server.getLocalPort());
+			writeTokenFile(tokenFile, token);
+			try {
+				info("Serving scripts on " + server.getInetAddress().getHostAddress() + ":" + server.getLocalPort()
+						+ ", clients must first send the token found in " + tokenFile);
+				serve(server, token);
+			} finally {
+				Files.deleteIfExists(tokenFile);
+			}
+		}
+		return EXIT_OK;
+	}
+
+	/**
+	 * Returns the file containing the token clients of the server listening on
+	 * the given port must send.
+	 */
+	static Path getTokenFile(int port) {
+		return Settings.getConfigDir().resolve("serve-" + port + ".token");
+	}
+
+	// Only the current user may read the token
+	private static void writeTokenFile(Path tokenFile, String token) throws IOException {
+		Files.createDirectories(tokenFile.getParent());
+		Files.deleteIfExists(tokenFile);
+		if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+			Files.createFile(tokenFile,
+					PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+		} else {
+			Files.createFile(tokenFile);
+		}
+		Util.writeString(tokenFile, token);
+	}
+
+	// When run by the launcher script our stdout gets captured, the script's
+	// output has to go to the stdout the launcher passed on instead
+	private static OutputStream getStdout() throws IOException {
+		if (InProcessRunner.launchedByScript()) {
+			Path file = InProcessRunner.getStdoutFile();
+			if (file == null) {
+				throw new ExitException(EXIT_UNEXPECTED_STATE, "The launcher doesn't provide access to stdout");
+			}
+			return new FileOutputStream(file.toFile(), true);
+		}
+		return System.out;
+	}
+
+	/**
+	 * Executes the given script on the server listening on the given local port.
+	 * The given stdin gets sent to the server while the script's output gets
+	 * written to the given streams.
+	 *
+	 * @return The exit code of the script
+	 */
+	static int connect(int port, Path cwd, String script, List<String> args, InputStream stdin, OutputStream stdout,
+			OutputStream stderr) throws IOException {
+		Path tokenFile = getTokenFile(port);
+		if (!Files.isRegularFile(tokenFile)) {
+			throw new ExitException(EXIT_INVALID_INPUT,
+					"No server is listening on port " + port + ", " + tokenFile + " not found");
+		}
+		String token = Util.readString(tokenFile).trim();
+		try (Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+				DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+			out.writeUTF(token);
+			out.writeUTF(cwd.toAbsolutePath().toString());
+			out.writeUTF(script);
+			out.writeInt(args.size());
+			for (String arg : args) {
+				out.writeUTF(arg);
+			}
+			out.flush();
+			startStdinSender(stdin, out);
+			while (true) {
+				int channel = in.read();
+				if (channel < 0) {
+					throw new ExitException(EXIT_UNEXPECTED_STATE,
+							"The server closed the connection before " + script + " finished");
+				}
+				if (channel == CHANNEL_EXIT) {
+					return in.readInt();
+				}
+				byte[] chunk = new byte[in.readInt()];
+				in.readFully(chunk);
+				OutputStream os = channel == CHANNEL_STDOUT ? stdout : stderr;
+				os.write(chunk);
+				os.flush();
+			}
+		} catch (ConnectException e) {
+			throw new ExitException(EXIT_INVALID_INPUT, "Unable to connect to the server on port " + port, e);
+		}
+	}
+
+	private static void startStdinSender(InputStream stdin, DataOutputStream out) {
+		Thread t = new Thread(() -> {
+			try {
+				byte[] buf = new byte[8192];
+				int len;
+				while ((len = stdin.read(buf)) > 0) {
+					out.writeInt(len);
+					out.write(buf, 0, len);
+					out.flush();
+				}
+				out.writeInt(0);
+				out.flush();
+			} catch (IOException e) {
+				// the script finished or the server went away
+			}
+		}, "jbang-serve-stdin");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Accepts connections on the given socket, handling each on a thread of its
+	 * own, until the socket gets closed. Clients must send the given token.
+	 * System.in, System.out and System.err are routed to the executions while
+	 * this is running and get restored afterwards.
+	 */
+	void serve(ServerSocket server, String token) {
+		installStreams();
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			while (!server.isClosed()) {
+				Socket socket = server.accept();
+				executor.submit(() -> handle(socket, token));
+			}
+		} catch (IOException e) {
+			if (!server.isClosed()) {
+				warn("Unable to accept connections: " + e.getMessage());
+			}
+		} finally {
+			executor.shutdown();
+			restoreStreams();
+		}
+	}
+
+	private void handle(Socket socket, String token) {
+		try (Socket s = socket;
+				DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+			s.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+			if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+					in.readUTF().getBytes(StandardCharsets.UTF_8))) {
+				Util.verboseMsg("Rejected connection from " + s.getRemoteSocketAddress() + ", invalid token");
+				return;
+			}
+			s.setSoTimeout(0);
+			String cwd = in.readUTF();
+			String script = resolveScript(cwd, in.readUTF());
+			int argCount = in.readInt();
+			List<String> args = new ArrayList<>();
+			for (int i = 0; i < argCount; i++) {
+				args.add(in.readUTF());
+			}
+			PipedInputStream stdin = new PipedInputStream(65536);
+			startStdinFeeder(in, new PipedOutputStream(stdin));
+			OutputStream stdout = new FramedOutputStream(out, CHANNEL_STDOUT);
+			OutputStream stderr = new FramedOutputStream(out, CHANNEL_STDERR);
+
+			int exitCode;
+			try {
+				exitCode = execute(script, args, stdin, stdout, stderr);
+			} catch (ExitException e) {
+				stderr.write(("[jbang] " + e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8));
+				exitCode = e.getStatus();
+			} catch (IOException | RuntimeException e) {
+				Util.errorMsg("Unable to execute " + script, e);
+				String msg = "[jbang] Unable to execute " + script + ": " + e + "\n";
+				stderr.write(msg.getBytes(StandardCharsets.UTF_8));
+				exitCode = EXIT_INTERNAL_ERROR;
+			}
+			synchronized (out) {
+				out.writeByte(CHANNEL_EXIT);
+				out.writeInt(exitCode);
+				out.flush();
+			}
+		} catch (IOException e) {
+			Util.verboseMsg("Connection failed", e);
+		}
+	}
+
+	// Local files are resolved against the client's working directory,
+	// anything else (URLs, aliases, GAVs) is used as-is
+	private static String resolveScript(String cwd, String script) {
+		try {
+			Path file = Paths.get(cwd).resolve(script);
+			if (Files.exists(file)) {
+				return file.toAbsolutePath().normalize().toString();
+			}
+		} catch (InvalidPathException e) {
+			// not a file
+		}
+		return script;
+	}
+
+	private static void startStdinFeeder(DataInputStream in, PipedOutputStream stdin) {
+		Thread t = new Thread(() -> {
+			try (OutputStream os = stdin) {
+				byte[] buf = new byte[8192];
+				int len;
+				while ((len = in.readInt()) > 0) {
+					while (len > 0) {
+						int n = in.read(buf, 0, Math.min(len, buf.length));
+						if (n < 0) {
+							return;
+						}
+						os.write(buf, 0, n);
+						len -= n;
+					}
+				}
+			} catch (IOException e) {
+				// the client went away or the script stopped reading
+			}
+		}, "jbang-serve-stdin");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	private int execute(String script, List<String> args, InputStream stdin, OutputStream stdout,
+			OutputStream stderr) throws IOException {
+		LoadedScript ls = acquire(script);
+		try {
+			stdinTarget.set(stdin);
+			stdoutTarget.set(stdout);
+			stderrTarget.set(stderr);
+			int exitCode = InProcessRunner.invokeMain(ls.main, ls.loader, args.toArray(new String[0]));
+			System.out.flush();
+			System.err.flush();
+			return exitCode;
+		} finally {
+			stdinTarget.remove();
+			stdoutTarget.remove();
+			stderrTarget.remove();
+			release(ls);
+		}
+	}
+
+	/**
+	 * Returns the loaded script, building and loading it when it's not loaded yet
+	 * or any of its files changed.
+	 */
+	private LoadedScript acquire(String script) throws IOException {
+		synchronized (locks.computeIfAbsent(script, k -> new Object())) {
+			LoadedScript current;
+			synchronized (this) {
+				current = scripts.get(script);
+				if (current != null && current.fileTimes.equals(getFileTimes(current.state))
+						&& current.jarTime == getTime(current.jar)) {
+					current.active++;
+					return current;
+				}
+			}
+
+			RunContext ctx = RunContext.empty();
+			ctx.setMainRequired(true);
+			Project prj = ctx.forResource(script);
+			ProjectWatcher.State state = new ProjectWatcher.State(prj);
+			if (current != null && state.sameClassPath(current.state)) {
+				prj.setResolvedClassPath(current.prj.resolveClassPath());
+			}
+			Code code = prj.builder().build();
+			String reason = InProcessRunner.checkCode(code, ctx);
+			if (reason != null) {
+				throw new ExitException(EXIT_INVALID_INPUT, "Unable to serve " + script + " because " + reason);
+			}
+			Path jar = code.getJarFile();
+			long jarTime = getTime(jar);
+
+			synchronized (this) {
+				LoadedScript result;
+				if (current != null && current.jar.equals(jar) && current.jarTime == jarTime) {
+					result = new LoadedScript(script, prj, state, getFileTimes(state), jar, jarTime,
+							current.loader, current.main);
+				} else {
+					if (current != null) {
+						info("Reloading " + script);
+					}
+					URLClassLoader loader = InProcessRunner.createClassLoader(code, ctx);
+					Method main = InProcessRunner.findMain(loader, ctx.getMainClassOr(code));
+					result = new LoadedScript(script, prj, state, getFileTimes(state), jar, jarTime, loader, main);
+				}
+				if (current != null) {
+					current.retired = true;
+					closeIfUnused(current, result);
+				}
+				scripts.put(script, result);
+				result.active++;
+				return result;
+			}
+		}
+	}
+
+	private synchronized void release(LoadedScript ls) {
+		ls.active--;
+		closeIfUnused(ls, scripts.get(ls.script));
+	}
+
+	// Closes the class loader of a script that was replaced and is no longer
+	// being executed, unless the replacement still uses it
+	private void closeIfUnused(LoadedScript ls, LoadedScript replacement) {
+		if (ls.retired && ls.active <= 0 && (replacement == null || replacement.loader != ls.loader)) {
+			try {
+				ls.loader.close();
+			} catch (IOException e) {
+				Util.verboseMsg("Unable to close class loader", e);
+			}
+		}
+	}
+
+	private static Map<Path, Long> getFileTimes(ProjectWatcher.State state) {
+		Map<Path, Long> result = new HashMap<>();
+		for (Path file : state.files) {
+			result.put(file, getTime(file));
+		}
+		return result;
+	}
+
+	private static long getTime(Path file) {
+		try {
+			return Files.getLastModifiedTime(file).toMillis();
+		} catch (IOException e) {
+			return -1;
+		}
+	}
+
+	// System.in, System.out and System.err get replaced by streams that
+	// forward to the streams of the execution the current thread belongs to,
+	// for as long as any server is running
+	private static synchronized void installStreams() {
+		if (servers++ == 0) {
+			originalIn = System.in;
+			originalOut = System.out;
+			originalErr = System.err;
+			System.setIn(new RoutedInputStream(originalIn));
+			System.setOut(new PrintStream(new RoutedOutputStream(originalOut, stdoutTarget), true));
+			System.setErr(new PrintStream(new RoutedOutputStream(originalErr, stderrTarget), true));
+		}
+	}
+
+	private static synchronized void restoreStreams() {
+		if (--servers == 0) {
+			System.setIn(originalIn);
+			System.setOut(originalOut);
+			System.setErr(originalErr);
+			originalIn = null;
+			originalOut = null;
+			originalErr = null;
+		}
+	}
+
+	private static class RoutedInputStream extends InputStream {
+		private final InputStream fallback;
+
+		RoutedInputStream(InputStream fallback) {
+			this.fallback = fallback;
+		}
+
+		private InputStream target() {
+			InputStream in = stdinTarget.get();
+			return in != null ? in : fallback;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return target().read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return target().read(b, off, len);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return target().available();
+		}
+	}
+
+	private static class RoutedOutputStream extends OutputStream {
+		private final OutputStream fallback;
+		private final ThreadLocal<OutputStream> target;
+
+		RoutedOutputStream(OutputStream fallback, ThreadLocal<OutputStream> target) {
+			this.fallback = fallback;
+			this.target = target;
+		}
+
+		private OutputStream target() {
+			OutputStream out = target.get();
+			return out != null ? out : fallback;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			target().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			target().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target().flush();
+		}
+	}
+
+	private static class FramedOutputStream extends OutputStream {
+		private final DataOutputStream out;
+		private final int channel;
+
+		FramedOutputStream(DataOutputStream out, int channel) {
+			this.out = out;
+			this.channel = channel;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (len > 0) {
+				synchronized (out) {
+					out.writeByte(channel);
+					out.writeInt(len);
+					out.write(b, off, len);
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			synchronized (out) {
+				out.flush();
+			}
+		}
+	}
+}
@@ -9,6 +9,7 @@ import java.lang.reflect.Type;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -25,7 +26,9 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializer;
 import com.google.gson.reflect.TypeToken;
 
+import dev.jbang.Cache;
 import dev.jbang.Settings;
+import dev.jbang.util.LockFile;
 import dev.jbang.util.Util;
 
 public class DependencyCache {
@@ -64,24 +67,30 @@ public class DependencyCache {
 
 	public static void cache(String depsHash, List<ArtifactInfo> artifacts) {
 		// Add classpath to cache
-
-		Map<String, List<ArtifactInfo>> cache = getCache();
-		cache.put(depsHash, artifacts);
-
-		try (Writer out = Files.newBufferedWriter(Settings.getCacheDependencyFile())) {
-			JsonSerializer<ArtifactInfo> serializer = (src, typeOfSrc, context) -> {
-				JsonObject json = new JsonObject();
-				json.addProperty("gav", src.getCoordinate().toCanonicalForm());
-				json.addProperty("file", src.getFile().toString());
-				json.addProperty("ts", src.getTimestamp());
-				return json;
-			};
-			Gson parser = new GsonBuilder()
-											.setPrettyPrinting()
-											.registerTypeAdapter(ArtifactInfo.class, serializer)
-											.create();
-
-			parser.toJson(cache, out);
+		try (LockFile lock = Cache.lock(Settings.getCacheDependencyFile())) {
+			// Re-read the cache so we don't drop entries written by other processes
+			depCache = null;
+			Map<String, List<ArtifactInfo>> cache = getCache();
+			cache.put(depsHash, artifacts);
+
+			Path cacheFile = Settings.getCacheDependencyFile();
+			Path tmpFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+			try (Writer out = Files.newBufferedWriter(tmpFile)) {
+				JsonSerializer<ArtifactInfo> serializer = (src, typeOfSrc, context) -> {
+					JsonObject json = new JsonObject();
+					json.addProperty("gav", src.getCoordinate().toCanonicalForm());
+					json.addProperty("file", src.getFile().toString());
+					json.addProperty("ts", src.getTimestamp());
+					return json;
+				};
+				Gson parser = new GsonBuilder()
+												.setPrettyPrinting()
+												.registerTypeAdapter(ArtifactInfo.class, serializer)
+												.create();
+
+				parser.toJson(cache, out);
+			}
+			Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
 		} catch (IOException e) {
 			Util.errorMsg("Issue writing to dependency cache", e);
 		}
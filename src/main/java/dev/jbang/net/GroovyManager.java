@@ -11,6 +11,7 @@ import java.util.regex.Pattern;
 import dev.jbang.Cache;
 import dev.jbang.Settings;
 import dev.jbang.cli.ExitException;
+import dev.jbang.util.LockFile;
 import dev.jbang.util.UnpackUtil;
 import dev.jbang.util.Util;
 
@@ -34,37 +35,44 @@ public class GroovyManager {
 	}
 
 	public static Path downloadAndInstallGroovy(String version) {
-		Util.infoMsg("Downloading Groovy " + version + ". Be patient, this can take several minutes...");
-		String url = getGroovyDownloadUrl(version);
-		Util.verboseMsg("Downloading " + url);
 		Path groovyDir = getGroovyPath(version);
-		Path groovyTmpDir = groovyDir.getParent().resolve(groovyDir.getFileName().toString() + ".tmp");
-		Path groovyOldDir = groovyDir.getParent().resolve(groovyDir.getFileName().toString() + ".old");
-		Util.deletePath(groovyTmpDir, false);
-		Util.deletePath(groovyOldDir, false);
-		try {
-			Path groovyPkg = Util.downloadAndCacheFile(url);
-			Util.infoMsg("Installing Groovy " + version + "...");
-			Util.verboseMsg("Unpacking to " + groovyDir);
-			UnpackUtil.unpack(groovyPkg, groovyTmpDir);
+		try (LockFile lock = Cache.lock(Cache.CacheClass.groovycs, groovyDir.getFileName().toString())) {
+			// Another process might have installed it while we weren't holding the lock
 			if (Files.isDirectory(groovyDir)) {
-				Files.move(groovyDir, groovyOldDir);
+				Util.verboseMsg("Groovy " + version + " was installed by another process");
+				return groovyDir;
 			}
-			Files.move(groovyTmpDir, groovyDir);
+			Util.infoMsg("Downloading Groovy " + version + ". Be patient, this can take several minutes...");
+			String url = getGroovyDownloadUrl(version);
+			Util.verboseMsg("Downloading " + url);
+			Path groovyTmpDir = groovyDir.getParent().resolve(groovyDir.getFileName().toString() + ".tmp");
+			Path groovyOldDir = groovyDir.getParent().resolve(groovyDir.getFileName().toString() + ".old");
+			Util.deletePath(groovyTmpDir, false);
 			Util.deletePath(groovyOldDir, false);
-			return groovyDir;
-		} catch (Exception e) {
-			Util.deletePath(groovyTmpDir, true);
-			if (!Files.isDirectory(groovyDir) && Files.isDirectory(groovyOldDir)) {
-				try {
-					Files.move(groovyOldDir, groovyDir);
-				} catch (IOException ex) {
-					// Ignore
+			try {
+				Path groovyPkg = Util.downloadAndCacheFile(url);
+				Util.infoMsg("Installing Groovy " + version + "...");
+				Util.verboseMsg("Unpacking to " + groovyDir);
+				UnpackUtil.unpack(groovyPkg, groovyTmpDir);
+				if (Files.isDirectory(groovyDir)) {
+					Files.move(groovyDir, groovyOldDir);
 				}
+				Files.move(groovyTmpDir, groovyDir);
+				Util.deletePath(groovyOldDir, false);
+				return groovyDir;
+			} catch (Exception e) {
+				Util.deletePath(groovyTmpDir, true);
+				if (!Files.isDirectory(groovyDir) && Files.isDirectory(groovyOldDir)) {
+					try {
+						Files.move(groovyOldDir, groovyDir);
+					} catch (IOException ex) {
+						// Ignore
+					}
+				}
+				Util.errorMsg("Required Groovy version not possible to download or install.");
+				throw new ExitException(EXIT_UNEXPECTED_STATE,
+						"Unable to download or install Groovy version " + version, e);
 			}
-			Util.errorMsg("Required Groovy version not possible to download or install.");
-			throw new ExitException(EXIT_UNEXPECTED_STATE,
-					"Unable to download or install Groovy version " + version, e);
 		}
 	}
 
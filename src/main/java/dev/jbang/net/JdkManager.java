@@ -3,6 +3,7 @@ package dev.jbang.net;
 import static dev.jbang.cli.BaseCommand.EXIT_INVALID_INPUT;
 import static dev.jbang.cli.BaseCommand.EXIT_UNEXPECTED_STATE;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -18,6 +19,8 @@ import dev.jbang.Cache;
 import dev.jbang.Settings;
 import dev.jbang.cli.ExitException;
 import dev.jbang.util.JavaUtil;
+import dev.jbang.util.JdkInfo;
+import dev.jbang.util.LockFile;
 import dev.jbang.util.UnpackUtil;
 import dev.jbang.util.Util;
 
@@ -25,6 +28,8 @@ public class JdkManager {
 	private static final String FOOJAY_JDK_DOWNLOAD_URL = "https://api.foojay.io/disco/v2.0/directuris?";
 	private static final String FOOJAY_JDK_VERSIONS_URL = "https://api.foojay.io/disco/v3.0/distributions/%s?";
 
+	private static List<JdkInfo> systemJdks = null;
+
 	private static String getDownloadUrl(int version, Util.OS os, Util.Arch arch, String distro) {
 		Map<String, String> params = new HashMap<>();
 		params.put("version", String.valueOf(version));
@@ -111,53 +116,230 @@ public class JdkManager {
 	public static Path getInstalledJdk(int version) {
 		Path jdkDir = getJdkPath(version);
 		if (!Files.isDirectory(jdkDir)) {
+			Optional<JdkInfo> systemJdk = findSystemJdk(version);
+			if (systemJdk.isPresent()) {
+				Util.verboseMsg("Using system " + systemJdk.get());
+				return systemJdk.get().home;
+			}
 			jdkDir = downloadAndInstallJdk(version);
 		}
 		return jdkDir;
 	}
 
+	/**
+	 * Looks for a JDK with the given major version among the JDKs that were
+	 * installed on the system by other means than JBang. See
+	 * <code>listSystemJdks()</code> for the locations that are searched.
+	 *
+	 * @param version The major Java version to look for
+	 * @return The information for the JDK or <code>Optional.empty()</code> if no
+	 *         matching JDK was found
+	 */
+	public static Optional<JdkInfo> findSystemJdk(int version) {
+		return listSystemJdks()
+								.stream()
+								.filter(jdk -> jdk.getMajorVersion() == version)
+								.findFirst();
+	}
+
+	/**
+	 * Returns the list of JDKs that were installed on the system by other means
+	 * than JBang, newest version first. It looks in the well-known locations used
+	 * by package managers and SDKMAN and at the <code>java</code> executables
+	 * found on the PATH. Only complete JDKs (those that include
+	 * <code>javac</code>) for the current architecture are returned. Only
+	 * <code>release</code> files are read for this, or the cached information for
+	 * the executables on the PATH, so no processes are started in the common
+	 * case. The result is determined only once. Discovery can be turned off by
+	 * setting the <code>JBANG_NO_JDK_DISCOVERY</code> environment variable to
+	 * <code>true</code>.
+	 */
+	public static List<JdkInfo> listSystemJdks() {
+		String noDiscovery = System.getenv().getOrDefault(Settings.ENV_NO_JDK_DISCOVERY, "false");
+		if (noDiscovery.equalsIgnoreCase("true")) {
+			return Collections.emptyList();
+		}
+		if (systemJdks == null) {
+			systemJdks = Collections.unmodifiableList(findSystemJdks());
+		}
+		return systemJdks;
+	}
+
+	public static void clearSystemJdks() {
+		systemJdks = null;
+	}
+
+	private static List<JdkInfo> findSystemJdks() {
+		Map<Path, JdkInfo> jdks = new LinkedHashMap<>();
+		for (Path dir : getSystemJdkLocations()) {
+			try (Stream<Path> homes = Files.list(dir)) {
+				homes	.sorted()
+						.map(JdkManager::toJdkHome)
+						.forEach(home -> JdkInfo.fromReleaseFile(home).ifPresent(jdk -> addSystemJdk(jdks, jdk)));
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+		String envPath = System.getenv("PATH");
+		String java = Util.isWindows() ? "java.exe" : "java";
+		if (envPath != null) {
+			for (String dir : envPath.split(File.pathSeparator)) {
+				Path javaCmd = Paths.get(dir).resolve(java);
+				if (Files.isExecutable(javaCmd)) {
+					JdkInfo.forJavaCmd(javaCmd).ifPresent(jdk -> addSystemJdk(jdks, jdk));
+				}
+			}
+		}
+		Util.verboseMsg("Found " + jdks.size() + " system JDK(s)");
+		List<JdkInfo> result = new ArrayList<>(jdks.values());
+		// Sorting is stable, so for equal versions the search order is kept
+		result.sort((jdk1, jdk2) -> compareVersions(jdk2.version, jdk1.version));
+		return result;
+	}
+
+	// Compares versions like "17.0.10", "17.0.9+9" or "1.8.0_392" by their numbers
+	static int compareVersions(String v1, String v2) {
+		String[] v1p = v1.split("[-._+]");
+		String[] v2p = v2.split("[-._+]");
+		int maxl = Math.max(v1p.length, v2p.length);
+		for (int i = 0; i < maxl; i++) {
+			int cmp = Integer.compare(safeParseNum(v1p, i), safeParseNum(v2p, i));
+			if (cmp != 0) {
+				return cmp;
+			}
+		}
+		return 0;
+	}
+
+	private static int safeParseNum(String[] versionParts, int i) {
+		if (i < versionParts.length) {
+			try {
+				return Integer.parseUnsignedInt(versionParts[i]);
+			} catch (NumberFormatException ex) {
+				return -1;
+			}
+		}
+		return 0;
+	}
+
+	private static List<Path> getSystemJdkLocations() {
+		List<Path> dirs = new ArrayList<>();
+		String sdkmanDir = System.getenv("SDKMAN_DIR");
+		if (sdkmanDir != null) {
+			dirs.add(Paths.get(sdkmanDir, "candidates", "java"));
+		} else {
+			dirs.add(Paths.get(System.getProperty("user.home"), ".sdkman", "candidates", "java"));
+		}
+		if (Util.getOS() == Util.OS.mac) {
+			dirs.add(Paths.get("/Library/Java/JavaVirtualMachines"));
+		} else if (!Util.isWindows()) {
+			dirs.add(Paths.get("/usr/lib/jvm"));
+			dirs.add(Paths.get("/usr/java"));
+			dirs.add(Paths.get("/opt/java"));
+		}
+		return dirs;
+	}
+
+	private static Path toJdkHome(Path dir) {
+		Path macHome = dir.resolve("Contents").resolve("Home");
+		return Files.isDirectory(macHome) ? macHome : dir;
+	}
+
+	private static void addSystemJdk(Map<Path, JdkInfo> jdks, JdkInfo jdk) {
+		if (jdk.home == null) {
+			return;
+		}
+		String javac = Util.isWindows() ? "javac.exe" : "javac";
+		if (!Files.isRegularFile(jdk.home.resolve("bin").resolve(javac))) {
+			return;
+		}
+		if (!isCurrentArch(jdk)) {
+			Util.verboseMsg("Skipping " + jdk + " because it's for a different architecture");
+			return;
+		}
+		try {
+			jdks.putIfAbsent(jdk.home.toRealPath(), jdk);
+		} catch (IOException e) {
+			// Ignore
+		}
+	}
+
+	// JDKs that don't tell their architecture are assumed to be for this one
+	private static boolean isCurrentArch(JdkInfo jdk) {
+		if (jdk.arch == null || jdk.arch.isEmpty()) {
+			return true;
+		}
+		Util.Arch arch = normalize(Util.getArch(jdk.arch));
+		Util.Arch current = normalize(Util.getArch());
+		return arch == Util.Arch.unknown || current == Util.Arch.unknown || arch == current;
+	}
+
+	private static Util.Arch normalize(Util.Arch arch) {
+		return arch == Util.Arch.arm64 ? Util.Arch.aarch64 : arch;
+	}
+
 	public static Path downloadAndInstallJdk(int version) {
-		Util.infoMsg("Downloading JDK " + version + ". Be patient, this can take several minutes...");
-		String url = getDownloadUrl(version, Util.getOS(), Util.getArch(), Util.getVendor());
-		Util.verboseMsg("Downloading " + url);
+		return downloadAndInstallJdk(version, false);
+	}
+
+	/**
+	 * Downloads and installs the given JDK version, unless it is already installed.
+	 *
+	 * @param version   The major version of the JDK to install
+	 * @param reinstall When <code>true</code> an already installed JDK gets
+	 *                  replaced, unless another process just installed it while
+	 *                  we were waiting for the lock
+	 * @return The path to the installed JDK
+	 */
+	public static Path downloadAndInstallJdk(int version, boolean reinstall) {
 		Path jdkDir = getJdkPath(version);
-		Path jdkTmpDir = jdkDir.getParent().resolve(jdkDir.getFileName().toString() + ".tmp");
-		Path jdkOldDir = jdkDir.getParent().resolve(jdkDir.getFileName().toString() + ".old");
-		Util.deletePath(jdkTmpDir, false);
-		Util.deletePath(jdkOldDir, false);
-		try {
-			Path jdkPkg = Util.downloadAndCacheFile(url);
-			Util.infoMsg("Installing JDK " + version + "...");
-			Util.verboseMsg("Unpacking to " + jdkDir.toString());
-			UnpackUtil.unpackJdk(jdkPkg, jdkTmpDir);
-			if (Files.isDirectory(jdkDir)) {
-				Files.move(jdkDir, jdkOldDir);
+		try (LockFile lock = Cache.lock(Cache.CacheClass.jdks, jdkDir.getFileName().toString())) {
+			// Another process might have installed it while we weren't holding the lock
+			if (Files.isDirectory(jdkDir) && (!reinstall || lock.isContended())) {
+				Util.verboseMsg("JDK " + version + " was installed by another process");
+				return jdkDir;
 			}
-			Files.move(jdkTmpDir, jdkDir);
+			Util.infoMsg("Downloading JDK " + version + ". Be patient, this can take several minutes...");
+			String url = getDownloadUrl(version, Util.getOS(), Util.getArch(), Util.getVendor());
+			Util.verboseMsg("Downloading " + url);
+			Path jdkTmpDir = jdkDir.getParent().resolve(jdkDir.getFileName().toString() + ".tmp");
+			Path jdkOldDir = jdkDir.getParent().resolve(jdkDir.getFileName().toString() + ".old");
+			Util.deletePath(jdkTmpDir, false);
 			Util.deletePath(jdkOldDir, false);
-			if (getDefaultJdk() < 0) {
-				setDefaultJdk(version);
-			}
-			return jdkDir;
-		} catch (Exception e) {
-			Util.deletePath(jdkTmpDir, true);
-			if (!Files.isDirectory(jdkDir) && Files.isDirectory(jdkOldDir)) {
-				try {
-					Files.move(jdkOldDir, jdkDir);
-				} catch (IOException ex) {
-					// Ignore
+			try {
+				Path jdkPkg = Util.downloadAndCacheFile(url);
+				Util.infoMsg("Installing JDK " + version + "...");
+				Util.verboseMsg("Unpacking to " + jdkDir.toString());
+				UnpackUtil.unpackJdk(jdkPkg, jdkTmpDir);
+				if (Files.isDirectory(jdkDir)) {
+					Files.move(jdkDir, jdkOldDir);
+				}
+				Files.move(jdkTmpDir, jdkDir);
+				Util.deletePath(jdkOldDir, false);
+				if (getDefaultJdk() < 0) {
+					setDefaultJdk(version);
 				}
+				return jdkDir;
+			} catch (Exception e) {
+				Util.deletePath(jdkTmpDir, true);
+				if (!Files.isDirectory(jdkDir) && Files.isDirectory(jdkOldDir)) {
+					try {
+						Files.move(jdkOldDir, jdkDir);
+					} catch (IOException ex) {
+						// Ignore
+					}
+				}
+				Util.errorMsg("Required Java version not possible to download or install. You can run with '--java "
+						+ JavaUtil.determineJavaVersion() + "' to force using the default installed Java.");
+				throw new ExitException(EXIT_UNEXPECTED_STATE,
+						"Unable to download or install JDK version " + version, e);
 			}
-			Util.errorMsg("Required Java version not possible to download or install. You can run with '--java "
-					+ JavaUtil.determineJavaVersion() + "' to force using the default installed Java.");
-			throw new ExitException(EXIT_UNEXPECTED_STATE,
-					"Unable to download or install JDK version " + version, e);
 		}
 	}
 
 	public static void uninstallJdk(int version) {
-		Path jdkDir = JdkManager.getInstalledJdk(version);
-		if (jdkDir != null) {
+		Path jdkDir = getJdkPath(version);
+		if (Files.isDirectory(jdkDir)) {
 			int defaultJdk = getDefaultJdk();
 			if (Util.isWindows()) {
 				// On Windows we have to check nobody is currently using the JDK or we could
@@ -229,6 +411,17 @@ public class JdkManager {
 									.min(Integer::compareTo);
 	}
 
+	/**
+	 * Like <code>nextInstalledJdk()</code> but also takes the JDKs into account
+	 * that were installed on the system by other means than JBang.
+	 */
+	public static Optional<Integer> nextAvailableJdk(int minVersion) {
+		return Stream	.concat(listInstalledJdks().stream(),
+								listSystemJdks().stream().map(JdkInfo::getMajorVersion))
+						.filter(v -> v >= minVersion)
+						.min(Integer::compareTo);
+	}
+
 	public static Optional<Integer> prevInstalledJdk(int maxVersion) {
 		return listInstalledJdks()
 									.stream()
@@ -260,7 +453,8 @@ public class JdkManager {
 
 	public static void setDefaultJdk(int version) {
 		if (!isInstalledJdk(version) || getDefaultJdk() != version) {
-			Path jdk = getInstalledJdk(version);
+			// The default JDK always has to be one that's managed by JBang
+			Path jdk = isInstalledJdk(version) ? getJdkPath(version) : downloadAndInstallJdk(version);
 			// Check again if we really need to create a link because the
 			// previous line might already have caused it to be created
 			if (getDefaultJdk() != version) {
@@ -348,14 +542,6 @@ public class JdkManager {
 	}
 
 	public static Optional<Integer> resolveJavaVersionFromPath(Path link) {
-		try {
-			return Files.lines(link.resolve("release"))
-						.filter(l -> l.startsWith("JAVA_VERSION"))
-						.map(JavaUtil::parseJavaOutput)
-						.findAny();
-		} catch (IOException e) {
-			Util.verboseMsg("Unable to read 'release' file in path:" + link);
-			return Optional.empty();
-		}
+		return JdkInfo.fromReleaseFile(link).map(JdkInfo::getMajorVersion);
 	}
 }
@@ -9,6 +9,7 @@ import java.nio.file.Path;
 import dev.jbang.Cache;
 import dev.jbang.Settings;
 import dev.jbang.cli.ExitException;
+import dev.jbang.util.LockFile;
 import dev.jbang.util.UnpackUtil;
 import dev.jbang.util.Util;
 
@@ -35,37 +36,44 @@ public class KotlinManager {
 	}
 
 	public static Path downloadAndInstallKotlin(String version) {
-		Util.infoMsg("Downloading Kotlin " + version + ". Be patient, this can take several minutes...");
-		String url = String.format(KOTLIN_DOWNLOAD_URL, version, version);
-		Util.verboseMsg("Downloading " + url);
 		Path kotlinDir = getKotlinPath(version);
-		Path kotlinTmpDir = kotlinDir.getParent().resolve(kotlinDir.getFileName().toString() + ".tmp");
-		Path kotlinOldDir = kotlinDir.getParent().resolve(kotlinDir.getFileName().toString() + ".old");
-		Util.deletePath(kotlinTmpDir, false);
-		Util.deletePath(kotlinOldDir, false);
-		try {
-			Path kotlinPkg = Util.downloadAndCacheFile(url);
-			Util.infoMsg("Installing Kotlin " + version + "...");
-			Util.verboseMsg("Unpacking to " + kotlinDir);
-			UnpackUtil.unpack(kotlinPkg, kotlinTmpDir);
+		try (LockFile lock = Cache.lock(Cache.CacheClass.kotlincs, kotlinDir.getFileName().toString())) {
+			// Another process might have installed it while we weren't holding the lock
 			if (Files.isDirectory(kotlinDir)) {
-				Files.move(kotlinDir, kotlinOldDir);
+				Util.verboseMsg("Kotlin " + version + " was installed by another process");
+				return kotlinDir;
 			}
-			Files.move(kotlinTmpDir, kotlinDir);
+			Util.infoMsg("Downloading Kotlin " + version + ". Be patient, this can take several minutes...");
+			String url = String.format(KOTLIN_DOWNLOAD_URL, version, version);
+			Util.verboseMsg("Downloading " + url);
+			Path kotlinTmpDir = kotlinDir.getParent().resolve(kotlinDir.getFileName().toString() + ".tmp");
+			Path kotlinOldDir = kotlinDir.getParent().resolve(kotlinDir.getFileName().toString() + ".old");
+			Util.deletePath(kotlinTmpDir, false);
 			Util.deletePath(kotlinOldDir, false);
-			return kotlinDir;
-		} catch (Exception e) {
-			Util.deletePath(kotlinTmpDir, true);
-			if (!Files.isDirectory(kotlinDir) && Files.isDirectory(kotlinOldDir)) {
-				try {
-					Files.move(kotlinOldDir, kotlinDir);
-				} catch (IOException ex) {
-					// Ignore
+			try {
+				Path kotlinPkg = Util.downloadAndCacheFile(url);
+				Util.infoMsg("Installing Kotlin " + version + "...");
+				Util.verboseMsg("Unpacking to " + kotlinDir);
+				UnpackUtil.unpack(kotlinPkg, kotlinTmpDir);
+				if (Files.isDirectory(kotlinDir)) {
+					Files.move(kotlinDir, kotlinOldDir);
 				}
+				Files.move(kotlinTmpDir, kotlinDir);
+				Util.deletePath(kotlinOldDir, false);
+				return kotlinDir;
+			} catch (Exception e) {
+				Util.deletePath(kotlinTmpDir, true);
+				if (!Files.isDirectory(kotlinDir) && Files.isDirectory(kotlinOldDir)) {
+					try {
+						Files.move(kotlinOldDir, kotlinDir);
+					} catch (IOException ex) {
+						// Ignore
+					}
+				}
+				Util.errorMsg("Required Kotlin version not possible to download or install.");
+				throw new ExitException(EXIT_UNEXPECTED_STATE,
+						"Unable to download or install kotlinc version " + version, e);
 			}
-			Util.errorMsg("Required Kotlin version not possible to download or install.");
-			throw new ExitException(EXIT_UNEXPECTED_STATE,
-					"Unable to download or install kotlinc version " + version, e);
 		}
 	}
 
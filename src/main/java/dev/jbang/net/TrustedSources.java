@@ -31,6 +31,7 @@ public class TrustedSources {
 	final static Pattern r127 = Pattern.compile("(?i)^127.0.0.1(:\\d+)?$");
 
 	private String[] trustedSources;
+	private TrustedSourcesMatcher matcher;
 
 	private static TrustedSources instance;
 
@@ -72,92 +73,15 @@ public class TrustedSources {
 			return true;
 		}
 
-		final String domain = String.format("%s://%s", url.getScheme(), url.getAuthority());
-
-		for (String trustedSource : trustedSources) {
-			if ("*".equals(trustedSource)) {
-				return true;
-			}
-
-			if (domain.equals(trustedSource)) {
-				return true;
-			}
-
-			URI parsedTrustedSource;
-			if (trustedSource.startsWith("https://")) {
-				parsedTrustedSource = new URI(trustedSource);
-				if (!url.getScheme().equals(parsedTrustedSource.getScheme())) {
-					continue;
-				}
-			} else {
-				parsedTrustedSource = new URI("https://" + trustedSource);
-			}
-
-			if (url.getAuthority().equals(parsedTrustedSource.getAuthority())) {
-				if (pathMatches(url.getPath(), parsedTrustedSource.getPath())) {
-					return true;
-				} else {
-					continue;
-				}
-			}
-
-			if (trustedSource.contains("*")) {
-
-				String[] reversedAuthoritySegments = reverse(url.getAuthority().split("\\."));
-
-				String[] reversedTrustedSourceAuthoritySegments = reverse(
-						parsedTrustedSource.getAuthority().split("\\."));
-
-				boolean ruleIsSmaller = reversedTrustedSourceAuthoritySegments.length < reversedAuthoritySegments.length;
-				boolean ruleHasStarAtEnd = reversedTrustedSourceAuthoritySegments[reversedTrustedSourceAuthoritySegments.length
-						- 1].equals("*");
-				if (ruleIsSmaller && ruleHasStarAtEnd) {
-					reversedAuthoritySegments = Arrays.copyOfRange(reversedAuthoritySegments, 0,
-							reversedTrustedSourceAuthoritySegments.length);
-				}
-
-				boolean authorityMatches = true;
-				for (int i = 0; i < reversedAuthoritySegments.length; i++) {
-					String val = reversedAuthoritySegments[i];
-					String elementRule = reversedTrustedSourceAuthoritySegments[i];
-					if (elementRule.equals("*")
-							|| val.equals(elementRule)) {
-						// they match
-					} else {
-						authorityMatches = false;
-						break;
-					}
-				}
-
-				if (authorityMatches && pathMatches(url.getPath(), parsedTrustedSource.getPath())) {
-					return true;
-				}
-			}
-
+		if (matcher == null) {
+			matcher = new TrustedSourcesMatcher(trustedSources);
 		}
-
-		// default trusted for usability and trust
-		return url.toString().startsWith("https://github.com/jbangdev/");
-	}
-
-	boolean pathMatches(String open, String rule) {
-		if ("/".equals(rule)) {
+		if (matcher.isTrusted(url)) {
 			return true;
 		}
 
-		if (rule.endsWith("/")) {
-			rule = rule.substring(0, rule.length() - 1);
-		}
-
-		String[] openSegments = open.split("/");
-		String[] ruleSegments = rule.split("/");
-		for (int i = 0; i < ruleSegments.length; i++) {
-			if (openSegments.length - 1 < i || !ruleSegments[i].equals(openSegments[i])) {
-				return false;
-			}
-		}
-
-		return true;
+		// default trusted for usability and trust
+		return url.toString().startsWith("https://github.com/jbangdev/");
 	}
 
 	/**
@@ -231,6 +155,7 @@ public class TrustedSources {
 			throw new ExitException(2, "Error when writing to " + storage, e);
 		}
 		trustedSources = rules.toArray(new String[0]);
+		matcher = null;
 	}
 
 	public static void createTrustedSources() {
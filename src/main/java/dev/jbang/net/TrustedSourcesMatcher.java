@@ -0,0 +1,183 @@
+package dev.jbang.net;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dev.jbang.util.Util;
+
+/**
+ * A compiled version of a list of trust rules. Instead of parsing and comparing
+ * every rule for every URL that needs to be checked, the rules are parsed once
+ * and stored in lookup tables: a hash table for rules with a plain authority and
+ * a trie, keyed on the authority's segments in reverse order (so "org", "jbang",
+ * "www"), for rules containing wildcards. Each rule keeps its pre-split path so
+ * checking the path is a simple segment-by-segment comparison.
+ *
+ * The semantics are exactly the same as the original linear matching algorithm
+ * found in <code>TrustedSources</code>.
+ */
+class TrustedSourcesMatcher {
+	private static final String STAR = "*";
+
+	private boolean trustAll;
+	private final Set<String> exactDomains = new HashSet<>();
+	private final Map<String, List<Rule>> exactAuthorities = new HashMap<>();
+	private final Node wildcards = new Node(false);
+
+	private static class Rule {
+		final boolean httpsOnly;
+		// null means that any path matches
+		final String[] pathSegments;
+
+		Rule(boolean httpsOnly, String path) {
+			this.httpsOnly = httpsOnly;
+			if ("/".equals(path)) {
+				pathSegments = null;
+			} else {
+				if (path.endsWith("/")) {
+					path = path.substring(0, path.length() - 1);
+				}
+				pathSegments = path.split("/");
+			}
+		}
+
+		boolean matches(String scheme, String[] openSegments) {
+			if (httpsOnly && !"https".equals(scheme)) {
+				return false;
+			}
+			if (pathSegments == null) {
+				return true;
+			}
+			for (int i = 0; i < pathSegments.length; i++) {
+				if (openSegments.length - 1 < i || !pathSegments[i].equals(openSegments[i])) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static class Node {
+		// true if this node was reached by a "*" segment
+		final boolean star;
+		final Map<String, Node> children = new HashMap<>();
+		// rules whose authority ends exactly at this node
+		final List<Rule> rules = new ArrayList<>();
+		// rules whose authority ends at this node or any node below it
+		final List<Rule> subtreeRules = new ArrayList<>();
+
+		Node(boolean star) {
+			this.star = star;
+		}
+	}
+
+	TrustedSourcesMatcher(String[] trustedSources) {
+		if (trustedSources != null) {
+			for (String trustedSource : trustedSources) {
+				add(trustedSource);
+			}
+		}
+	}
+
+	private void add(String trustedSource) {
+		if (STAR.equals(trustedSource)) {
+			trustAll = true;
+			return;
+		}
+		exactDomains.add(trustedSource);
+
+		URI parsed;
+		boolean httpsOnly;
+		try {
+			if (trustedSource.startsWith("https://")) {
+				parsed = new URI(trustedSource);
+				httpsOnly = true;
+			} else {
+				parsed = new URI("https://" + trustedSource);
+				httpsOnly = false;
+			}
+		} catch (URISyntaxException e) {
+			Util.verboseMsg("Ignoring invalid trusted source: " + trustedSource);
+			return;
+		}
+		if (parsed.getAuthority() == null) {
+			return;
+		}
+
+		Rule rule = new Rule(httpsOnly, parsed.getPath());
+		exactAuthorities.computeIfAbsent(parsed.getAuthority(), k -> new ArrayList<>()).add(rule);
+
+		if (trustedSource.contains(STAR)) {
+			String[] segments = TrustedSources.reverse(parsed.getAuthority().split("\\."));
+			Node node = wildcards;
+			node.subtreeRules.add(rule);
+			for (String segment : segments) {
+				node = node.children.computeIfAbsent(segment, s -> new Node(STAR.equals(s)));
+				node.subtreeRules.add(rule);
+			}
+			node.rules.add(rule);
+		}
+	}
+
+	boolean isTrusted(URI url) {
+		if (trustAll) {
+			return true;
+		}
+		String scheme = url.getScheme();
+		String authority = url.getAuthority();
+		if (authority == null) {
+			return false;
+		}
+		if (exactDomains.contains(scheme + "://" + authority)) {
+			return true;
+		}
+		String[] openSegments = url.getPath().split("/");
+		List<Rule> rules = exactAuthorities.get(authority);
+		if (rules != null) {
+			for (Rule rule : rules) {
+				if (rule.matches(scheme, openSegments)) {
+					return true;
+				}
+			}
+		}
+		if (!wildcards.children.isEmpty()) {
+			String[] segments = TrustedSources.reverse(authority.split("\\."));
+			return matchWildcards(wildcards, segments, 0, scheme, openSegments);
+		}
+		return false;
+	}
+
+	private boolean matchWildcards(Node node, String[] segments, int idx, String scheme, String[] openSegments) {
+		if (idx == segments.length) {
+			// All of the URL's segments were matched, which means that
+			// all the rules that are at this node or longer will match
+			return anyMatches(node.subtreeRules, scheme, openSegments);
+		}
+		if (node.star && anyMatches(node.rules, scheme, openSegments)) {
+			// A rule that starts with "*" matches any number of leading segments
+			return true;
+		}
+		Node child = node.children.get(segments[idx]);
+		if (child != null && matchWildcards(child, segments, idx + 1, scheme, openSegments)) {
+			return true;
+		}
+		Node starChild = node.children.get(STAR);
+		return starChild != null && starChild != child
+				&& matchWildcards(starChild, segments, idx + 1, scheme, openSegments);
+	}
+
+	private static boolean anyMatches(List<Rule> rules, String scheme, String[] openSegments) {
+		for (Rule rule : rules) {
+			if (rule.matches(scheme, openSegments)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
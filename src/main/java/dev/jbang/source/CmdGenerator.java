@@ -1,7 +1,14 @@
 package dev.jbang.source;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface CmdGenerator {
 	String generate() throws IOException;
+
+	/**
+	 * Returns the unescaped arguments of the command line, for when the command
+	 * gets run by JBang itself instead of being passed back to the shell.
+	 */
+	List<String> generateCommandLineList() throws IOException;
 }
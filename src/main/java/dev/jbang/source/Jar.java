@@ -13,6 +13,7 @@ import dev.jbang.dependencies.DependencyResolver;
 import dev.jbang.dependencies.DependencyUtil;
 import dev.jbang.source.builders.BaseBuilder;
 import dev.jbang.source.generators.JarCmdGenerator;
+import dev.jbang.source.generators.JshCmdGenerator;
 import dev.jbang.util.JavaUtil;
 import dev.jbang.util.Util;
 
@@ -154,6 +155,11 @@ public class Jar implements Code {
 
 	@Override
 	public CmdGenerator cmdGenerator(RunContext ctx) {
+		if (project != null && project.isJShell()
+				&& (ctx.getForceType() == Source.Type.jshell || ctx.isInteractive())) {
+			// A compiled .jsh script still needs JShell to run interactively
+			return new JshCmdGenerator(project, ctx);
+		}
 		return new JarCmdGenerator(this, ctx);
 	}
 
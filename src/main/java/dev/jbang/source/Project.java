@@ -206,6 +206,14 @@ public class Project implements Code {
 		return mcp;
 	}
 
+	/**
+	 * Sets an already resolved class path, for when it's known that this project
+	 * has the same dependencies as the one it was resolved for.
+	 */
+	public void setResolvedClassPath(@Nonnull ModularClassPath mcp) {
+		this.mcp = mcp;
+	}
+
 	@Nonnull
 	public DependencyResolver updateDependencyResolver(DependencyResolver resolver) {
 		resolver.addRepositories(repositories);
@@ -223,7 +231,7 @@ public class Project implements Code {
 
 	@Override
 	public Path getJarFile() {
-		if (isJShell()) {
+		if (isJShell() && !Settings.isJshCompileEnabled()) {
 			return null;
 		}
 		if (jarFile == null) {
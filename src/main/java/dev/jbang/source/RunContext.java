@@ -4,6 +4,10 @@ import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -12,7 +16,12 @@ import dev.jbang.catalog.Catalog;
 import dev.jbang.cli.BaseCommand;
 import dev.jbang.cli.ExitException;
 import dev.jbang.dependencies.*;
+import dev.jbang.net.GroovyManager;
+import dev.jbang.net.JdkManager;
+import dev.jbang.net.KotlinManager;
 import dev.jbang.source.resolvers.*;
+import dev.jbang.source.sources.GroovySource;
+import dev.jbang.source.sources.KotlinSource;
 import dev.jbang.util.PropertiesValueResolver;
 import dev.jbang.util.Util;
 
@@ -294,18 +303,69 @@ public class RunContext {
 
 	/**
 	 * Return resolved classpath lazily. resolution will only happen once, any
-	 * consecutive calls return the same classpath. Properties available will be
-	 * used for property replacement.
+	 * consecutive calls return the same classpath. The additional dependencies,
+	 * repositories and class paths of this context were already added to the
+	 * project when it was created, so the project's own (possibly already
+	 * resolved) class path is used.
 	 */
 	public ModularClassPath resolveClassPath(Code code) {
 		if (mcp == null) {
-			DependencyResolver resolver = new DependencyResolver();
-			code.asProject().updateDependencyResolver(resolver);
-			mcp = resolver.resolve();
+			mcp = code.asProject().resolveClassPath();
 		}
 		return mcp;
 	}
 
+	/**
+	 * Provisions everything the given Project needs to be built and run that does
+	 * not depend on anything else: the JDK, the compiler for the project's source
+	 * type (only when a build is likely to be needed) and the project's
+	 * dependencies. On a cold machine each of these can mean a lengthy download, so
+	 * they are done concurrently and this method only returns once all of them have
+	 * finished.
+	 */
+	public void provision(Project prj) {
+		List<Runnable> tasks = new ArrayList<>();
+		// Resolve the class path of this context, that's the one that will be used
+		// by the build and the run, it's shared with the project
+		tasks.add(() -> resolveClassPath(prj));
+		Source src = prj.getMainSource();
+		Path jar = prj.getJarFile();
+		boolean buildLikely = Util.isFresh() || (jar != null && !Files.exists(jar));
+		if (buildLikely && src instanceof KotlinSource) {
+			tasks.add(() -> KotlinManager.getKotlin(((KotlinSource) src).getKotlinVersion()));
+		} else if (buildLikely && src instanceof GroovySource) {
+			tasks.add(() -> GroovyManager.getGroovy(((GroovySource) src).getGroovyVersion()));
+		}
+		// The JDK gets provisioned on the current thread while the rest is running
+		runConcurrently(() -> JdkManager.getCurrentJdk(getJavaVersionOr(prj)), tasks);
+	}
+
+	/**
+	 * Runs the given tasks on their own threads while running the first one on the
+	 * current thread. Only returns once all of them have finished, the first
+	 * exception that was thrown by any of them gets rethrown.
+	 */
+	static void runConcurrently(Runnable current, List<Runnable> tasks) {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			List<Future<?>> futures = tasks.stream().map(executor::submit).collect(Collectors.toList());
+			current.run();
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ExitException(BaseCommand.EXIT_UNEXPECTED_STATE, "Interrupted while provisioning", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ExitException(BaseCommand.EXIT_UNEXPECTED_STATE, e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	private DependencyResolver updateDependencyResolver(DependencyResolver resolver) {
 		return resolver
 						.addRepositories(allToMavenRepo(replaceAllProps(
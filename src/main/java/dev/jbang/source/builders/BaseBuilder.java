@@ -4,6 +4,7 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.jar.Attributes;
@@ -60,7 +61,6 @@ public abstract class BaseBuilder implements Builder {
 		Path outjar = prj.getJarFile();
 		boolean nativeBuildRequired = prj.isNativeImage() && !Files.exists(getImageName(outjar));
 		IntegrationResult integrationResult = new IntegrationResult(null, null, null);
-		String requestedJavaVersion = prj.getJavaVersion();
 		// always build the jar for native mode
 		// it allows integrations the options to produce the native image
 		boolean buildRequired = true;
@@ -68,7 +68,46 @@ public abstract class BaseBuilder implements Builder {
 			Util.verboseMsg("Building as fresh build explicitly requested.");
 		} else if (nativeBuildRequired) {
 			Util.verboseMsg("Building as native build required.");
-		} else if (Files.isReadable(outjar)) {
+		} else {
+			result = getReusableJar();
+			buildRequired = result == null;
+		}
+
+		if (buildRequired) {
+			// Make sure that only a single process builds this project at a time,
+			// any others will wait for it to finish and then reuse its result
+			long waitStart = System.currentTimeMillis();
+			try (LockFile lock = LockFile.acquire(getLockFile())) {
+				// Another process might have built it while we weren't holding the lock,
+				// when a fresh build was requested only one that ended while we waited counts
+				if (!nativeBuildRequired && (!fresh || builtSince(outjar, waitStart))) {
+					result = getReusableJar();
+				}
+				if (result == null) {
+					integrationResult = buildJar();
+					result = prj.asJar();
+				}
+				if (nativeBuildRequired) {
+					if (integrationResult.nativeImagePath != null) {
+						Files.move(integrationResult.nativeImagePath, getImageName(outjar));
+					} else {
+						buildNative();
+					}
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the previously built jar if it exists and can still be used,
+	 * otherwise returns <code>null</code>.
+	 */
+	private Jar getReusableJar() {
+		Path outjar = prj.getJarFile();
+		String requestedJavaVersion = prj.getJavaVersion();
+		if (Files.isReadable(outjar)) {
 			// We already have a Jar, check if we can still use it
 			Jar jarSrc = prj.asJar();
 
@@ -84,38 +123,32 @@ public abstract class BaseBuilder implements Builder {
 								requestedJavaVersion, jarSrc.getJavaVersion()));
 			} else {
 				Util.verboseMsg("No build required. Reusing jar from " + jarSrc.getJarFile());
-				result = jarSrc;
-				buildRequired = false;
+				return jarSrc;
 			}
 		} else {
 			Util.verboseMsg("Build required as " + outjar + " not readable or not found.");
 		}
+		return null;
+	}
 
-		if (buildRequired) {
-			// set up temporary folder for compilation
-			Path compileDir = getCompileDir();
-			Util.deletePath(compileDir, true);
-			compileDir.toFile().mkdirs();
-			// do the actual building
-			try {
-				integrationResult = compile();
-				createJar();
-				result = prj.asJar();
-			} finally {
-				// clean up temporary folder
-				Util.deletePath(compileDir, true);
-			}
-		}
+	private static boolean builtSince(Path outjar, long time) throws IOException {
+		return Files.exists(outjar) && Files.getLastModifiedTime(outjar).toMillis() >= time;
+	}
 
-		if (nativeBuildRequired) {
-			if (integrationResult.nativeImagePath != null) {
-				Files.move(integrationResult.nativeImagePath, getImageName(outjar));
-			} else {
-				buildNative();
-			}
+	private IntegrationResult buildJar() throws IOException {
+		// set up temporary folder for compilation
+		Path compileDir = getCompileDir();
+		Util.deletePath(compileDir, true);
+		compileDir.toFile().mkdirs();
+		// do the actual building
+		try {
+			IntegrationResult integrationResult = compile();
+			createJar();
+			return integrationResult;
+		} finally {
+			// clean up temporary folder
+			Util.deletePath(compileDir, true);
 		}
-
-		return result;
 	}
 
 	// build with javac and then jar...
@@ -132,29 +165,36 @@ public abstract class BaseBuilder implements Builder {
 		optionList.addAll(Arrays.asList("-d", compileDir.toAbsolutePath().toString()));
 
 		// add source files to compile
-		optionList.addAll(prj	.getMainSourceSet()
-								.getSources()
-								.stream()
-								.map(x -> x.getFile().toString())
-								.collect(Collectors.toList()));
+		optionList.addAll(getSourceFiles());
 
 		// add additional files
 		prj.getMainSourceSet().copyResourcesTo(compileDir);
 
-		Path pomPath = generatePom(compileDir);
+		// Most projects don't use any integrations, in which case the pom is only
+		// worth generating if the project has explicit Maven coordinates
+		boolean hasIntegrations = IntegrationManager.hasIntegrations(prj);
+		Path pomPath = null;
+		if (hasIntegrations || prj.getGav().isPresent()) {
+			pomPath = generatePom(compileDir);
+		}
 
 		Util.infoMsg(String.format("Building %s...", prj.getMainSource().isAgent() ? "javaagent" : "jar"));
 		Util.verboseMsg("Compile: " + String.join(" ", optionList));
 		runCompiler(optionList);
 
-		// todo: setting properties to avoid loosing properties in integration call.
-		Properties old = System.getProperties();
-		Properties temp = new Properties(System.getProperties());
-		for (Map.Entry<String, String> entry : prj.getProperties().entrySet()) {
-			System.setProperty(entry.getKey(), entry.getValue());
+		IntegrationResult integrationResult;
+		if (hasIntegrations) {
+			// todo: setting properties to avoid loosing properties in integration call.
+			Properties old = System.getProperties();
+			Properties temp = new Properties(System.getProperties());
+			for (Map.Entry<String, String> entry : prj.getProperties().entrySet()) {
+				System.setProperty(entry.getKey(), entry.getValue());
+			}
+			integrationResult = IntegrationManager.runIntegrations(prj, compileDir, pomPath);
+			System.setProperties(old);
+		} else {
+			integrationResult = new IntegrationResult(null, null, null);
 		}
-		IntegrationResult integrationResult = IntegrationManager.runIntegrations(prj, compileDir, pomPath);
-		System.setProperties(old);
 
 		if (prj.getMainClass() == null) { // if non-null user forced set main
 			if (integrationResult.mainClass != null) {
@@ -171,6 +211,14 @@ public abstract class BaseBuilder implements Builder {
 		return integrationResult;
 	}
 
+	protected List<String> getSourceFiles() throws IOException {
+		return prj	.getMainSourceSet()
+					.getSources()
+					.stream()
+					.map(x -> x.getFile().toString())
+					.collect(Collectors.toList());
+	}
+
 	protected void runCompiler(List<String> optionList) throws IOException {
 		runCompiler(CommandBuffer.of(optionList).asProcessBuilder().inheritIO());
 	}
@@ -217,9 +265,12 @@ public abstract class BaseBuilder implements Builder {
 			manifest.getMainAttributes().putValue(ATTR_BUILD_JDK, val);
 		}
 
-		FileOutputStream target = new FileOutputStream(jarFile.toFile());
-		JarUtil.jar(target, compileDir.toFile().listFiles(), null, null, manifest);
-		target.close();
+		// Write to a temporary file first so other processes never see a partial jar
+		Path tmpJarFile = jarFile.resolveSibling(jarFile.getFileName() + ".part");
+		try (FileOutputStream target = new FileOutputStream(tmpJarFile.toFile())) {
+			JarUtil.jar(target, compileDir.toFile().listFiles(), null, null, manifest);
+		}
+		Files.move(tmpJarFile, jarFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
 	}
 
 	protected void buildNative()
@@ -447,4 +498,8 @@ public abstract class BaseBuilder implements Builder {
 	protected Path getCompileDir() {
 		return prj.getJarFile().getParent().resolve(prj.getJarFile().getFileName() + ".tmp");
 	}
+
+	protected Path getLockFile() {
+		return prj.getJarFile().getParent().resolve(prj.getJarFile().getFileName() + ".lock");
+	}
 }
@@ -3,15 +3,24 @@ package dev.jbang.source.builders;
 import static dev.jbang.net.GroovyManager.resolveInGroovyHome;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.function.Predicate;
 
 import org.jboss.jandex.ClassInfo;
 
+import dev.jbang.cli.ExitException;
+import dev.jbang.net.GroovyManager;
 import dev.jbang.net.JdkManager;
 import dev.jbang.source.Project;
 import dev.jbang.source.sources.GroovySource;
+import dev.jbang.util.Util;
 
 public class GroovyBuilder extends BaseBuilder {
+	private static final String GROOVY_COMPILER_CLASS = "org.codehaus.groovy.tools.FileSystemCompiler";
+	private static final String GROOVY_COMPILATION_FAILED_CLASS = "org.codehaus.groovy.control.CompilationFailedException";
 
 	public GroovyBuilder(Project prj) {
 		super(prj);
@@ -19,7 +28,7 @@ public class GroovyBuilder extends BaseBuilder {
 
 	@Override
 	protected String getCompilerBinary(String requestedJavaVersion) {
-		return resolveInGroovyHome("groovyc", ((GroovySource) prj.getMainSource()).getGroovyVersion());
+		return resolveInGroovyHome("groovyc", getGroovyVersion());
 	}
 
 	@Override
@@ -33,6 +42,25 @@ public class GroovyBuilder extends BaseBuilder {
 		return ".groovy";
 	}
 
+	@Override
+	protected void runCompiler(List<String> optionList) throws IOException {
+		if (prj.getMainSource() instanceof GroovySource && InProcessCompiler.isSupported(prj.getJavaVersion())) {
+			Integer exitCode = null;
+			try {
+				exitCode = compileInProcess(optionList.subList(1, optionList.size()));
+			} catch (Exception | LinkageError e) {
+				Util.verboseMsg("Unable to run the Groovy compiler in-process, falling back to groovyc", e);
+			}
+			if (exitCode != null) {
+				if (exitCode != 0) {
+					throw new ExitException(1, "Error during compile");
+				}
+				return;
+			}
+		}
+		super.runCompiler(optionList);
+	}
+
 	@Override
 	protected void runCompiler(ProcessBuilder processBuilder) throws IOException {
 		if (prj.getMainSource() instanceof GroovySource) {
@@ -42,4 +70,32 @@ public class GroovyBuilder extends BaseBuilder {
 		}
 		super.runCompiler(processBuilder);
 	}
+
+	// Runs the Groovy compiler, returns its exit code or null if
+	// the compiler itself failed and we should try running groovyc
+	private Integer compileInProcess(List<String> options) throws Exception {
+		Path groovyHome = GroovyManager.getGroovy(getGroovyVersion());
+		ClassLoader cl = InProcessCompiler.getClassLoader(groovyHome.resolve("lib"));
+		Class<?> compilerClass = Class.forName(GROOVY_COMPILER_CLASS, true, cl);
+		Class<?> failedClass = Class.forName(GROOVY_COMPILATION_FAILED_CLASS, false, cl);
+		Method compile = compilerClass.getMethod("commandLineCompile", String[].class);
+
+		Util.verboseMsg("Compiling in-process with " + GROOVY_COMPILER_CLASS);
+		try {
+			InProcessCompiler.call(cl, () -> compile.invoke(null, (Object) options.toArray(new String[0])));
+			return 0;
+		} catch (InvocationTargetException e) {
+			if (failedClass.isInstance(e.getCause())) {
+				// The message contains the compile errors
+				Util.errorMsg(e.getCause().getMessage());
+				return 1;
+			}
+			Util.verboseMsg("Groovy compiler failed", e.getCause());
+			return null;
+		}
+	}
+
+	private String getGroovyVersion() {
+		return ((GroovySource) prj.getMainSource()).getGroovyVersion();
+	}
 }
@@ -0,0 +1,100 @@
+package dev.jbang.source.builders;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import dev.jbang.Settings;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.Util;
+
+/**
+ * Support for running compilers, like the ones for Kotlin and Groovy, inside the
+ * JBang JVM instead of forking their command line tools. The compiler's jars
+ * are loaded into a class loader that's isolated from JBang's own classes. Those
+ * class loaders are cached so that when several builds happen during the same
+ * session the compiler only needs to be loaded and warmed up once.
+ */
+class InProcessCompiler {
+	private static final Map<Path, URLClassLoader> loaders = new ConcurrentHashMap<>();
+
+	/**
+	 * Determines if compiling in-process is possible. This is only the case when
+	 * the JVM JBang is running on has the same version as the one requested for
+	 * the build, otherwise the result could be different from what the forked
+	 * compiler would produce. It can be turned off by setting the
+	 * <code>JBANG_NO_INPROCESS_COMPILE</code> environment variable to
+	 * <code>true</code>.
+	 *
+	 * @param requestedJavaVersion The Java version requested for the build
+	 */
+	static boolean isSupported(String requestedJavaVersion) {
+		String disabled = System.getenv().getOrDefault(Settings.ENV_NO_INPROCESS_COMPILE, "false");
+		if (Boolean.parseBoolean(disabled)) {
+			return false;
+		}
+		int current = JavaUtil.parseJavaVersion(System.getProperty("java.version"));
+		return current == JavaUtil.javaVersion(requestedJavaVersion);
+	}
+
+	/**
+	 * Returns a class loader for all the jars in the given folder. The parent of
+	 * the class loader is the platform class loader so none of JBang's own classes
+	 * or dependencies are visible to it.
+	 *
+	 * @param libDir A folder containing jar files
+	 * @return A (cached) class loader
+	 */
+	static ClassLoader getClassLoader(Path libDir) throws IOException {
+		Path dir = libDir.toAbsolutePath().normalize();
+		URLClassLoader cl = loaders.get(dir);
+		if (cl == null) {
+			List<Path> jars;
+			try (Stream<Path> files = Files.list(dir)) {
+				jars = files.filter(f -> f.getFileName().toString().endsWith(".jar"))
+							.sorted()
+							.collect(Collectors.toList());
+			}
+			URL[] urls = new URL[jars.size()];
+			for (int i = 0; i < jars.size(); i++) {
+				try {
+					urls[i] = jars.get(i).toUri().toURL();
+				} catch (MalformedURLException e) {
+					throw new IOException(e);
+				}
+			}
+			Util.verboseMsg("Loading compiler from " + dir);
+			cl = new URLClassLoader(urls, ClassLoader.getSystemClassLoader().getParent());
+			URLClassLoader existing = loaders.putIfAbsent(dir, cl);
+			if (existing != null) {
+				cl.close();
+				cl = existing;
+			}
+		}
+		return cl;
+	}
+
+	/**
+	 * Calls the given code with the given class loader set as the thread's
+	 * context class loader.
+	 */
+	static <T> T call(ClassLoader cl, Callable<T> code) throws Exception {
+		Thread thread = Thread.currentThread();
+		ClassLoader old = thread.getContextClassLoader();
+		thread.setContextClassLoader(cl);
+		try {
+			return code.call();
+		} finally {
+			thread.setContextClassLoader(old);
+		}
+	}
+}
@@ -0,0 +1,490 @@
+package dev.jbang.source.builders;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import dev.jbang.Settings;
+import dev.jbang.cli.ExitException;
+import dev.jbang.source.Jar;
+import dev.jbang.source.Project;
+import dev.jbang.spi.IntegrationResult;
+import dev.jbang.util.CommandBuffer;
+import dev.jbang.util.Util;
+
+/**
+ * Builds <code>.jsh</code> scripts by translating them into a Java class that
+ * gets compiled into a jar like any other source. This way a script only gets
+ * compiled once instead of JShell having to parse and compile all its snippets
+ * on each run. Imports are moved to the top, method and type declarations
+ * become static members, variables that are used by those declarations become
+ * static fields and all other statements end up, in their original order, in
+ * the class's <code>main()</code> method.
+ *
+ * Scripts that use JShell-only features, like most of its commands, or that
+ * can't be compiled as a class, will be run using JShell as usual.
+ */
+public class JshBuilder extends JavaBuilder {
+	private boolean compileFailed;
+
+	static final List<String> DEFAULT_IMPORTS = Collections.unmodifiableList(Arrays.asList(
+			"java.io.*", "java.math.*", "java.net.*", "java.nio.file.*", "java.util.*",
+			"java.util.concurrent.*", "java.util.function.*", "java.util.prefs.*", "java.util.regex.*",
+			"java.util.stream.*"));
+
+	private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+			"assert", "break", "case", "continue", "default", "do", "else", "for", "if", "new", "return", "switch",
+			"synchronized", "throw", "try", "while", "yield"));
+
+	private static final String ANNOTATION = "@[\\w.$]+(?:\\s*\\([^)]*\\))?\\s*";
+
+	private static final Pattern exitPattern = Pattern.compile("^/exit(?:\\s+(.*?))?\\s*$", Pattern.DOTALL);
+
+	private static final Pattern typePattern = Pattern.compile(
+			"^(?:" + ANNOTATION
+					+ "|(?:public|protected|private|static|final|abstract|sealed|non-sealed|strictfp)\\s+)*"
+					+ "(?:class|interface|enum|record|@\\s*interface)\\s+([A-Za-z_$][\\w$]*)",
+			Pattern.DOTALL);
+
+	private static final Pattern methodPattern = Pattern.compile(
+			"^(?:" + ANNOTATION
+					+ "|(?:public|protected|private|static|final|abstract|synchronized|native|strictfp|default)\\s+)*"
+					+ "(?:<[^(]*>\\s*)?([\\w.$]+)(?:\\s*<[^(]*>)?(?:\\s*\\[\\s*\\])*\\s+([A-Za-z_$][\\w$]*)\\s*\\([^{]*\\)"
+					+ "\\s*(?:throws\\s+[\\w.$,\\s<>]+)?$",
+			Pattern.DOTALL);
+
+	private static final Pattern variablePattern = Pattern.compile(
+			"^(?:final\\s+)?((?:" + ANNOTATION
+					+ ")*([\\w.$]+)(?:\\s*<.*?>)?(?:\\s*\\[\\s*\\])*)\\s+([A-Za-z_$][\\w$]*)((?:\\s*\\[\\s*\\])*)"
+					+ "\\s*(?:=\\s*(.*))?$",
+			Pattern.DOTALL);
+
+	public JshBuilder(Project prj) {
+		super(prj);
+	}
+
+	/**
+	 * Determines if the given project is a <code>.jsh</code> script that we
+	 * should try to compile.
+	 */
+	public static boolean isCompilable(Project prj) {
+		return Settings.isJshCompileEnabled()
+				&& prj.isJShell()
+				&& prj.getMainClass() == null
+				&& prj.getMainSourceSet().getSources().size() == 1;
+	}
+
+	/**
+	 * Builds the script into a jar, just like <code>build()</code> but when the
+	 * script can't be compiled <code>null</code> gets returned instead of
+	 * throwing an exception. The failure is remembered so the next run of the
+	 * same script doesn't try again.
+	 *
+	 * @return A <code>Jar</code> or <code>null</code>
+	 */
+	public Jar tryBuild() throws IOException {
+		Path marker = getNoCompileMarker();
+		if (!fresh && Files.exists(marker)) {
+			Util.verboseMsg("Script can't be compiled, running it using JShell");
+			return null;
+		}
+		try {
+			return build();
+		} catch (ExitException e) {
+			if (!compileFailed) {
+				throw e;
+			}
+			Util.verboseMsg("Unable to compile script, falling back to JShell: " + e.getMessage());
+			Files.createDirectories(marker.getParent());
+			Util.writeString(marker, "");
+			return null;
+		}
+	}
+
+	@Override
+	public IntegrationResult compile() throws IOException {
+		try {
+			return super.compile();
+		} finally {
+			Util.deletePath(getWrapperDir(), true);
+		}
+	}
+
+	@Override
+	protected List<String> getSourceFiles() throws IOException {
+		Path script = prj.getMainSourceSet().getSources().get(0).getFile();
+		String wrapper = translate(Util.readString(script), getClassName());
+		if (wrapper == null) {
+			compileFailed = true;
+			throw new ExitException(1, "Script uses features that are only supported by JShell");
+		}
+		Path wrapperFile = getWrapperDir().resolve(getClassName() + ".java");
+		Files.createDirectories(wrapperFile.getParent());
+		Util.writeString(wrapperFile, wrapper);
+		return Collections.singletonList(wrapperFile.toString());
+	}
+
+	@Override
+	protected void runCompiler(List<String> optionList) throws IOException {
+		// Compiler errors are not shown to the user because
+		// they'll be reported by JShell when we fall back to it
+		Process process = CommandBuffer	.of(optionList)
+										.asProcessBuilder()
+										.redirectErrorStream(true)
+										.start();
+		String output;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			output = br.lines().collect(Collectors.joining("\n"));
+		}
+		try {
+			process.waitFor();
+		} catch (InterruptedException e) {
+			throw new ExitException(1, e);
+		}
+		if (process.exitValue() != 0) {
+			Util.verboseMsg(output);
+			compileFailed = true;
+			throw new ExitException(1, "Error during compile");
+		}
+	}
+
+	@Override
+	protected String getSuggestedMain() {
+		return getClassName();
+	}
+
+	@Override
+	protected String getMainExtension() {
+		return ".jsh";
+	}
+
+	private String getClassName() {
+		String name = Util.getBaseName(prj.getResourceRef().getFile().getFileName().toString());
+		StringBuilder sb = new StringBuilder();
+		for (char c : name.toCharArray()) {
+			sb.append(Character.isJavaIdentifierPart(c) ? c : '_');
+		}
+		if (sb.length() == 0 || !Character.isJavaIdentifierStart(sb.charAt(0))) {
+			sb.insert(0, '_');
+		}
+		return sb.toString();
+	}
+
+	private Path getWrapperDir() {
+		return prj.getJarFile().getParent().resolve(prj.getJarFile().getFileName() + ".src");
+	}
+
+	private Path getNoCompileMarker() {
+		return prj.getJarFile().getParent().resolve(prj.getJarFile().getFileName() + ".nocompile");
+	}
+
+	/**
+	 * Translates the given JShell script into the source of a Java class with the
+	 * given name.
+	 *
+	 * @param script    The contents of a <code>.jsh</code> file
+	 * @param className The name of the class to generate
+	 * @return The Java source or <code>null</code> if the script can't be
+	 *         translated
+	 */
+	public static String translate(String script, String className) {
+		List<String> snippets = splitSnippets(script);
+		if (snippets == null) {
+			return null;
+		}
+
+		Set<String> imports = new LinkedHashSet<>();
+		List<String> declarations = new ArrayList<>();
+		Set<String> typeNames = new HashSet<>();
+		Set<String> methodNames = new HashSet<>();
+		// First pass to find all imports and declarations
+		for (String snippet : snippets) {
+			if (snippet.startsWith("import") && snippet.length() > 6
+					&& Character.isWhitespace(snippet.charAt(6))) {
+				imports.add(snippet);
+				continue;
+			}
+			Matcher m = typePattern.matcher(snippet);
+			if (m.find()) {
+				typeNames.add(m.group(1));
+				declarations.add(snippet);
+				continue;
+			}
+			if (snippet.endsWith("}")) {
+				m = methodPattern.matcher(snippet.substring(0, snippet.indexOf('{')).trim());
+				if (m.matches() && !KEYWORDS.contains(m.group(1))) {
+					methodNames.add(m.group(2));
+					declarations.add(snippet);
+				}
+			}
+		}
+
+		List<String> fields = new ArrayList<>();
+		List<String> statements = new ArrayList<>();
+		String declarationsText = String.join("\n", declarations);
+		// Second pass to handle all variables and statements
+		for (String snippet : snippets) {
+			if (imports.contains(snippet) || declarations.contains(snippet)) {
+				continue;
+			}
+			if (snippet.startsWith("/")) {
+				Matcher m = exitPattern.matcher(snippet);
+				if (!m.matches()) {
+					// Any other JShell commands are not supported
+					return null;
+				}
+				statements.add("System.exit(" + (m.group(1) != null ? m.group(1) : "0") + ");");
+				continue;
+			}
+			String code = snippet.endsWith(";") ? snippet.substring(0, snippet.length() - 1).trim() : snippet;
+			Matcher m = variablePattern.matcher(code);
+			if (m.matches() && !KEYWORDS.contains(m.group(2))) {
+				String name = m.group(3);
+				if (Pattern.compile("\\b" + Pattern.quote(name) + "\\b").matcher(declarationsText).find()) {
+					// The variable is used by a method or type so it must become a field
+					String type = m.group(1) + m.group(4);
+					String init = m.group(5);
+					if (type.equals("var") || (init != null && hasTopLevelComma(init))) {
+						return null;
+					}
+					fields.add("static " + type + " " + name + ";");
+					if (init != null) {
+						if (init.trim().startsWith("{")) {
+							init = "new " + type + " " + init.trim();
+						}
+						statements.add(name + " = " + init + ";");
+					}
+					continue;
+				}
+			}
+			statements.add(snippet.endsWith(";") || snippet.endsWith("}") ? snippet : snippet + ";");
+		}
+
+		if (typeNames.contains(className)) {
+			className = className + "_jsh";
+		}
+
+		StringBuilder src = new StringBuilder();
+		for (String imp : DEFAULT_IMPORTS) {
+			src.append("import ").append(imp).append(";\n");
+		}
+		for (String imp : imports) {
+			src.append(imp).append("\n");
+		}
+		// Not public because the name might not match the file name
+		src.append("\nclass ").append(className).append(" {\n");
+		src.append("static String[] args = new String[0];\n");
+		for (String field : fields) {
+			src.append(field).append("\n");
+		}
+		for (String decl : declarations) {
+			src.append("static ").append(decl).append("\n");
+		}
+		if (!methodNames.contains("lines")) {
+			src.append(
+					"static java.util.stream.Stream<String> lines() { return new BufferedReader(new InputStreamReader(System.in)).lines(); }\n");
+			src.append(
+					"static java.util.stream.Stream<String> lines(String path) throws IOException { return Files.lines(Paths.get(path)); }\n");
+		}
+		if (!methodNames.contains("print") && !methodNames.contains("println")
+				&& !methodNames.contains("printf")) {
+			// The equivalent of JShell's PRINTING startup script
+			src.append("static void print(Object o) { System.out.print(o); }\n");
+			src.append("static void print(char[] s) { System.out.print(s); }\n");
+			src.append("static void println() { System.out.println(); }\n");
+			src.append("static void println(Object o) { System.out.println(o); }\n");
+			src.append("static void println(char[] s) { System.out.println(s); }\n");
+			src.append(
+					"static void printf(String format, Object... args) { System.out.printf(format, args); }\n");
+			src.append(
+					"static void printf(Locale l, String format, Object... args) { System.out.printf(l, format, args); }\n");
+		}
+		src.append("public static void main(String[] args) throws Throwable {\n");
+		src.append(className).append(".args = args;\n");
+		for (String stmt : statements) {
+			src.append(stmt).append("\n");
+		}
+		src.append("}\n}\n");
+		return src.toString();
+	}
+
+	/**
+	 * Splits a script into its top-level snippets, removing all comments. JShell
+	 * commands are returned as separate snippets starting with a "/".
+	 *
+	 * @return A list of snippets or <code>null</code> if the script could not be
+	 *         parsed
+	 */
+	static List<String> splitSnippets(String script) {
+		List<String> snippets = new ArrayList<>();
+		StringBuilder cur = new StringBuilder();
+		int depth = 0;
+		int len = script.length();
+		int i = 0;
+		while (i < len) {
+			char c = script.charAt(i);
+			char next = i + 1 < len ? script.charAt(i + 1) : 0;
+			if (c == '/' && next == '/') {
+				i = skipLineComment(script, i);
+			} else if (c == '/' && next == '*') {
+				i = skipBlockComment(script, i);
+				cur.append(' ');
+			} else if (c == '/' && depth == 0
+					&& (cur.toString().trim().isEmpty() || atLineStart(script, i) && Character.isLetter(next))) {
+				// A JShell command, which also ends any unterminated snippet before it
+				addSnippet(snippets, cur);
+				int end = script.indexOf('\n', i);
+				end = end < 0 ? len : end;
+				snippets.add(script.substring(i, end).trim());
+				i = end;
+			} else if (c == '"' || c == '\'') {
+				int end = skipLiteral(script, i);
+				if (end < 0) {
+					return null;
+				}
+				cur.append(script, i, end);
+				i = end;
+			} else {
+				cur.append(c);
+				i++;
+				if (c == '(' || c == '[' || c == '{') {
+					depth++;
+				} else if (c == ')' || c == ']' || c == '}') {
+					depth--;
+					if (depth < 0) {
+						return null;
+					}
+					if (c == '}' && depth == 0 && endsSnippet(script, i)) {
+						addSnippet(snippets, cur);
+					}
+				} else if (c == ';' && depth == 0) {
+					addSnippet(snippets, cur);
+				}
+			}
+		}
+		if (depth != 0) {
+			return null;
+		}
+		addSnippet(snippets, cur);
+		return snippets;
+	}
+
+	private static boolean atLineStart(String script, int i) {
+		while (i > 0 && (script.charAt(i - 1) == ' ' || script.charAt(i - 1) == '\t')) {
+			i--;
+		}
+		return i == 0 || script.charAt(i - 1) == '\n' || script.charAt(i - 1) == '\r';
+	}
+
+	private static void addSnippet(List<String> snippets, StringBuilder cur) {
+		String snippet = cur.toString().trim();
+		if (!snippet.isEmpty() && !snippet.equals(";")) {
+			snippets.add(snippet);
+		}
+		cur.setLength(0);
+	}
+
+	// Determines if a closing brace at the given position ends a snippet
+	// or if the snippet continues (like "} else {" or "};")
+	private static boolean endsSnippet(String script, int i) {
+		int len = script.length();
+		while (i < len) {
+			char c = script.charAt(i);
+			char next = i + 1 < len ? script.charAt(i + 1) : 0;
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '/' && next == '/') {
+				i = skipLineComment(script, i);
+			} else if (c == '/' && next == '*') {
+				i = skipBlockComment(script, i);
+			} else if (c == ';' || c == '.' || c == ',' || c == ')') {
+				return false;
+			} else {
+				int end = i;
+				while (end < len && Character.isJavaIdentifierPart(script.charAt(end))) {
+					end++;
+				}
+				String word = script.substring(i, end);
+				return !(word.equals("else") || word.equals("catch") || word.equals("finally")
+						|| word.equals("while"));
+			}
+		}
+		return true;
+	}
+
+	private static int skipLineComment(String script, int i) {
+		int end = script.indexOf('\n', i);
+		return end < 0 ? script.length() : end;
+	}
+
+	private static int skipBlockComment(String script, int i) {
+		int end = script.indexOf("*/", i + 2);
+		return end < 0 ? script.length() : end + 2;
+	}
+
+	// Returns the position right after the string, text block or character
+	// literal starting at the given position or -1 if it's not terminated
+	private static int skipLiteral(String script, int i) {
+		char quote = script.charAt(i);
+		if (quote == '"' && script.startsWith("\"\"\"", i)) {
+			int j = i + 3;
+			while (j < script.length()) {
+				if (script.charAt(j) == '\\') {
+					j += 2;
+				} else if (script.startsWith("\"\"\"", j)) {
+					return j + 3;
+				} else {
+					j++;
+				}
+			}
+			return -1;
+		}
+		int j = i + 1;
+		while (j < script.length()) {
+			char c = script.charAt(j);
+			if (c == '\\') {
+				j += 2;
+			} else if (c == quote) {
+				return j + 1;
+			} else if (c == '\n') {
+				return -1;
+			} else {
+				j++;
+			}
+		}
+		return -1;
+	}
+
+	static boolean hasTopLevelComma(String code) {
+		int depth = 0;
+		for (int i = 0; i < code.length(); i++) {
+			char c = code.charAt(i);
+			if (c == '"' || c == '\'') {
+				int end = skipLiteral(code, i);
+				if (end < 0) {
+					return true;
+				}
+				i = end - 1;
+			} else if (c == '(' || c == '[' || c == '{') {
+				depth++;
+			} else if (c == ')' || c == ']' || c == '}') {
+				depth--;
+			} else if (c == ',' && depth == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
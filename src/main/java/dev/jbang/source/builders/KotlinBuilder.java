@@ -2,14 +2,25 @@ package dev.jbang.source.builders;
 
 import static dev.jbang.net.KotlinManager.resolveInKotlinHome;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Predicate;
 
 import org.jboss.jandex.ClassInfo;
 
+import dev.jbang.cli.ExitException;
+import dev.jbang.net.KotlinManager;
 import dev.jbang.source.Project;
 import dev.jbang.source.sources.KotlinSource;
+import dev.jbang.util.Util;
 
 public class KotlinBuilder extends BaseBuilder {
+	private static final String KOTLIN_COMPILER_CLASS = "org.jetbrains.kotlin.cli.jvm.K2JVMCompiler";
 
 	public KotlinBuilder(Project prj) {
 		super(prj);
@@ -17,7 +28,7 @@ public class KotlinBuilder extends BaseBuilder {
 
 	@Override
 	protected String getCompilerBinary(String requestedJavaVersion) {
-		return resolveInKotlinHome("kotlinc", ((KotlinSource) prj.getMainSource()).getKotlinVersion());
+		return resolveInKotlinHome("kotlinc", getKotlinVersion());
 	}
 
 	@Override
@@ -30,4 +41,51 @@ public class KotlinBuilder extends BaseBuilder {
 	protected String getMainExtension() {
 		return ".kt";
 	}
+
+	@Override
+	protected void runCompiler(List<String> optionList) throws IOException {
+		if (InProcessCompiler.isSupported(prj.getJavaVersion())) {
+			Integer exitCode = null;
+			try {
+				exitCode = compileInProcess(optionList.subList(1, optionList.size()));
+			} catch (Exception | LinkageError e) {
+				Util.verboseMsg("Unable to run the Kotlin compiler in-process, falling back to kotlinc", e);
+			}
+			if (exitCode != null) {
+				if (exitCode != 0) {
+					throw new ExitException(1, "Error during compile");
+				}
+				return;
+			}
+		}
+		super.runCompiler(optionList);
+	}
+
+	// Runs the embeddable compiler, returns its exit code or null if
+	// the compiler itself failed and we should try running kotlinc
+	private Integer compileInProcess(List<String> options) throws Exception {
+		Path kotlinHome = KotlinManager.getKotlin(getKotlinVersion());
+		ClassLoader cl = InProcessCompiler.getClassLoader(kotlinHome.resolve("lib"));
+		Class<?> compilerClass = Class.forName(KOTLIN_COMPILER_CLASS, true, cl);
+		Object compiler = compilerClass.getDeclaredConstructor().newInstance();
+		Method exec = compilerClass.getMethod("exec", PrintStream.class, String[].class);
+
+		List<String> args = new ArrayList<>();
+		args.add("-kotlin-home");
+		args.add(kotlinHome.toAbsolutePath().toString());
+		args.addAll(options);
+		Util.verboseMsg("Compiling in-process with " + KOTLIN_COMPILER_CLASS);
+		try {
+			Object exitCode = InProcessCompiler.call(cl,
+					() -> exec.invoke(compiler, System.err, args.toArray(new String[0])));
+			return (Integer) exitCode.getClass().getMethod("getCode").invoke(exitCode);
+		} catch (InvocationTargetException e) {
+			Util.verboseMsg("Kotlin compiler failed", e.getCause());
+			return null;
+		}
+	}
+
+	private String getKotlinVersion() {
+		return ((KotlinSource) prj.getMainSource()).getKotlinVersion();
+	}
 }
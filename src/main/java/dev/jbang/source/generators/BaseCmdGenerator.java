@@ -52,8 +52,6 @@ public abstract class BaseCmdGenerator implements CmdGenerator {
 
 	protected abstract Code getCode();
 
-	protected abstract List<String> generateCommandLineList() throws IOException;
-
 	protected void addAgentsArgs(List<String> fullArgs) {
 		ctx	.getJavaAgents()
 			.forEach(agent -> {
@@ -32,7 +32,7 @@ public class JarCmdGenerator extends BaseCmdGenerator {
 	}
 
 	@Override
-	protected List<String> generateCommandLineList() throws IOException {
+	public List<String> generateCommandLineList() throws IOException {
 		List<String> fullArgs = new ArrayList<>();
 
 		if (ctx.isNativeImage()) {
@@ -31,7 +31,7 @@ public class JshCmdGenerator extends BaseCmdGenerator {
 	}
 
 	@Override
-	protected List<String> generateCommandLineList() throws IOException {
+	public List<String> generateCommandLineList() throws IOException {
 		List<String> fullArgs = new ArrayList<>();
 
 		String classpath = ctx.resolveClassPath(prj).getClassPath();
@@ -7,7 +7,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.stream.Collectors;
 
 import dev.jbang.Cache;
@@ -63,7 +65,13 @@ public class LiteralScriptResourceResolver implements ResourceResolver {
 			basename = getMainClass(scriptText).orElse(basename);
 		}
 		Path scriptFile = cache.resolve(basename + suffix);
-		Util.writeString(scriptFile, scriptText);
+		// The folder is named after the hash of the content,
+		// so if the file already exists it's the same script
+		if (!Files.isRegularFile(scriptFile)) {
+			Path tmpFile = Files.createTempFile(cache, scriptFile.getFileName().toString(), ".tmp");
+			Util.writeString(tmpFile, scriptText);
+			Files.move(tmpFile, scriptFile, StandardCopyOption.REPLACE_EXISTING);
+		}
 		result = ResourceRef.forCachedResource(resource, scriptFile);
 		return result;
 	}
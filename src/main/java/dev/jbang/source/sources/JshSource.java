@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.util.function.Function;
 
 import dev.jbang.source.*;
+import dev.jbang.source.builders.JshBuilder;
 
 public class JshSource extends JavaSource {
 	public JshSource(ResourceRef script, Function<String, String> replaceProperties) {
@@ -18,7 +19,13 @@ public class JshSource extends JavaSource {
 	public Builder getBuilder(Project prj) {
 		return new Builder() {
 			@Override
-			public Project build() throws IOException {
+			public Code build() throws IOException {
+				if (JshBuilder.isCompilable(prj)) {
+					Jar jar = new JshBuilder(prj).tryBuild();
+					if (jar != null) {
+						return jar;
+					}
+				}
 				return prj;
 			}
 		};
@@ -1,11 +1,18 @@
 package dev.jbang.source.sources;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 
+import dev.jbang.Cache;
+import dev.jbang.Settings;
 import dev.jbang.cli.BaseCommand;
 import dev.jbang.cli.ExitException;
 import dev.jbang.source.ResourceRef;
@@ -14,20 +21,34 @@ import dev.jbang.source.resolvers.LiteralScriptResourceResolver;
 import dev.jbang.util.Util;
 
 public class MarkdownSource extends JshSource {
+	private static final String MARKDOWN_INDEX_SUFFIX = ".md-index";
 
 	protected MarkdownSource(ResourceRef ref, String script, Function<String, String> replaceProperties) {
 		super(ref, script, replaceProperties);
 	}
 
 	public static Source create(ResourceRef resourceRef, Function<String, String> replaceProperties) {
-		String scriptText = new MarkdownTransform().transformMarkdown(
-				Util.readFileContent(resourceRef.getFile()));
+		String markdown = Util.readFileContent(resourceRef.getFile());
+		// The result of transforming the markdown is remembered using
+		// an index file named after the hash of the markdown's content
+		Path indexFile = Settings	.getCacheDir(Cache.CacheClass.stdins)
+									.resolve(Util.getStableID(markdown) + MARKDOWN_INDEX_SUFFIX);
+		Path scriptFile = readIndex(indexFile);
+		if (scriptFile != null) {
+			Util.verboseMsg("Reusing transformed markdown " + scriptFile);
+			return new MarkdownSource(ResourceRef.forCachedResource(resourceRef.getOriginalResource(), scriptFile),
+					Util.readFileContent(scriptFile),
+					replaceProperties);
+		}
+
+		String scriptText = new MarkdownTransform().transformMarkdown(markdown);
 		try {
 			// this will cache the content in stdin cache which is not optimal but needed to
 			// have the transformed script stored
 			// separately from the possibly originally cached file.
 			resourceRef = LiteralScriptResourceResolver.stringToResourceRef(resourceRef.getOriginalResource(),
 					scriptText);
+			writeIndex(indexFile, resourceRef.getFile());
 		} catch (IOException e) {
 			throw new ExitException(BaseCommand.EXIT_UNEXPECTED_STATE,
 					"Could not cache script from markdown at " + resourceRef.getOriginalResource(), e);
@@ -37,6 +58,26 @@ public class MarkdownSource extends JshSource {
 				replaceProperties);
 	}
 
+	private static Path readIndex(Path indexFile) {
+		if (Files.isRegularFile(indexFile)) {
+			try {
+				Path scriptFile = Paths.get(Util.readString(indexFile).trim());
+				if (Files.isRegularFile(scriptFile)) {
+					return scriptFile;
+				}
+			} catch (IOException | InvalidPathException e) {
+				Util.verboseMsg("Unable to read markdown index " + indexFile, e);
+			}
+		}
+		return null;
+	}
+
+	private static void writeIndex(Path indexFile, Path scriptFile) throws IOException {
+		Path tmpFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+		Util.writeString(tmpFile, scriptFile.toAbsolutePath().toString());
+		Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+	}
+
 	static class MarkdownTransform {
 		static final Pattern fourspacesOrTab = Pattern.compile("^( {4}|\t)");
 		static final Pattern javacodeblock = Pattern.compile("^```(java|jsh|jshelllanguage)$");
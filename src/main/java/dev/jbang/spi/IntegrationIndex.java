@@ -0,0 +1,187 @@
+package dev.jbang.spi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+import dev.jbang.util.LockFile;
+import dev.jbang.util.Util;
+
+/**
+ * Keeps track of which dependencies provide build integrations. Looking for
+ * integrations means opening every jar on the class path to check if it
+ * contains a <code>META-INF/jbang-integration.list</code> file. The result of
+ * that check is cached on disk per artifact, keyed by its path, size and
+ * modification time, so for the (vast majority of) dependencies that don't have
+ * any integrations this becomes a single stat per jar.
+ */
+class IntegrationIndex {
+	static final String INTEGRATION_LIST = "META-INF/jbang-integration.list";
+	static final String INDEX_JSON = "integration_index.json";
+
+	private static Map<String, IndexEntry> index = null;
+
+	private static class IndexEntry {
+		long mtime;
+		long size;
+		List<String> classNames;
+	}
+
+	/**
+	 * Returns the names of all integration classes provided by the given
+	 * dependencies. Dependencies that are folders are always checked directly,
+	 * only jar files are indexed.
+	 *
+	 * @param deps The paths to the dependencies
+	 * @return A set of class names, which will be empty if none of the
+	 *         dependencies provide integrations
+	 */
+	static Set<String> findIntegrationClassNames(Collection<Path> deps) {
+		Set<String> classNames = new LinkedHashSet<>();
+		Map<String, IndexEntry> added = new HashMap<>();
+		Map<String, IndexEntry> idx = getIndex();
+		for (Path dep : deps) {
+			if (Files.isDirectory(dep)) {
+				classNames.addAll(readFromFolder(dep));
+				continue;
+			}
+			BasicFileAttributes attrs;
+			try {
+				attrs = Files.readAttributes(dep, BasicFileAttributes.class);
+			} catch (IOException e) {
+				continue;
+			}
+			String key = dep.toAbsolutePath().toString();
+			IndexEntry entry = idx.get(key);
+			if (entry == null || entry.mtime != attrs.lastModifiedTime().toMillis() || entry.size != attrs.size()) {
+				entry = new IndexEntry();
+				entry.mtime = attrs.lastModifiedTime().toMillis();
+				entry.size = attrs.size();
+				entry.classNames = readFromJar(dep);
+				added.put(key, entry);
+			}
+			classNames.addAll(entry.classNames);
+		}
+		if (!added.isEmpty()) {
+			update(added);
+		}
+		return classNames;
+	}
+
+	private static List<String> readFromJar(Path jar) {
+		Util.verboseMsg("Checking for integrations in " + jar);
+		try (ZipFile zf = new ZipFile(jar.toFile())) {
+			ZipEntry ze = zf.getEntry(INTEGRATION_LIST);
+			if (ze != null) {
+				try (InputStream in = zf.getInputStream(ze)) {
+					return readClassNames(in);
+				}
+			}
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to check for integrations in " + jar, e);
+		}
+		return new ArrayList<>();
+	}
+
+	private static List<String> readFromFolder(Path dir) {
+		Path list = dir.resolve(INTEGRATION_LIST);
+		if (Files.isRegularFile(list)) {
+			try (InputStream in = Files.newInputStream(list)) {
+				return readClassNames(in);
+			} catch (IOException e) {
+				Util.verboseMsg("Unable to check for integrations in " + dir, e);
+			}
+		}
+		return new ArrayList<>();
+	}
+
+	static List<String> readClassNames(InputStream in) throws IOException {
+		List<String> classNames = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			line = line.trim();
+			if (!line.startsWith("#")) {
+				if (line.contains("#")) {
+					line = line.substring(0, line.indexOf("#"));
+					line = line.trim();
+				}
+				if (!line.isEmpty()) {
+					classNames.add(line);
+				}
+			}
+		}
+		return classNames;
+	}
+
+	private static Path getIndexFile() {
+		return Settings.getCacheDir(Cache.CacheClass.integrations).resolve(INDEX_JSON);
+	}
+
+	private static Map<String, IndexEntry> getIndex() {
+		if (index == null) {
+			Path indexFile = getIndexFile();
+			if (Files.isRegularFile(indexFile)) {
+				try (Reader in = Files.newBufferedReader(indexFile)) {
+					Type mapType = new TypeToken<Map<String, IndexEntry>>() {
+					}.getType();
+					index = new Gson().fromJson(in, mapType);
+				} catch (IOException | RuntimeException e) {
+					Util.verboseMsg("Unable to read integration index " + indexFile, e);
+				}
+			}
+			if (index == null) {
+				index = new HashMap<>();
+			}
+		}
+		return index;
+	}
+
+	private static void update(Map<String, IndexEntry> entries) {
+		Path indexFile = getIndexFile();
+		try {
+			Files.createDirectories(indexFile.getParent());
+			try (LockFile lock = Cache.lock(Cache.CacheClass.integrations, INDEX_JSON)) {
+				// Re-read the index so we don't drop entries written by other processes
+				index = null;
+				Map<String, IndexEntry> idx = getIndex();
+				idx.putAll(entries);
+
+				Path tmpFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+				try (Writer out = Files.newBufferedWriter(tmpFile)) {
+					new Gson().toJson(idx, out);
+				}
+				Files.move(tmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to write integration index " + indexFile, e);
+		}
+	}
+
+	static void clearCache() {
+		index = null;
+	}
+}
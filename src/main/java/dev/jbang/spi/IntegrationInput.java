@@ -30,4 +30,12 @@ public class IntegrationInput {
 		this.comments = comments;
 		this.nativeRequested = nativeRequested;
 	}
+
+	/**
+	 * Returns a copy of this input for the given integration class
+	 */
+	public IntegrationInput forIntegration(String integrationClassName) {
+		return new IntegrationInput(integrationClassName, source, classes, pom, repositories, dependencies,
+				comments, nativeRequested);
+	}
 }
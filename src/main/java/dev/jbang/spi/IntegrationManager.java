@@ -9,7 +9,6 @@ import java.io.BufferedWriter;
 import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
@@ -20,7 +19,6 @@ import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -62,37 +60,46 @@ public class IntegrationManager {
 		IntegrationResult result = new IntegrationResult(null, null, null);
 		Source source = prj.getMainSource();
 
+		LinkedHashMap<String, Path> deps = getDependencies(prj);
+		Set<String> classNames = IntegrationIndex.findIntegrationClassNames(deps.values());
+		if (classNames.isEmpty()) {
+			return result;
+		}
+
 		LinkedHashMap<String, String> repos = new LinkedHashMap<>();
-		LinkedHashMap<String, Path> deps = new LinkedHashMap<>();
 		for (MavenRepo repo : prj.getRepositories()) {
 			repos.put(repo.getId(), repo.getUrl());
 		}
-		for (ArtifactInfo art : prj.resolveClassPath().getArtifacts()) {
-			if (art.getCoordinate() != null) { // skipping dependencies that does not have a GAV
-				deps.put(art.getCoordinate().toCanonicalForm(), art.getFile());
-			}
-		}
 
 		List<String> comments = source.getTags().collect(Collectors.toList());
 		ClassLoader old = Thread.currentThread().getContextClassLoader();
 		PrintStream oldout = System.out;
 		try {
+			String requestedJavaVersion = prj.getJavaVersion();
+			Path srcPath = (source.getResourceRef().getFile() != null)
+					? source.getResourceRef().getFile().toAbsolutePath()
+					: null;
+			IntegrationInput input = new IntegrationInput(null, srcPath, tmpJarDir, pomPath, repos, deps,
+					comments,
+					prj.isNativeImage());
+			IntegrationResultCache cache = IntegrationResultCache.forInput(input, classNames, requestedJavaVersion,
+					prj.getProperties());
+			IntegrationResult cached = cache.replay();
+			if (cached != null) {
+				return cached;
+			}
 			URLClassLoader integrationCl = getClassLoader(deps.values());
 			Thread.currentThread().setContextClassLoader(integrationCl);
-			String requestedJavaVersion = prj.getJavaVersion();
-			Set<String> classNames = loadIntegrationClassNames(integrationCl);
-			for (String className : classNames) {
-				Path srcPath = (source.getResourceRef().getFile() != null)
-						? source.getResourceRef().getFile().toAbsolutePath()
-						: null;
-				IntegrationInput input = new IntegrationInput(className, srcPath, tmpJarDir, pomPath, repos, deps,
-						comments,
-						prj.isNativeImage());
-				IntegrationResult ir = requestedJavaVersion == null
-						? runIntegrationEmbedded(input, integrationCl)
-						: runIntegrationExternal(input, requestedJavaVersion);
-				result = result.merged(ir);
+			if (requestedJavaVersion == null) {
+				for (String className : classNames) {
+					IntegrationResult ir = runIntegrationEmbedded(input.forIntegration(className), integrationCl);
+					result = result.merged(ir);
+				}
+			} else {
+				// All integrations are run in a single external JVM
+				result = runIntegrationsExternal(input, classNames, requestedJavaVersion);
 			}
+			cache.store(result);
 		} catch (ClassNotFoundException e) {
 			throw new ExitException(EXIT_INVALID_INPUT, "Unable to load integration class", e);
 		} catch (NoSuchMethodException e) {
@@ -109,6 +116,24 @@ public class IntegrationManager {
 		return result;
 	}
 
+	/**
+	 * Determines if any of the project's dependencies provide integrations. The
+	 * result of checking each dependency is cached, so this is cheap to call.
+	 */
+	public static boolean hasIntegrations(Project prj) {
+		return !IntegrationIndex.findIntegrationClassNames(getDependencies(prj).values()).isEmpty();
+	}
+
+	private static LinkedHashMap<String, Path> getDependencies(Project prj) {
+		LinkedHashMap<String, Path> deps = new LinkedHashMap<>();
+		for (ArtifactInfo art : prj.resolveClassPath().getArtifacts()) {
+			if (art.getCoordinate() != null) { // skipping dependencies that does not have a GAV
+				deps.put(art.getCoordinate().toCanonicalForm(), art.getFile());
+			}
+		}
+		return deps;
+	}
+
 	@Nonnull
 	private static URLClassLoader getClassLoader(Collection<Path> deps) {
 		URL[] urls = deps.stream().map(path -> {
@@ -121,32 +146,6 @@ public class IntegrationManager {
 		return new URLClassLoader(urls);
 	}
 
-	private static Set<String> loadIntegrationClassNames(URLClassLoader integrationCl) throws IOException {
-		Set<String> classNames = new HashSet<>();
-		Enumeration<URL> files = integrationCl.getResources("META-INF/jbang-integration.list");
-		while (files.hasMoreElements()) {
-			URL res = files.nextElement();
-			try (InputStream in = res.openStream()) {
-				BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
-				String line;
-				while ((line = reader.readLine()) != null) {
-					line = line.trim();
-					if (!line.startsWith("#")) {
-						if (line.contains("#")) {
-							line = line.substring(0, line.indexOf("#"));
-							line = line.trim();
-						}
-						if (!line.isEmpty()) {
-							classNames.add(line);
-						}
-					}
-
-				}
-			}
-		}
-		return classNames;
-	}
-
 	private static IntegrationResult runIntegrationEmbedded(IntegrationInput input, URLClassLoader integrationCl)
 			throws Exception {
 		Util.infoMsg("Post build with " + input.integrationClassName);
@@ -207,16 +206,23 @@ public class IntegrationManager {
 		return new IntegrationResult(nativeImage, mainClass, javaArgs);
 	}
 
-	private static IntegrationResult runIntegrationExternal(IntegrationInput input, String requestedJavaVersion)
+	/**
+	 * Runs all the given integrations in a single JVM of the requested Java
+	 * version, that JVM runs <code>main()</code> and sends the merged result back
+	 * as JSON.
+	 */
+	static IntegrationResult runIntegrationsExternal(IntegrationInput input, Collection<String> classNames,
+			String requestedJavaVersion)
 			throws Exception {
 		Gson parser = gsonb.create();
-		Util.infoMsg("Running external post build for " + input.integrationClassName);
+		Util.infoMsg("Running external post build for " + String.join(", ", classNames));
 
 		List<String> args = new ArrayList<>();
 		args.add(resolveInJavaHome("java", requestedJavaVersion)); // TODO
 		args.add("-cp");
-		args.add(Util.getJarLocation().toString());
+		args.add(getExternalClassPath());
 		args.add("dev.jbang.spi.IntegrationManager");
+		args.addAll(classNames);
 
 		if (Util.isVerbose()) {
 			Util.verboseMsg("Running: " + String.join(" ", args));
@@ -251,6 +257,16 @@ public class IntegrationManager {
 		}
 	}
 
+	// Normally JBang runs from a single jar containing all its dependencies, when
+	// it's not (in tests for example) our own class path is needed
+	private static String getExternalClassPath() {
+		Path jar = Util.getJarLocation();
+		if (Files.isDirectory(jar)) {
+			return System.getProperty("java.class.path");
+		}
+		return jar.toString();
+	}
+
 	private static <K, V> List<Map.Entry<K, V>> mapToList(Map<K, V> map) {
 		return new ArrayList<>(map.entrySet());
 	}
@@ -265,7 +281,15 @@ public class IntegrationManager {
 		try {
 			URLClassLoader integrationCl = getClassLoader(input.dependencies.values());
 			Thread.currentThread().setContextClassLoader(integrationCl);
-			IntegrationResult result = runIntegrationEmbedded(input, integrationCl);
+			// The integration classes to run are passed as arguments, all sharing
+			// the same input, for backward compatibility a single integration
+			// class can be passed as part of the input instead
+			List<String> classNames = args.length > 0 ? Arrays.asList(args)
+					: Collections.singletonList(input.integrationClassName);
+			IntegrationResult result = new IntegrationResult(null, null, null);
+			for (String className : classNames) {
+				result = result.merged(runIntegrationEmbedded(input.forIntegration(className), integrationCl));
+			}
 			output = parser.toJson(result);
 			ok = true;
 		} catch (ClassNotFoundException e) {
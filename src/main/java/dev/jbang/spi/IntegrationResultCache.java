@@ -0,0 +1,255 @@
+package dev.jbang.spi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+import dev.jbang.cli.ExitException;
+import dev.jbang.util.Util;
+
+/**
+ * Caches the outcome of running integrations. What an integration produces (the
+ * files it writes to the classes folder, a main class and java arguments) only
+ * depends on what it gets passed, so before running the integrations a
+ * fingerprint is calculated of all their inputs: the integration classes, the
+ * contents of the classes folder (which includes the pom), the repositories,
+ * the dependencies, the source's tags and the build properties. If a previous
+ * run with the same fingerprint was cached, its result and files are replayed
+ * instead of running the integrations again.
+ *
+ * Results that refer to a native image are never cached because the image
+ * lives outside of the classes folder. Only the most recently used results of
+ * each classes folder are kept, older ones get evicted when a new one is
+ * stored.
+ */
+class IntegrationResultCache {
+	private static final String RESULT_JSON = "result.json";
+	private static final String FILES_DIR = "files";
+	private static final String TMP_PREFIX = "tmp-";
+	static final int MAX_RESULTS_PER_PROJECT = 3;
+
+	private final Path classesDir;
+	private final Map<String, String> snapshot;
+	private final String fingerprint;
+
+	private static class CachedResult {
+		String mainClass;
+		List<String> javaArgs;
+		List<String> files;
+	}
+
+	private IntegrationResultCache(Path classesDir, Map<String, String> snapshot, String fingerprint) {
+		this.classesDir = classesDir;
+		this.snapshot = snapshot;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Calculates the fingerprint for running the given integrations with the
+	 * given input.
+	 *
+	 * @param input       The integration input, its class name is ignored
+	 * @param classNames  The names of the integration classes that will be run
+	 * @param javaVersion The requested Java version or <code>null</code>
+	 * @param properties  The properties that will be set during the run
+	 */
+	static IntegrationResultCache forInput(IntegrationInput input, Collection<String> classNames,
+			String javaVersion, Map<String, String> properties) throws IOException {
+		Map<String, String> snapshot = snapshot(input.classes);
+		List<String> parts = new ArrayList<>();
+		parts.add("classes=" + input.classes.toAbsolutePath());
+		classNames.stream().sorted().forEach(cn -> parts.add("integration=" + cn));
+		snapshot.forEach((file, hash) -> parts.add("file=" + file + ":" + hash));
+		parts.add("source=" + input.source);
+		parts.add("java=" + javaVersion);
+		parts.add("native=" + input.nativeRequested);
+		input.repositories.forEach((id, url) -> parts.add("repo=" + id + ":" + url));
+		for (Map.Entry<String, Path> dep : input.dependencies.entrySet()) {
+			Path file = dep.getValue();
+			long size = Files.isRegularFile(file) ? Files.size(file) : -1;
+			long mtime = Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+			parts.add("dep=" + dep.getKey() + ":" + file + ":" + size + ":" + mtime);
+		}
+		input.comments.forEach(c -> parts.add("comment=" + c));
+		new TreeMap<>(properties).forEach((k, v) -> parts.add("prop=" + k + "=" + v));
+		String fingerprint = Util.getStableID(parts.stream().map(p -> p + "\n"));
+		return new IntegrationResultCache(input.classes, snapshot, fingerprint);
+	}
+
+	/**
+	 * Restores a previously cached result, copying the files the integrations
+	 * generated back into the classes folder.
+	 *
+	 * @return The cached result or <code>null</code> if nothing was cached
+	 */
+	IntegrationResult replay() {
+		Path resultFile = getCacheDir().resolve(RESULT_JSON);
+		if (!Files.isRegularFile(resultFile)) {
+			return null;
+		}
+		try {
+			CachedResult cached;
+			try (Reader in = Files.newBufferedReader(resultFile)) {
+				cached = new Gson().fromJson(in, CachedResult.class);
+			}
+			if (cached == null || cached.files == null) {
+				return null;
+			}
+			Path filesDir = getCacheDir().resolve(FILES_DIR);
+			for (String file : cached.files) {
+				Path target = classesDir.resolve(file);
+				Files.createDirectories(target.getParent());
+				Files.copy(filesDir.resolve(file), target, StandardCopyOption.REPLACE_EXISTING);
+			}
+			// Marks the result as recently used
+			Files.setLastModifiedTime(resultFile, FileTime.fromMillis(System.currentTimeMillis()));
+			Util.infoMsg("Post build results unchanged, reusing cached results");
+			return new IntegrationResult(null, cached.mainClass, cached.javaArgs);
+		} catch (IOException | JsonParseException e) {
+			Util.verboseMsg("Unable to replay cached post build results " + resultFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the given result together with all the files in the classes folder
+	 * that were added or changed since the fingerprint was calculated.
+	 */
+	void store(IntegrationResult result) {
+		if (result.nativeImagePath != null) {
+			return;
+		}
+		Path cacheDir = getCacheDir();
+		Path tmpDir = null;
+		try {
+			Map<String, String> current = snapshot(classesDir);
+			if (!current.keySet().containsAll(snapshot.keySet())) {
+				// The integrations removed files, we can't replay that
+				return;
+			}
+			List<String> files = current	.entrySet()
+											.stream()
+											.filter(e -> !e.getValue().equals(snapshot.get(e.getKey())))
+											.map(Map.Entry::getKey)
+											.collect(Collectors.toList());
+
+			Files.createDirectories(cacheDir.getParent());
+			tmpDir = Files.createTempDirectory(cacheDir.getParent(), TMP_PREFIX);
+			Path filesDir = tmpDir.resolve(FILES_DIR);
+			for (String file : files) {
+				Path target = filesDir.resolve(file);
+				Files.createDirectories(target.getParent());
+				Files.copy(classesDir.resolve(file), target);
+			}
+			CachedResult cached = new CachedResult();
+			cached.mainClass = result.mainClass;
+			cached.javaArgs = result.javaArgs;
+			cached.files = files;
+			try (Writer out = Files.newBufferedWriter(tmpDir.resolve(RESULT_JSON))) {
+				new Gson().toJson(cached, out);
+			}
+			if (!Files.exists(cacheDir)) {
+				Files.move(tmpDir, cacheDir);
+				tmpDir = null;
+			}
+			evictOldResults();
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to cache post build results " + cacheDir, e);
+		} finally {
+			if (tmpDir != null) {
+				Util.deletePath(tmpDir, true);
+			}
+		}
+	}
+
+	// Deletes all but the most recently used results for the classes folder
+	private void evictOldResults() throws IOException {
+		List<Path> results;
+		try (Stream<Path> s = Files.list(getProjectDir())) {
+			results = s	.filter(dir -> !dir.getFileName().toString().startsWith(TMP_PREFIX))
+						.filter(dir -> Files.isRegularFile(dir.resolve(RESULT_JSON)))
+						.collect(Collectors.toList());
+		}
+		Map<Path, FileTime> lastUsed = new TreeMap<>();
+		for (Path dir : results) {
+			lastUsed.put(dir, Files.getLastModifiedTime(dir.resolve(RESULT_JSON)));
+		}
+		// most recently used first
+		results.sort((r1, r2) -> lastUsed.get(r2).compareTo(lastUsed.get(r1)));
+		for (Path dir : results.subList(Math.min(MAX_RESULTS_PER_PROJECT, results.size()), results.size())) {
+			if (!dir.equals(getCacheDir())) {
+				Util.verboseMsg("Evicting cached post build results " + dir);
+				Util.deletePath(dir, true);
+			}
+		}
+	}
+
+	// The results are grouped per classes folder so old ones can be evicted
+	private Path getProjectDir() {
+		return Settings	.getCacheDir(Cache.CacheClass.integrations)
+						.resolve("results")
+						.resolve(Util.getStableID(classesDir.toAbsolutePath().toString()));
+	}
+
+	Path getCacheDir() {
+		return getProjectDir().resolve(fingerprint);
+	}
+
+	// Returns the content hashes of all files in the given folder
+	// using their (forward slash separated) relative paths as keys
+	private static Map<String, String> snapshot(Path dir) throws IOException {
+		Map<String, String> result = new TreeMap<>();
+		if (!Files.isDirectory(dir)) {
+			return result;
+		}
+		List<Path> files;
+		try (Stream<Path> s = Files.walk(dir)) {
+			files = s.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		for (Path file : files) {
+			String rel = dir.relativize(file).toString().replace('\\', '/');
+			result.put(rel, hash(file));
+		}
+		return result;
+	}
+
+	private static String hash(Path file) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new ExitException(-1, e);
+		}
+		try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+			byte[] buf = new byte[8192];
+			while (in.read(buf) != -1) {
+				// just reading the file updates the digest
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,195 @@
+package dev.jbang.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+
+/**
+ * The result of walking up the directory tree from a given folder looking for
+ * a given set of file names (for JBang those are the config files and catalogs,
+ * see <code>Settings.LOCAL_FILES</code>), both directly in each folder and in
+ * its <code>.jbang</code> sub folder. All those files are
+ * collected in a single pass and the result is cached, both in memory and on
+ * disk, together with the modification times of all the folders that were
+ * visited. Adding or removing a file changes the modification time of its
+ * folder, so as long as those are unchanged the result can be reused, which
+ * costs a single stat per folder instead of one for every possible file.
+ */
+public class DirectoryScan {
+	// Folder modifications that are this recent can't be reliably detected
+	// using timestamps, so in that case we don't cache the scan. File systems
+	// with a coarse timestamp granularity need a larger interval.
+	private static final long RACY_INTERVAL = 100;
+	private static final long RACY_INTERVAL_COARSE = 2000;
+
+	private static final Map<String, DirectoryScan> scans = new ConcurrentHashMap<>();
+
+	List<String> names = new ArrayList<>();
+	Map<String, Long> dirs = new LinkedHashMap<>();
+	List<String> files = new ArrayList<>();
+
+	/**
+	 * Returns all files with the given name that can be found in the given folder,
+	 * any of its parents or their <code>.jbang</code> sub folders. The nearest
+	 * files are returned first.
+	 *
+	 * @param dir       The folder to start looking in
+	 * @param fileName  The name of the file to look for
+	 * @param scanNames The names of all the files that get looked for with a
+	 *                  single, cached, scan. When it doesn't include the given
+	 *                  file name the folders are searched without caching.
+	 * @return A list of paths to existing files
+	 */
+	public static List<Path> findAll(Path dir, String fileName, Collection<String> scanNames) {
+		if (!scanNames.contains(fileName)) {
+			return walk(dir, fileName);
+		}
+		return get(dir, scanNames)	.files
+									.stream()
+									.map(Paths::get)
+									.filter(p -> p.getFileName().toString().equals(fileName))
+									.collect(Collectors.toList());
+	}
+
+	static DirectoryScan get(Path dir, Collection<String> scanNames) {
+		Path start = dir.toAbsolutePath().normalize();
+		List<String> names = new ArrayList<>(new TreeSet<>(scanNames));
+		String key = start + File.pathSeparator + String.join(File.pathSeparator, names);
+		DirectoryScan scan = scans.get(key);
+		if (scan == null || !scan.isValid()) {
+			scan = read(key, names);
+			if (scan == null || !scan.isValid()) {
+				scan = scan(start, names);
+				if (scan.isStable()) {
+					write(key, scan);
+				}
+			}
+			if (scan.isStable()) {
+				scans.put(key, scan);
+			} else {
+				scans.remove(key);
+			}
+		}
+		return scan;
+	}
+
+	public static void clearCache() {
+		scans.clear();
+	}
+
+	private static DirectoryScan scan(Path start, List<String> names) {
+		DirectoryScan scan = new DirectoryScan();
+		scan.names = names;
+		Path dir = start;
+		while (dir != null) {
+			scan.dirs.put(dir.toString(), mtime(dir));
+			scan.addMarkers(dir);
+			Path dotDir = dir.resolve(Settings.JBANG_DOT_DIR);
+			if (Files.isDirectory(dotDir)) {
+				scan.dirs.put(dotDir.toString(), mtime(dotDir));
+				scan.addMarkers(dotDir);
+			}
+			dir = dir.getParent();
+		}
+		return scan;
+	}
+
+	private void addMarkers(Path dir) {
+		for (String name : names) {
+			Path file = dir.resolve(name);
+			if (Files.isRegularFile(file)) {
+				files.add(file.toString());
+			}
+		}
+	}
+
+	private static List<Path> walk(Path dir, String fileName) {
+		List<Path> result = new ArrayList<>();
+		while (dir != null) {
+			Path file = dir.resolve(fileName);
+			if (Files.isRegularFile(file)) {
+				result.add(file);
+			}
+			file = dir.resolve(Settings.JBANG_DOT_DIR).resolve(fileName);
+			if (Files.isRegularFile(file)) {
+				result.add(file);
+			}
+			dir = dir.getParent();
+		}
+		return result;
+	}
+
+	private boolean isValid() {
+		return dirs.entrySet().stream().allMatch(e -> mtime(Paths.get(e.getKey())) == e.getValue());
+	}
+
+	private boolean isStable() {
+		long now = System.currentTimeMillis();
+		return dirs	.values()
+					.stream()
+					.allMatch(t -> t >= 0 && t < now - (t % 1000 == 0 ? RACY_INTERVAL_COARSE : RACY_INTERVAL));
+	}
+
+	private static long mtime(Path dir) {
+		try {
+			return Files.getLastModifiedTime(dir).toMillis();
+		} catch (NoSuchFileException e) {
+			return -1;
+		} catch (IOException e) {
+			return Long.MIN_VALUE;
+		}
+	}
+
+	private static Path getScanFile(String key) {
+		return Settings.getCacheDir(Cache.CacheClass.scans).resolve(Util.getStableID(key) + ".json");
+	}
+
+	private static DirectoryScan read(String key, List<String> names) {
+		Path scanFile = getScanFile(key);
+		if (Files.isRegularFile(scanFile)) {
+			try (Reader in = Files.newBufferedReader(scanFile)) {
+				DirectoryScan scan = new Gson().fromJson(in, DirectoryScan.class);
+				if (scan != null && names.equals(scan.names) && scan.dirs != null && scan.files != null) {
+					return scan;
+				}
+			} catch (IOException | JsonParseException e) {
+				Util.verboseMsg("Unable to read directory scan " + scanFile, e);
+			}
+		}
+		return null;
+	}
+
+	private static void write(String key, DirectoryScan scan) {
+		Path scanFile = getScanFile(key);
+		try {
+			Files.createDirectories(scanFile.getParent());
+			Path tmpFile = Files.createTempFile(scanFile.getParent(), scanFile.getFileName().toString(), ".tmp");
+			try (Writer out = Files.newBufferedWriter(tmpFile)) {
+				new Gson().toJson(scan, out);
+			}
+			Files.move(tmpFile, scanFile, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to write directory scan " + scanFile, e);
+		}
+	}
+}
@@ -0,0 +1,559 @@
+package dev.jbang.util;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Merges jars into a single "fat" jar. Entries are copied as they are, still
+ * compressed, straight from the source files into the target file so none of
+ * them have to be inflated and deflated again. The only entries that get
+ * rewritten are the manifest, which is taken from the first jar, and the
+ * service files in <code>META-INF/services</code>, which get combined. Jar
+ * signatures are dropped because they would no longer be valid. When the same
+ * entry exists in more than one jar the first one wins.
+ */
+public final class JarMerger {
+	private static final int LOC_SIG = 0x04034b50;
+	private static final int CEN_SIG = 0x02014b50;
+	private static final int END_SIG = 0x06054b50;
+	private static final int ZIP64_END_SIG = 0x06064b50;
+	private static final int ZIP64_LOC_SIG = 0x07064b50;
+	private static final int LOC_HDR = 30;
+	private static final int CEN_HDR = 46;
+	private static final int END_HDR = 22;
+	private static final int ZIP64_END_HDR = 56;
+	private static final int ZIP64_LOC_HDR = 20;
+	private static final int ZIP64_EXTRA = 0x0001;
+	private static final int MAX_16 = 0xFFFF;
+	private static final long MAX_32 = 0xFFFFFFFFL;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x08;
+	private static final int FLAG_UTF8 = 0x800;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+
+	private static final String META_INF = "META-INF/";
+	private static final String MANIFEST = "META-INF/MANIFEST.MF";
+	private static final String SERVICES = "META-INF/services/";
+	private static final String VERSIONS = "META-INF/versions/";
+	private static final String MODULE_INFO = "module-info.class";
+
+	private JarMerger() {
+	}
+
+	/**
+	 * Writes a jar to <code>target</code> containing the entries of all the given
+	 * jars. The manifest of the first jar is used for the result, minus its
+	 * <code>Class-Path</code> and any per-entry sections.
+	 */
+	public static void merge(Path target, List<Path> jars) throws IOException {
+		// Only the central directories get read up front, they tell us where
+		// to find every entry's data when we copy it over
+		List<ZipIndex> indexes = new ArrayList<>();
+		for (Path jar : jars) {
+			indexes.add(ZipIndex.read(jar));
+		}
+		Manifest manifest = createManifest(indexes);
+		int[] now = dosTime(System.currentTimeMillis());
+
+		Path tmpTarget = target.resolveSibling(target.getFileName() + ".part");
+		try (FileChannel out = FileChannel.open(tmpTarget, CREATE, TRUNCATE_EXISTING, WRITE)) {
+			ZipWriter writer = new ZipWriter(out);
+			Set<String> names = new HashSet<>();
+			writer.add(META_INF, new byte[0], now);
+			names.add(META_INF);
+			ByteArrayOutputStream mf = new ByteArrayOutputStream();
+			manifest.write(mf);
+			writer.add(MANIFEST, mf.toByteArray(), now);
+			names.add(MANIFEST);
+
+			Map<String, ByteArrayOutputStream> services = new TreeMap<>();
+			for (ZipIndex index : indexes) {
+				try (FileChannel in = FileChannel.open(index.jar, READ)) {
+					for (ZipIndex.Entry e : index.entries) {
+						if (isExcluded(e.name)) {
+							continue;
+						}
+						if (isServiceFile(e.name)) {
+							ByteArrayOutputStream content = services.computeIfAbsent(e.name,
+									k -> new ByteArrayOutputStream());
+							byte[] bytes = index.read(in, e);
+							content.write(bytes);
+							if (bytes.length > 0 && bytes[bytes.length - 1] != '\n') {
+								content.write('\n');
+							}
+							continue;
+						}
+						if (!names.add(e.name)) {
+							if (!e.isDirectory()) {
+								Util.verboseMsg("Skipping duplicate " + e.name + " from " + index.jar);
+							}
+							continue;
+						}
+						writer.copy(in, index, e);
+					}
+				}
+			}
+			for (Map.Entry<String, ByteArrayOutputStream> service : services.entrySet()) {
+				writer.add(service.getKey(), service.getValue().toByteArray(), now);
+			}
+			writer.finish();
+		}
+		Files.move(tmpTarget, target, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static Manifest createManifest(List<ZipIndex> indexes) {
+		Manifest manifest = new Manifest();
+		if (!indexes.isEmpty() && indexes.get(0).manifest != null) {
+			manifest.getMainAttributes().putAll(indexes.get(0).manifest.getMainAttributes());
+		}
+		Attributes attrs = manifest.getMainAttributes();
+		attrs.putIfAbsent(Attributes.Name.MANIFEST_VERSION, "1.0");
+		// Everything on the class path is inside the jar now
+		attrs.remove(Attributes.Name.CLASS_PATH);
+		boolean multiRelease = indexes	.stream()
+										.anyMatch(idx -> idx.manifest != null && Boolean.parseBoolean(
+												idx.manifest.getMainAttributes().getValue("Multi-Release")));
+		if (multiRelease) {
+			attrs.putValue("Multi-Release", "true");
+		}
+		return manifest;
+	}
+
+	private static boolean isExcluded(String name) {
+		if (name.equals(MANIFEST) || name.equals("META-INF/INDEX.LIST")) {
+			return true;
+		}
+		// A merged jar can't be a valid module
+		if (name.equals(MODULE_INFO) || (name.startsWith(VERSIONS) && name.endsWith("/" + MODULE_INFO))) {
+			return true;
+		}
+		return isSignatureFile(name);
+	}
+
+	private static boolean isSignatureFile(String name) {
+		if (!name.startsWith(META_INF) || name.indexOf('/', META_INF.length()) >= 0) {
+			return false;
+		}
+		String upper = name.toUpperCase(Locale.ROOT);
+		return upper.endsWith(".SF") || upper.endsWith(".RSA") || upper.endsWith(".DSA") || upper.endsWith(".EC")
+				|| upper.startsWith("META-INF/SIG-");
+	}
+
+	private static boolean isServiceFile(String name) {
+		return name.startsWith(SERVICES) && name.length() > SERVICES.length()
+				&& name.indexOf('/', SERVICES.length()) < 0;
+	}
+
+	// Returns the time and date in MS-DOS format as used in zip headers
+	private static int[] dosTime(long millis) {
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(millis);
+		int year = Math.max(cal.get(Calendar.YEAR), 1980);
+		int time = (cal.get(Calendar.HOUR_OF_DAY) << 11) | (cal.get(Calendar.MINUTE) << 5)
+				| (cal.get(Calendar.SECOND) >> 1);
+		int date = ((year - 1980) << 9) | ((cal.get(Calendar.MONTH) + 1) << 5) | cal.get(Calendar.DAY_OF_MONTH);
+		return new int[] { time, date };
+	}
+
+	/**
+	 * The entries of a jar as listed in its central directory.
+	 */
+	private static class ZipIndex {
+		final Path jar;
+		final List<Entry> entries = new ArrayList<>();
+		// Bytes found in front of the zip data, like a launcher script
+		long prefix;
+		Manifest manifest;
+
+		static class Entry {
+			String name;
+			byte[] rawName;
+			int flags;
+			int method;
+			int time;
+			int date;
+			long crc;
+			long compressedSize;
+			long size;
+			long offset;
+
+			boolean isDirectory() {
+				return name.endsWith("/");
+			}
+		}
+
+		private ZipIndex(Path jar) {
+			this.jar = jar;
+		}
+
+		static ZipIndex read(Path jar) throws IOException {
+			ZipIndex index = new ZipIndex(jar);
+			try (FileChannel in = FileChannel.open(jar, READ)) {
+				index.readCentralDirectory(in);
+				for (Entry e : index.entries) {
+					if (e.name.equals(MANIFEST)) {
+						index.manifest = new Manifest(new ByteArrayInputStream(index.read(in, e)));
+						break;
+					}
+				}
+			}
+			return index;
+		}
+
+		private void readCentralDirectory(FileChannel in) throws IOException {
+			long endPos = findEnd(in);
+			ByteBuffer end = readBuffer(in, endPos, END_HDR);
+			long count = end.getShort(10) & MAX_16;
+			long cenSize = end.getInt(12) & MAX_32;
+			long cenOffset = end.getInt(16) & MAX_32;
+			long cenPos = endPos - cenSize;
+			if (count == MAX_16 || cenSize == MAX_32 || cenOffset == MAX_32) {
+				ByteBuffer loc = endPos >= ZIP64_LOC_HDR ? readBuffer(in, endPos - ZIP64_LOC_HDR, ZIP64_LOC_HDR)
+						: null;
+				if (loc != null && loc.getInt(0) == ZIP64_LOC_SIG) {
+					long end64Pos = endPos - ZIP64_LOC_HDR - ZIP64_END_HDR;
+					ByteBuffer end64 = readBuffer(in, end64Pos, ZIP64_END_HDR);
+					if (end64.getInt(0) != ZIP64_END_SIG) {
+						throw new IOException("Invalid zip64 end record in " + jar);
+					}
+					count = end64.getLong(32);
+					cenSize = end64.getLong(40);
+					cenOffset = end64.getLong(48);
+					cenPos = end64Pos - cenSize;
+				}
+			}
+			prefix = cenPos - cenOffset;
+			if (prefix < 0 || cenSize > Integer.MAX_VALUE) {
+				throw new IOException("Invalid central directory in " + jar);
+			}
+			ByteBuffer cen = readBuffer(in, cenPos, (int) cenSize);
+			int pos = 0;
+			for (long i = 0; i < count; i++) {
+				if (cen.getInt(pos) != CEN_SIG) {
+					throw new IOException("Invalid central directory entry in " + jar);
+				}
+				Entry e = new Entry();
+				e.flags = cen.getShort(pos + 8) & MAX_16;
+				e.method = cen.getShort(pos + 10) & MAX_16;
+				e.time = cen.getShort(pos + 12) & MAX_16;
+				e.date = cen.getShort(pos + 14) & MAX_16;
+				e.crc = cen.getInt(pos + 16) & MAX_32;
+				e.compressedSize = cen.getInt(pos + 20) & MAX_32;
+				e.size = cen.getInt(pos + 24) & MAX_32;
+				int nameLen = cen.getShort(pos + 28) & MAX_16;
+				int extraLen = cen.getShort(pos + 30) & MAX_16;
+				int commentLen = cen.getShort(pos + 32) & MAX_16;
+				e.offset = cen.getInt(pos + 42) & MAX_32;
+				e.rawName = new byte[nameLen];
+				cen.position(pos + CEN_HDR);
+				cen.get(e.rawName);
+				e.name = new String(e.rawName, StandardCharsets.UTF_8);
+				readZip64Extra(cen, pos + CEN_HDR + nameLen, extraLen, e);
+				entries.add(e);
+				pos += CEN_HDR + nameLen + extraLen + commentLen;
+			}
+		}
+
+		// Sizes and offsets that don't fit in the header are in the extra field
+		private static void readZip64Extra(ByteBuffer cen, int pos, int len, Entry e) {
+			if (e.size != MAX_32 && e.compressedSize != MAX_32 && e.offset != MAX_32) {
+				return;
+			}
+			int end = pos + len;
+			while (pos + 4 <= end) {
+				int id = cen.getShort(pos) & MAX_16;
+				int size = cen.getShort(pos + 2) & MAX_16;
+				if (id == ZIP64_EXTRA) {
+					int p = pos + 4;
+					if (e.size == MAX_32) {
+						e.size = cen.getLong(p);
+						p += 8;
+					}
+					if (e.compressedSize == MAX_32) {
+						e.compressedSize = cen.getLong(p);
+						p += 8;
+					}
+					if (e.offset == MAX_32) {
+						e.offset = cen.getLong(p);
+					}
+					return;
+				}
+				pos += 4 + size;
+			}
+		}
+
+		private long findEnd(FileChannel in) throws IOException {
+			long size = in.size();
+			// The end record is followed by a comment of at most 64K
+			int len = (int) Math.min(size, END_HDR + MAX_16);
+			ByteBuffer buf = readBuffer(in, size - len, len);
+			for (int pos = len - END_HDR; pos >= 0; pos--) {
+				if (buf.getInt(pos) == END_SIG) {
+					return size - len + pos;
+				}
+			}
+			throw new IOException("Not a zip file: " + jar);
+		}
+
+		/**
+		 * Returns the position of the (compressed) data of the given entry.
+		 */
+		long dataPosition(FileChannel in, Entry e) throws IOException {
+			long pos = prefix + e.offset;
+			ByteBuffer loc = readBuffer(in, pos, LOC_HDR);
+			if (loc.getInt(0) != LOC_SIG) {
+				throw new IOException("Invalid local header for " + e.name + " in " + jar);
+			}
+			return pos + LOC_HDR + (loc.getShort(26) & MAX_16) + (loc.getShort(28) & MAX_16);
+		}
+
+		/**
+		 * Returns the uncompressed contents of the given entry.
+		 */
+		byte[] read(FileChannel in, Entry e) throws IOException {
+			if (e.compressedSize > Integer.MAX_VALUE - 1 || e.size > Integer.MAX_VALUE) {
+				throw new IOException("Entry " + e.name + " in " + jar + " is too large");
+			}
+			// one extra byte because that's what the inflater wants in "nowrap" mode
+			ByteBuffer data = ByteBuffer.allocate((int) e.compressedSize + 1);
+			data.limit((int) e.compressedSize);
+			readFully(in, dataPosition(in, e), data);
+			if (e.method == STORED) {
+				return Arrays.copyOf(data.array(), (int) e.compressedSize);
+			} else if (e.method == DEFLATED) {
+				Inflater inflater = new Inflater(true);
+				try {
+					inflater.setInput(data.array(), 0, data.capacity());
+					byte[] result = new byte[(int) e.size];
+					int n = 0;
+					while (n < result.length && !inflater.finished()) {
+						int r = inflater.inflate(result, n, result.length - n);
+						if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+							break;
+						}
+						n += r;
+					}
+					if (n != result.length) {
+						throw new IOException("Unexpected end of entry " + e.name + " in " + jar);
+					}
+					return result;
+				} catch (DataFormatException ex) {
+					throw new IOException("Invalid entry " + e.name + " in " + jar, ex);
+				} finally {
+					inflater.end();
+				}
+			} else {
+				throw new IOException("Unsupported compression method for " + e.name + " in " + jar);
+			}
+		}
+	}
+
+	/**
+	 * Writes a zip file one entry at a time, keeping track of the central
+	 * directory which gets written at the end.
+	 */
+	private static class ZipWriter {
+		private final FileChannel out;
+		private final ByteArrayOutputStream cen = new ByteArrayOutputStream();
+		private long count;
+
+		ZipWriter(FileChannel out) {
+			this.out = out;
+		}
+
+		/**
+		 * Copies the compressed data of the given entry without touching it.
+		 */
+		void copy(FileChannel in, ZipIndex index, ZipIndex.Entry e) throws IOException {
+			if (e.compressedSize >= MAX_32 || e.size >= MAX_32) {
+				throw new IOException("Entry " + e.name + " in " + index.jar + " is too large");
+			}
+			long dataPos = index.dataPosition(in, e);
+			// the sizes are known now, so there's no need for a data descriptor
+			int flags = e.flags & ~FLAG_DATA_DESCRIPTOR;
+			writeHeaders(e.rawName, flags, e.method, e.time, e.date, e.crc, e.compressedSize, e.size);
+			long done = 0;
+			while (done < e.compressedSize) {
+				long n = in.transferTo(dataPos + done, e.compressedSize - done, out);
+				if (n <= 0) {
+					throw new IOException("Unexpected end of entry " + e.name + " in " + index.jar);
+				}
+				done += n;
+			}
+		}
+
+		/**
+		 * Adds a new entry with the given contents.
+		 */
+		void add(String name, byte[] content, int[] dosTime) throws IOException {
+			CRC32 crc = new CRC32();
+			crc.update(content);
+			byte[] data = content;
+			int method = STORED;
+			if (content.length > 0) {
+				Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+				try {
+					deflater.setInput(content);
+					deflater.finish();
+					ByteArrayOutputStream bos = new ByteArrayOutputStream();
+					byte[] buf = new byte[8192];
+					while (!deflater.finished()) {
+						bos.write(buf, 0, deflater.deflate(buf));
+					}
+					data = bos.toByteArray();
+					method = DEFLATED;
+				} finally {
+					deflater.end();
+				}
+			}
+			writeHeaders(name.getBytes(StandardCharsets.UTF_8), FLAG_UTF8, method, dosTime[0], dosTime[1],
+					crc.getValue(), data.length, content.length);
+			writeFully(ByteBuffer.wrap(data));
+		}
+
+		private void writeHeaders(byte[] name, int flags, int method, int time, int date, long crc,
+				long compressedSize, long size) throws IOException {
+			long offset = out.position();
+			if (offset >= MAX_32) {
+				throw new IOException("The jar is too large");
+			}
+			ByteBuffer loc = newBuffer(LOC_HDR + name.length);
+			loc.putInt(LOC_SIG);
+			loc.putShort((short) 20);
+			loc.putShort((short) flags);
+			loc.putShort((short) method);
+			loc.putShort((short) time);
+			loc.putShort((short) date);
+			loc.putInt((int) crc);
+			loc.putInt((int) compressedSize);
+			loc.putInt((int) size);
+			loc.putShort((short) name.length);
+			loc.putShort((short) 0);
+			loc.put(name);
+			loc.flip();
+			writeFully(loc);
+
+			ByteBuffer c = newBuffer(CEN_HDR + name.length);
+			c.putInt(CEN_SIG);
+			c.putShort((short) 20);
+			c.putShort((short) 20);
+			c.putShort((short) flags);
+			c.putShort((short) method);
+			c.putShort((short) time);
+			c.putShort((short) date);
+			c.putInt((int) crc);
+			c.putInt((int) compressedSize);
+			c.putInt((int) size);
+			c.putShort((short) name.length);
+			c.putShort((short) 0);
+			c.putShort((short) 0);
+			c.putShort((short) 0);
+			c.putShort((short) 0);
+			c.putInt(0);
+			c.putInt((int) offset);
+			c.put(name);
+			cen.write(c.array());
+			count++;
+		}
+
+		/**
+		 * Writes the central directory and the end records.
+		 */
+		void finish() throws IOException {
+			long cenPos = out.position();
+			writeFully(ByteBuffer.wrap(cen.toByteArray()));
+			long cenSize = cen.size();
+			if (cenPos + cenSize >= MAX_32) {
+				throw new IOException("The jar is too large");
+			}
+			if (count >= MAX_16) {
+				// Too many entries for the regular end record
+				long end64Pos = out.position();
+				ByteBuffer end64 = newBuffer(ZIP64_END_HDR + ZIP64_LOC_HDR);
+				end64.putInt(ZIP64_END_SIG);
+				end64.putLong(ZIP64_END_HDR - 12);
+				end64.putShort((short) 45);
+				end64.putShort((short) 45);
+				end64.putInt(0);
+				end64.putInt(0);
+				end64.putLong(count);
+				end64.putLong(count);
+				end64.putLong(cenSize);
+				end64.putLong(cenPos);
+				end64.putInt(ZIP64_LOC_SIG);
+				end64.putInt(0);
+				end64.putLong(end64Pos);
+				end64.putInt(1);
+				end64.flip();
+				writeFully(end64);
+			}
+			ByteBuffer end = newBuffer(END_HDR);
+			end.putInt(END_SIG);
+			end.putShort((short) 0);
+			end.putShort((short) 0);
+			end.putShort((short) Math.min(count, MAX_16));
+			end.putShort((short) Math.min(count, MAX_16));
+			end.putInt((int) cenSize);
+			end.putInt((int) cenPos);
+			end.putShort((short) 0);
+			end.flip();
+			writeFully(end);
+		}
+
+		private void writeFully(ByteBuffer buf) throws IOException {
+			while (buf.hasRemaining()) {
+				out.write(buf);
+			}
+		}
+	}
+
+	private static ByteBuffer newBuffer(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static ByteBuffer readBuffer(FileChannel in, long pos, int len) throws IOException {
+		ByteBuffer buf = newBuffer(len);
+		readFully(in, pos, buf);
+		buf.flip();
+		return buf;
+	}
+
+	private static void readFully(FileChannel in, long pos, ByteBuffer buf) throws IOException {
+		long p = pos;
+		while (buf.hasRemaining()) {
+			int n = in.read(buf, p);
+			if (n < 0) {
+				throw new IOException("Unexpected end of file");
+			}
+			p += n;
+		}
+	}
+}
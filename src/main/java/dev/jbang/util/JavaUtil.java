@@ -33,7 +33,7 @@ public class JavaUtil {
 			} else {
 				int minVersion = JavaUtil.minRequestedVersion(requestedVersion);
 				if (isOpenVersion(requestedVersion)) {
-					Optional<Integer> minInstalledVersion = JdkManager.nextInstalledJdk(minVersion);
+					Optional<Integer> minInstalledVersion = JdkManager.nextAvailableJdk(minVersion);
 					if (minInstalledVersion.isPresent()) {
 						return minInstalledVersion.get();
 					}
@@ -54,20 +54,27 @@ public class JavaUtil {
 	 * JAVA_HOME or on the PATH. In all other cases it's assumed that we know what
 	 * the version is because it would be a JDK installed by us. The result of this
 	 * call is cached so it can be called multiple times without having to worry
-	 * about efficiency.
+	 * about efficiency. The version is read from the JDK's <code>release</code>
+	 * file if possible, otherwise <code>java</code> is run once and its output
+	 * gets cached on disk (see <code>JdkInfo</code>).
 	 * 
 	 * @return The detected Java version or 0 if it couldn't be determined
 	 */
 	public static int determineJavaVersion() {
 		if (javaVersion == null) {
 			Path jdkHome = getJdkHome();
-			Path javaCmd;
+			Optional<JdkInfo> jdk;
 			if (jdkHome != null) {
-				javaCmd = jdkHome.resolve("bin").resolve("java").toAbsolutePath();
+				jdk = JdkInfo.forJavaHome(jdkHome);
 			} else {
-				javaCmd = Paths.get("java");
+				Path javaCmd = Util.searchPath("java");
+				jdk = javaCmd != null ? JdkInfo.forJavaCmd(javaCmd) : Optional.empty();
+			}
+			javaVersion = jdk.map(JdkInfo::getMajorVersion).orElse(0);
+			if (javaVersion == 0) {
+				Util.verboseMsg("Version of the system Java could not be determined, trying 'java.version' property");
+				javaVersion = parseJavaVersion(System.getProperty("java.version"));
 			}
-			javaVersion = determineJavaVersion(javaCmd);
 			if (javaVersion != 0) {
 				Util.verboseMsg("System Java version detected as " + javaVersion);
 			} else {
@@ -77,17 +84,6 @@ public class JavaUtil {
 		return javaVersion;
 	}
 
-	private static int determineJavaVersion(Path javaCmd) {
-		String output = Util.runCommand(javaCmd.toString(), "-version");
-		int version = parseJavaOutput(output);
-		if (version == 0) {
-			Util.verboseMsg(
-					"Version could not be determined from: '$javaCmd -version', trying 'java.version' property");
-			version = parseJavaVersion(System.getProperty("java.version"));
-		}
-		return version;
-	}
-
 	/**
 	 * Returns the Path to JAVA_HOME
 	 * 
@@ -0,0 +1,244 @@
+package dev.jbang.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+
+/**
+ * Information about a JDK installation: its version, vendor, architecture and
+ * home folder. Whenever possible this information is read from the JDK's
+ * <code>release</code> file. When that's not available we have to run the
+ * <code>java</code> executable once, after which the result gets cached on disk
+ * keyed by the real path and modification time of that executable. This way
+ * determining a JDK's version costs a file read or a stat instead of a process
+ * spawn.
+ */
+public class JdkInfo {
+	public final String version;
+	public final String vendor;
+	public final String arch;
+	public final Path home;
+
+	private static Map<String, CachedJdkInfo> jdkCache = null;
+
+	private static final Pattern propertyPattern = Pattern.compile(
+			"^\\s*(java\\.version|java\\.vendor|os\\.arch|java\\.home)\\s*=\\s*(.*?)\\s*$", Pattern.MULTILINE);
+
+	public JdkInfo(String version, String vendor, String arch, Path home) {
+		this.version = version;
+		this.vendor = vendor;
+		this.arch = arch;
+		this.home = home;
+	}
+
+	/**
+	 * Returns the major version of the JDK (eg. 8, 11, 17) or 0 if the version
+	 * could not be determined.
+	 */
+	public int getMajorVersion() {
+		return JavaUtil.parseJavaVersion(version);
+	}
+
+	@Override
+	public String toString() {
+		return "JDK " + version + " (" + vendor + ", " + arch + ") at " + home;
+	}
+
+	/**
+	 * Reads the JDK information from the <code>release</code> file found in the
+	 * given JDK home folder.
+	 *
+	 * @param home The JDK home folder
+	 * @return The JDK information or <code>Optional.empty()</code> if no (valid)
+	 *         <code>release</code> file was found
+	 */
+	public static Optional<JdkInfo> fromReleaseFile(Path home) {
+		Path release = home.resolve("release");
+		if (!Files.isRegularFile(release)) {
+			return Optional.empty();
+		}
+		Properties props = new Properties();
+		try (Reader in = Files.newBufferedReader(release)) {
+			props.load(in);
+		} catch (IOException | IllegalArgumentException e) {
+			Util.verboseMsg("Unable to read 'release' file in path:" + home);
+			return Optional.empty();
+		}
+		String version = props.getProperty("JAVA_VERSION");
+		if (version == null) {
+			return Optional.empty();
+		}
+		return Optional.of(new JdkInfo(unquote(version),
+				unquote(props.getProperty("IMPLEMENTOR")),
+				unquote(props.getProperty("OS_ARCH")),
+				home));
+	}
+
+	/**
+	 * Returns the JDK information for the JDK in the given home folder.
+	 *
+	 * @param home The JDK home folder
+	 * @return The JDK information or <code>Optional.empty()</code> if the folder
+	 *         doesn't contain a working JDK
+	 */
+	public static Optional<JdkInfo> forJavaHome(Path home) {
+		Optional<JdkInfo> info = fromReleaseFile(home);
+		if (!info.isPresent()) {
+			String java = Util.isWindows() ? "java.exe" : "java";
+			info = forJavaCmd(home.resolve("bin").resolve(java));
+		}
+		return info;
+	}
+
+	/**
+	 * Returns the JDK information for the JDK the given <code>java</code>
+	 * executable belongs to. Symbolic links (like <code>/usr/bin/java</code>) are
+	 * followed to find the actual JDK.
+	 *
+	 * @param javaCmd Path to a <code>java</code> executable
+	 * @return The JDK information or <code>Optional.empty()</code> if the
+	 *         executable doesn't exist or its version could not be determined
+	 */
+	public static Optional<JdkInfo> forJavaCmd(Path javaCmd) {
+		Path realCmd;
+		long mtime;
+		try {
+			realCmd = javaCmd.toRealPath();
+			mtime = Files.getLastModifiedTime(realCmd).toMillis();
+		} catch (IOException e) {
+			return Optional.empty();
+		}
+
+		Path home = realCmd.getParent() != null ? realCmd.getParent().getParent() : null;
+		if (home != null) {
+			Optional<JdkInfo> info = fromReleaseFile(home);
+			if (!info.isPresent() && home.endsWith("jre") && home.getParent() != null) {
+				// Java 8 JDKs have their executables inside the "jre" folder
+				info = fromReleaseFile(home.getParent());
+			}
+			if (info.isPresent()) {
+				return info;
+			}
+		}
+
+		String key = realCmd.toString();
+		CachedJdkInfo cached = getCache().get(key);
+		if (cached != null && cached.mtime == mtime) {
+			return Optional.of(cached.toJdkInfo());
+		}
+
+		Optional<JdkInfo> info = runJavaCmd(realCmd);
+		info.ifPresent(jdk -> cache(key, new CachedJdkInfo(mtime, jdk)));
+		return info;
+	}
+
+	private static Optional<JdkInfo> runJavaCmd(Path javaCmd) {
+		Util.verboseMsg("Running " + javaCmd + " to determine its version");
+		String output = Util.runCommand(javaCmd.toString(), "-XshowSettings:properties", "-version");
+		if (output == null) {
+			return Optional.empty();
+		}
+		Map<String, String> props = new HashMap<>();
+		Matcher m = propertyPattern.matcher(output);
+		while (m.find()) {
+			props.put(m.group(1), m.group(2));
+		}
+		String version = props.get("java.version");
+		if (version == null) {
+			int v = JavaUtil.parseJavaOutput(output);
+			if (v == 0) {
+				return Optional.empty();
+			}
+			version = Integer.toString(v);
+		}
+		Path home = props.containsKey("java.home") ? Paths.get(props.get("java.home")) : null;
+		if (home != null && home.endsWith("jre") && home.getParent() != null) {
+			home = home.getParent();
+		}
+		return Optional.of(new JdkInfo(version, props.get("java.vendor"), props.get("os.arch"), home));
+	}
+
+	private static String unquote(String value) {
+		return value != null ? Util.unquote(value.trim()) : null;
+	}
+
+	private static Map<String, CachedJdkInfo> getCache() {
+		if (jdkCache == null) {
+			Path cacheFile = Settings.getCacheJdkFile();
+			if (Files.isRegularFile(cacheFile)) {
+				try (Reader in = Files.newBufferedReader(cacheFile)) {
+					Type mapType = new TypeToken<Map<String, CachedJdkInfo>>() {
+					}.getType();
+					jdkCache = new Gson().fromJson(in, mapType);
+				} catch (IOException | RuntimeException e) {
+					Util.verboseMsg("Unable to read JDK cache " + cacheFile, e);
+				}
+			}
+			if (jdkCache == null) {
+				jdkCache = new HashMap<>();
+			}
+		}
+		return jdkCache;
+	}
+
+	private static void cache(String key, CachedJdkInfo info) {
+		try (LockFile lock = Cache.lock(Settings.getCacheJdkFile())) {
+			// Re-read the cache so we don't drop entries written by other processes
+			jdkCache = null;
+			Map<String, CachedJdkInfo> cache = getCache();
+			cache.put(key, info);
+
+			Path cacheFile = Settings.getCacheJdkFile();
+			Path tmpFile = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+			try (Writer out = Files.newBufferedWriter(tmpFile)) {
+				Gson parser = new GsonBuilder().setPrettyPrinting().create();
+				parser.toJson(cache, out);
+			}
+			Files.move(tmpFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to write JDK cache", e);
+		}
+	}
+
+	public static void clearCache() {
+		jdkCache = null;
+	}
+
+	private static class CachedJdkInfo {
+		long mtime;
+		String version;
+		String vendor;
+		String arch;
+		String home;
+
+		CachedJdkInfo(long mtime, JdkInfo info) {
+			this.mtime = mtime;
+			this.version = info.version;
+			this.vendor = info.vendor;
+			this.arch = info.arch;
+			this.home = info.home != null ? info.home.toString() : null;
+		}
+
+		JdkInfo toJdkInfo() {
+			return new JdkInfo(version, vendor, arch, home != null ? Paths.get(home) : null);
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package dev.jbang.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import dev.jbang.cli.BaseCommand;
+import dev.jbang.cli.ExitException;
+
+/**
+ * A lock that is shared between all JBang processes (and all threads within a
+ * process) that use the same lock file. It's used to make sure that only a
+ * single process at a time builds, downloads or installs a certain thing while
+ * all others wait for it to finish so they can reuse the result.
+ *
+ * The lock is an OS-level file lock, which means that it will automatically be
+ * released when the process holding it dies, so a crashed process can never
+ * leave a stale lock behind. The lock file itself only contains the id of the
+ * process that last held the lock, which is used for informational purposes.
+ */
+public class LockFile implements AutoCloseable {
+	private static final Map<Path, ReentrantLock> localLocks = new ConcurrentHashMap<>();
+	private static final long POLL_INTERVAL = 100;
+
+	private final Path file;
+	private final ReentrantLock localLock;
+	private final FileChannel channel;
+	private final FileLock lock;
+	private final boolean contended;
+
+	private LockFile(Path file, ReentrantLock localLock, FileChannel channel, FileLock lock, boolean contended) {
+		this.file = file;
+		this.localLock = localLock;
+		this.channel = channel;
+		this.lock = lock;
+		this.contended = contended;
+	}
+
+	/**
+	 * Returns true if the lock was held by somebody else when we tried to acquire
+	 * it, meaning that we had to wait and that whatever the lock is protecting
+	 * might have been created or changed in the meantime.
+	 */
+	public boolean isContended() {
+		return contended;
+	}
+
+	/**
+	 * Acquires the lock for the given file, blocking until it becomes available.
+	 * The file and its parent folders will be created if they don't exist yet. If
+	 * the file system doesn't support locking we'll continue without a lock.
+	 *
+	 * @param file The lock file to use
+	 * @return A <code>LockFile</code> that must be closed to release the lock
+	 */
+	public static LockFile acquire(Path file) {
+		Path lockPath = file.toAbsolutePath().normalize();
+		ReentrantLock localLock = localLocks.computeIfAbsent(lockPath, p -> new ReentrantLock());
+		boolean contended = !localLock.tryLock();
+		if (contended) {
+			localLock.lock();
+		}
+		if (localLock.getHoldCount() > 1) {
+			// We already hold this lock further up the call stack
+			return new LockFile(lockPath, localLock, null, null, false);
+		}
+		FileChannel channel = null;
+		try {
+			Files.createDirectories(lockPath.getParent());
+			channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+			FileLock lock = tryLock(channel);
+			if (lock == null) {
+				contended = true;
+				Util.infoMsg("Waiting for another JBang process (" + readOwner(lockPath) + ") to release "
+						+ lockPath.getFileName() + "...");
+				while (lock == null) {
+					Thread.sleep(POLL_INTERVAL);
+					lock = tryLock(channel);
+				}
+			}
+			writeOwner(channel);
+			return new LockFile(lockPath, localLock, channel, lock, contended);
+		} catch (IOException | UnsupportedOperationException e) {
+			Util.verboseMsg("Unable to lock " + lockPath + ", continuing without lock", e);
+			return new LockFile(lockPath, localLock, channel, null, contended);
+		} catch (InterruptedException e) {
+			closeQuietly(channel);
+			localLock.unlock();
+			Thread.currentThread().interrupt();
+			throw new ExitException(BaseCommand.EXIT_UNEXPECTED_STATE, "Interrupted while waiting for " + lockPath,
+					e);
+		}
+	}
+
+	private static FileLock tryLock(FileChannel channel) throws IOException {
+		try {
+			return channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// Can't happen because of the local lock, but let's be safe
+			return null;
+		}
+	}
+
+	private static String readOwner(Path lockPath) {
+		try {
+			String owner = Util.readString(lockPath).trim();
+			return owner.isEmpty() ? "unknown" : owner;
+		} catch (IOException e) {
+			return "unknown";
+		}
+	}
+
+	private static void writeOwner(FileChannel channel) throws IOException {
+		channel.truncate(0);
+		channel.write(ByteBuffer.wrap(ManagementFactory	.getRuntimeMXBean()
+														.getName()
+														.getBytes(StandardCharsets.UTF_8)),
+				0);
+		channel.force(false);
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// Ignore
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (lock != null) {
+				lock.release();
+			}
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to release lock " + file, e);
+		} finally {
+			closeQuietly(channel);
+			localLock.unlock();
+		}
+	}
+}
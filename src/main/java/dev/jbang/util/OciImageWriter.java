@@ -0,0 +1,463 @@
+package dev.jbang.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Writes a container image as an OCI image layout packed in a tar file, which
+ * can be loaded with <code>podman load</code>, <code>docker load</code> or
+ * copied to a registry with <code>skopeo</code>, no container daemon is needed
+ * to create it. Layers get added in order, each one on top of the previous
+ * ones. All timestamps and ownership in the layers are fixed, so a layer with
+ * the same contents always gets the same digest and doesn't have to be stored
+ * or uploaded again.
+ */
+public class OciImageWriter implements Closeable {
+	private static final String MEDIA_TYPE_INDEX = "application/vnd.oci.image.index.v1+json";
+	private static final String MEDIA_TYPE_MANIFEST = "application/vnd.oci.image.manifest.v1+json";
+	private static final String MEDIA_TYPE_CONFIG = "application/vnd.oci.image.config.v1+json";
+	private static final String MEDIA_TYPE_LAYER = "application/vnd.oci.image.layer.v1.tar+gzip";
+	private static final String MEDIA_TYPE_DOCKER_LIST = "application/vnd.docker.distribution.manifest.list.v2+json";
+	private static final String CREATED = "1970-01-01T00:00:00Z";
+	private static final Date MTIME = new Date(0);
+	private static final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+	private final String architecture;
+	private final Path tmpDir;
+	// The files containing the layers, in the same order as the layers
+	private final List<Path> blobs = new ArrayList<>();
+	private final JsonArray layers = new JsonArray();
+	private final JsonArray diffIds = new JsonArray();
+	private final JsonArray history = new JsonArray();
+	private JsonObject baseConfig;
+
+	/**
+	 * Contents of a single layer. Paths are absolute paths inside the image, any
+	 * parent directories are added automatically.
+	 */
+	public static class Layer {
+		private final TarArchiveOutputStream tar;
+		private final Set<String> dirs = new HashSet<>();
+
+		private Layer(TarArchiveOutputStream tar) {
+			this.tar = tar;
+		}
+
+		/**
+		 * Adds the given directory and everything in it. Symbolic links that are
+		 * relative and stay inside the directory are kept as links, all others (like
+		 * the links into <code>/etc</code> found in distribution packaged JDKs) are
+		 * replaced by the contents of what they point to, because their targets won't
+		 * exist inside the image.
+		 */
+		public void addTree(String target, Path dir) throws IOException {
+			Path root = dir.toAbsolutePath().normalize();
+			List<Path> paths;
+			try (Stream<Path> s = Files.walk(root)) {
+				paths = s.sorted().collect(Collectors.toList());
+			}
+			for (Path p : paths) {
+				String rel = root.relativize(p).toString().replace('\\', '/');
+				String name = rel.isEmpty() ? target : target + "/" + rel;
+				if (Files.isSymbolicLink(p)) {
+					Path link = Files.readSymbolicLink(p);
+					if (!link.isAbsolute() && p.getParent().resolve(link).normalize().startsWith(root)) {
+						addParents(name);
+						TarArchiveEntry entry = newEntry(name, TarConstants.LF_SYMLINK);
+						entry.setLinkName(link.toString().replace('\\', '/'));
+						tar.putArchiveEntry(entry);
+						tar.closeArchiveEntry();
+					} else {
+						addLinkTarget(name, p);
+					}
+				} else if (Files.isDirectory(p)) {
+					addDirectory(name);
+				} else {
+					addFile(name, p);
+				}
+			}
+		}
+
+		private void addLinkTarget(String name, Path link) throws IOException {
+			Path real;
+			try {
+				real = link.toRealPath();
+			} catch (IOException e) {
+				Util.warnMsg("Skipping broken symbolic link " + link);
+				return;
+			}
+			if (Files.isDirectory(real)) {
+				if (link.getParent().toRealPath().startsWith(real)) {
+					Util.warnMsg("Skipping symbolic link " + link + " because it points to one of its parents");
+					return;
+				}
+				addTree(name, real);
+			} else {
+				addFile(name, real);
+			}
+		}
+
+		/**
+		 * Adds the given file, keeping its permissions if possible.
+		 */
+		public void addFile(String target, Path file) throws IOException {
+			addParents(target);
+			TarArchiveEntry entry = newEntry(target, TarConstants.LF_NORMAL);
+			entry.setMode(getMode(file));
+			entry.setSize(Files.size(file));
+			tar.putArchiveEntry(entry);
+			Files.copy(file, tar);
+			tar.closeArchiveEntry();
+		}
+
+		/**
+		 * Adds a regular file with the given contents.
+		 */
+		public void addFile(String target, InputStream content, long size) throws IOException {
+			addParents(target);
+			TarArchiveEntry entry = newEntry(target, TarConstants.LF_NORMAL);
+			entry.setMode(0644);
+			entry.setSize(size);
+			tar.putArchiveEntry(entry);
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = content.read(buf)) != -1) {
+				tar.write(buf, 0, n);
+			}
+			tar.closeArchiveEntry();
+		}
+
+		private void addDirectory(String name) throws IOException {
+			addParents(name);
+			if (dirs.add(name)) {
+				TarArchiveEntry entry = newEntry(name + "/", TarConstants.LF_DIR);
+				entry.setMode(0755);
+				tar.putArchiveEntry(entry);
+				tar.closeArchiveEntry();
+			}
+		}
+
+		private void addParents(String name) throws IOException {
+			int i = name.lastIndexOf('/');
+			if (i > 0) {
+				addDirectory(name.substring(0, i));
+			}
+		}
+
+		private static TarArchiveEntry newEntry(String name, byte type) {
+			// Layer entries are relative to the root of the file system
+			TarArchiveEntry entry = new TarArchiveEntry(name.startsWith("/") ? name.substring(1) : name, type);
+			entry.setModTime(MTIME);
+			entry.setIds(0, 0);
+			entry.setNames("root", "root");
+			return entry;
+		}
+
+		private static int getMode(Path file) {
+			try {
+				int mode = 0;
+				for (PosixFilePermission p : Files.getPosixFilePermissions(file, LinkOption.NOFOLLOW_LINKS)) {
+					mode |= 1 << (8 - p.ordinal());
+				}
+				return mode;
+			} catch (UnsupportedOperationException | IOException e) {
+				return Files.isExecutable(file) ? 0755 : 0644;
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface LayerContents {
+		void write(Layer layer) throws IOException;
+	}
+
+	/**
+	 * @param architecture The architecture of the image, as used by Go
+	 *                     (<code>amd64</code>, <code>arm64</code>, ...)
+	 */
+	public OciImageWriter(String architecture) throws IOException {
+		this.architecture = architecture;
+		this.tmpDir = Files.createTempDirectory("jbang-image");
+	}
+
+	/**
+	 * Uses the image found in the given OCI image layout directory, for example
+	 * created by <code>skopeo copy docker://image oci:dir</code>, as the base for
+	 * this image. Its layers and configuration get included as-is.
+	 */
+	public void setBase(Path layoutDir) throws IOException {
+		JsonObject index = readJson(layoutDir.resolve("index.json"));
+		JsonObject desc = index.getAsJsonArray("manifests").get(0).getAsJsonObject();
+		String mediaType = getString(desc, "mediaType");
+		if (MEDIA_TYPE_INDEX.equals(mediaType) || MEDIA_TYPE_DOCKER_LIST.equals(mediaType)) {
+			// A multi-platform image, select the one for our architecture
+			JsonObject platforms = readJson(getBlob(layoutDir, getString(desc, "digest")));
+			desc = null;
+			for (JsonElement el : platforms.getAsJsonArray("manifests")) {
+				JsonObject platform = el.getAsJsonObject().getAsJsonObject("platform");
+				if (platform != null && "linux".equals(getString(platform, "os"))
+						&& architecture.equals(getString(platform, "architecture"))) {
+					desc = el.getAsJsonObject();
+					break;
+				}
+			}
+			if (desc == null) {
+				throw new IOException("No linux/" + architecture + " image found in " + layoutDir);
+			}
+		}
+		JsonObject manifest = readJson(getBlob(layoutDir, getString(desc, "digest")));
+		String configDigest = getString(manifest.getAsJsonObject("config"), "digest");
+		baseConfig = readJson(getBlob(layoutDir, configDigest));
+		if (!architecture.equals(getString(baseConfig, "architecture"))) {
+			Util.warnMsg("The base image is for " + getString(baseConfig, "architecture") + ", not " + architecture);
+		}
+		for (JsonElement layer : manifest.getAsJsonArray("layers")) {
+			layers.add(layer);
+			blobs.add(getBlob(layoutDir, getString(layer.getAsJsonObject(), "digest")));
+		}
+		JsonObject rootfs = baseConfig.getAsJsonObject("rootfs");
+		if (rootfs != null && rootfs.has("diff_ids")) {
+			diffIds.addAll(rootfs.getAsJsonArray("diff_ids"));
+		}
+		if (baseConfig.has("history")) {
+			history.addAll(baseConfig.getAsJsonArray("history"));
+		}
+	}
+
+	/**
+	 * Adds a layer on top of the ones added so far.
+	 *
+	 * @param description What the layer contains, for the image's history
+	 */
+	public void addLayer(String description, LayerContents contents) throws IOException {
+		MessageDigest compressed = sha256();
+		MessageDigest uncompressed = sha256();
+		Path tmpBlob = Files.createTempFile(tmpDir, "layer", ".tar.gz");
+		try (OutputStream os = Files.newOutputStream(tmpBlob);
+				DigestOutputStream cos = new DigestOutputStream(os, compressed);
+				GZIPOutputStream gos = new GZIPOutputStream(cos);
+				DigestOutputStream uos = new DigestOutputStream(gos, uncompressed);
+				TarArchiveOutputStream tar = new TarArchiveOutputStream(uos, StandardCharsets.UTF_8.name())) {
+			tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+			tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+			contents.write(new Layer(tar));
+		}
+		String digest = toDigest(compressed);
+		Path blob = tmpDir.resolve(digest.replace(':', '-'));
+		Files.move(tmpBlob, blob, StandardCopyOption.REPLACE_EXISTING);
+		blobs.add(blob);
+		layers.add(descriptor(MEDIA_TYPE_LAYER, digest, Files.size(blob)));
+		diffIds.add(toDigest(uncompressed));
+		JsonObject entry = new JsonObject();
+		entry.addProperty("created", CREATED);
+		entry.addProperty("created_by", "jbang export image: " + description);
+		history.add(entry);
+	}
+
+	/**
+	 * Writes the image to the given tar file.
+	 *
+	 * @param name       The name and tag of the image, like
+	 *                   <code>hello:latest</code>
+	 * @param entrypoint The command to run when the container starts
+	 * @param env        Environment variables in <code>NAME=value</code> form,
+	 *                   overriding those of the base image
+	 * @param workingDir The working directory for the command
+	 */
+	public void write(Path target, String name, List<String> entrypoint, List<String> env, String workingDir)
+			throws IOException {
+		JsonObject config = baseConfig != null ? baseConfig.deepCopy() : new JsonObject();
+		config.addProperty("created", CREATED);
+		config.addProperty("architecture", architecture);
+		config.addProperty("os", "linux");
+		JsonObject runConfig = config.has("config") && config.get("config").isJsonObject()
+				? config.getAsJsonObject("config")
+				: new JsonObject();
+		runConfig.add("Entrypoint", toArray(entrypoint));
+		runConfig.remove("Cmd");
+		runConfig.addProperty("WorkingDir", workingDir);
+		List<String> allEnv = new ArrayList<>();
+		if (runConfig.has("Env")) {
+			for (JsonElement el : runConfig.getAsJsonArray("Env")) {
+				String var = el.getAsString();
+				String key = var.split("=", 2)[0] + "=";
+				if (env.stream().noneMatch(e -> e.startsWith(key))) {
+					allEnv.add(var);
+				}
+			}
+		}
+		allEnv.addAll(env);
+		runConfig.add("Env", toArray(allEnv));
+		config.add("config", runConfig);
+		JsonObject rootfs = new JsonObject();
+		rootfs.addProperty("type", "layers");
+		rootfs.add("diff_ids", diffIds);
+		config.add("rootfs", rootfs);
+		config.add("history", history);
+		byte[] configBytes = gson.toJson(config).getBytes(StandardCharsets.UTF_8);
+		String configDigest = toDigest(sha256(configBytes));
+
+		JsonObject manifest = new JsonObject();
+		manifest.addProperty("schemaVersion", 2);
+		manifest.addProperty("mediaType", MEDIA_TYPE_MANIFEST);
+		manifest.add("config", descriptor(MEDIA_TYPE_CONFIG, configDigest, configBytes.length));
+		manifest.add("layers", layers);
+		byte[] manifestBytes = gson.toJson(manifest).getBytes(StandardCharsets.UTF_8);
+		String manifestDigest = toDigest(sha256(manifestBytes));
+
+		JsonObject index = new JsonObject();
+		index.addProperty("schemaVersion", 2);
+		index.addProperty("mediaType", MEDIA_TYPE_INDEX);
+		JsonObject manifestDesc = descriptor(MEDIA_TYPE_MANIFEST, manifestDigest, manifestBytes.length);
+		JsonObject annotations = new JsonObject();
+		annotations.addProperty("io.containerd.image.name", name);
+		annotations.addProperty("org.opencontainers.image.ref.name", name.substring(name.lastIndexOf(':') + 1));
+		manifestDesc.add("annotations", annotations);
+		JsonArray manifests = new JsonArray();
+		manifests.add(manifestDesc);
+		index.add("manifests", manifests);
+
+		// Older versions of Docker only know about their own format
+		JsonObject dockerManifest = new JsonObject();
+		dockerManifest.addProperty("Config", blobPath(configDigest));
+		dockerManifest.add("RepoTags", toArray(Collections.singletonList(name)));
+		JsonArray dockerLayers = new JsonArray();
+		for (JsonElement layer : layers) {
+			dockerLayers.add(blobPath(getString(layer.getAsJsonObject(), "digest")));
+		}
+		dockerManifest.add("Layers", dockerLayers);
+		JsonArray dockerManifests = new JsonArray();
+		dockerManifests.add(dockerManifest);
+
+		Path tmpTarget = target.resolveSibling(target.getFileName() + ".part");
+		try (OutputStream os = Files.newOutputStream(tmpTarget);
+				TarArchiveOutputStream tar = new TarArchiveOutputStream(os, StandardCharsets.UTF_8.name())) {
+			tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+			tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+			writeEntry(tar, "oci-layout", "{\"imageLayoutVersion\":\"1.0.0\"}".getBytes(StandardCharsets.UTF_8));
+			writeEntry(tar, "index.json", gson.toJson(index).getBytes(StandardCharsets.UTF_8));
+			writeEntry(tar, "manifest.json", gson.toJson(dockerManifests).getBytes(StandardCharsets.UTF_8));
+			writeEntry(tar, blobPath(configDigest), configBytes);
+			writeEntry(tar, blobPath(manifestDigest), manifestBytes);
+			Set<String> written = new HashSet<>();
+			for (int i = 0; i < blobs.size(); i++) {
+				String path = blobPath(getString(layers.get(i).getAsJsonObject(), "digest"));
+				if (written.add(path)) {
+					Path blob = blobs.get(i);
+					TarArchiveEntry entry = new TarArchiveEntry(path);
+					entry.setModTime(MTIME);
+					entry.setSize(Files.size(blob));
+					tar.putArchiveEntry(entry);
+					Files.copy(blob, tar);
+					tar.closeArchiveEntry();
+				}
+			}
+		}
+		Files.move(tmpTarget, target, StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	@Override
+	public void close() {
+		Util.deletePath(tmpDir, true);
+	}
+
+	private static void writeEntry(TarArchiveOutputStream tar, String name, byte[] content) throws IOException {
+		TarArchiveEntry entry = new TarArchiveEntry(name);
+		entry.setModTime(MTIME);
+		entry.setSize(content.length);
+		tar.putArchiveEntry(entry);
+		tar.write(content);
+		tar.closeArchiveEntry();
+	}
+
+	private static JsonObject descriptor(String mediaType, String digest, long size) {
+		JsonObject desc = new JsonObject();
+		desc.addProperty("mediaType", mediaType);
+		desc.addProperty("digest", digest);
+		desc.addProperty("size", size);
+		return desc;
+	}
+
+	private static JsonArray toArray(List<String> values) {
+		JsonArray array = new JsonArray();
+		values.forEach(array::add);
+		return array;
+	}
+
+	private static String getString(JsonObject obj, String name) {
+		JsonElement el = obj.get(name);
+		return el != null && !el.isJsonNull() ? el.getAsString() : null;
+	}
+
+	private static JsonObject readJson(Path file) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			return JsonParser.parseReader(reader).getAsJsonObject();
+		}
+	}
+
+	private static Path getBlob(Path layoutDir, String digest) throws IOException {
+		Path blob = layoutDir.resolve("blobs").resolve(digest.replace(':', '/'));
+		if (!Files.isRegularFile(blob)) {
+			throw new IOException("Missing blob " + digest + " in " + layoutDir);
+		}
+		return blob;
+	}
+
+	private static String blobPath(String digest) {
+		return "blobs/" + digest.replace(':', '/');
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MessageDigest sha256(byte[] content) {
+		MessageDigest md = sha256();
+		md.update(content);
+		return md;
+	}
+
+	private static String toDigest(MessageDigest md) {
+		StringBuilder sb = new StringBuilder("sha256:");
+		for (byte b : md.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
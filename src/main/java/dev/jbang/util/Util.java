@@ -2,6 +2,7 @@ package dev.jbang.util;
 
 import java.awt.*;
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -428,7 +429,11 @@ public class Util {
 	}
 
 	public static Arch getArch() {
-		String arch = System.getProperty("os.arch").toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]+", "");
+		return getArch(System.getProperty("os.arch"));
+	}
+
+	public static Arch getArch(String archName) {
+		String arch = archName.toLowerCase(Locale.ENGLISH).replaceAll("[^a-z0-9]+", "");
 		if (arch.matches("^(x8664|amd64|ia32e|em64t|x64)$")) {
 			return Arch.x64;
 		} else if (arch.matches("^(x8632|x86|i[3-6]86|ia32|x32)$")) {
@@ -588,6 +593,27 @@ public class Util {
 	 */
 	public static Path downloadFile(String fileURL, File saveDir, int timeOut)
 			throws IOException {
+		return downloadFile(fileURL, saveDir, timeOut, null);
+	}
+
+	/**
+	 * Downloads a file from a URL, but only if it was changed since the last time
+	 * it was downloaded. The given <code>validators</code> hold the
+	 * <code>ETag</code> and <code>Last-Modified</code> values of that previous
+	 * download, they will be sent along with the request and are updated with the
+	 * values from the response.
+	 *
+	 * @param fileURL    HTTP URL of the file to be downloaded
+	 * @param saveDir    path of the directory to save the file
+	 * @param timeOut    the timeout in milliseconds to use for opening the
+	 *                   connection. 0 is an infinite timeout while -1 uses the
+	 *                   defaults
+	 * @param validators the cache validators of the previous download or null
+	 * @return Path to the downloaded file or null if the file wasn't modified
+	 * @throws IOException
+	 */
+	public static Path downloadFile(String fileURL, File saveDir, int timeOut, Properties validators)
+			throws IOException {
 		if (Util.isOffline()) {
 			throw new FileNotFoundException("jbang is in offline mode, no remote access permitted");
 		}
@@ -611,6 +637,14 @@ public class Util {
 					httpConn.setConnectTimeout(timeOut);
 					httpConn.setReadTimeout(timeOut);
 				}
+				if (validators != null) {
+					if (validators.containsKey("etag")) {
+						httpConn.setRequestProperty("If-None-Match", validators.getProperty("etag"));
+					}
+					if (validators.containsKey("last-modified")) {
+						httpConn.setRequestProperty("If-Modified-Since", validators.getProperty("last-modified"));
+					}
+				}
 				responseCode = httpConn.getResponseCode();
 				if (responseCode == HttpURLConnection.HTTP_MOVED_PERM ||
 						responseCode == HttpURLConnection.HTTP_MOVED_TEMP ||
@@ -629,8 +663,25 @@ public class Util {
 				break;
 			}
 
+			if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null) {
+				httpConn.disconnect();
+				Util.verboseMsg(String.format("Not modified %s", fileURL));
+				return null;
+			}
+
 			// always check HTTP response code first
 			if (responseCode == HttpURLConnection.HTTP_OK) {
+				if (validators != null) {
+					validators.clear();
+					String etag = httpConn.getHeaderField("ETag");
+					if (etag != null) {
+						validators.setProperty("etag", etag);
+					}
+					String lastModified = httpConn.getHeaderField("Last-Modified");
+					if (lastModified != null) {
+						validators.setProperty("last-modified", lastModified);
+					}
+				}
 				String disposition = httpConn.getHeaderField("Content-Disposition");
 				// String contentType = httpConn.getContentType();
 				// int contentLength = httpConn.getContentLength();
@@ -733,8 +784,20 @@ public class Util {
 	public static Path downloadAndCacheFile(String fileURL) throws IOException {
 		Path urlCache = Util.getUrlCache(fileURL);
 		Path file = getFirstFile(urlCache);
-		if ((Util.isFresh() && !Util.isOffline()) || file == null) {
-			return downloadFileAndCache(fileURL, urlCache);
+		boolean fresh = Util.isFresh() && !Util.isOffline();
+		if (fresh || file == null) {
+			try (LockFile lock = Cache.lock(Cache.CacheClass.urls, urlCache.getFileName().toString())) {
+				if (!fresh || lock.isContended()) {
+					// Another process might have downloaded the same file while
+					// we weren't holding the lock, let's use that
+					file = getFirstFile(urlCache);
+					if (file != null) {
+						Util.verboseMsg(String.format("Retrieved file from cache %s = %s", fileURL, file));
+						return urlCache.resolve(file);
+					}
+				}
+				return downloadFileAndCache(fileURL, urlCache);
+			}
 		} else {
 			Util.verboseMsg(String.format("Retrieved file from cache %s = %s", fileURL, file));
 			return urlCache.resolve(file);
@@ -751,10 +814,92 @@ public class Util {
 	 */
 	public static Path downloadFileToCache(String fileURL) throws IOException {
 		Path urlCache = Util.getUrlCache(fileURL);
-		return downloadFileAndCache(fileURL, urlCache);
+		try (LockFile lock = Cache.lock(Cache.CacheClass.urls, urlCache.getFileName().toString())) {
+			return downloadFileAndCache(fileURL, urlCache);
+		}
+	}
+
+	/**
+	 * Like <code>downloadAndCacheFile(String)</code> but a file in the cache will
+	 * only be used as-is for the given amount of time. After that the server will
+	 * be asked if the file changed, using the <code>ETag</code> and
+	 * <code>Last-Modified</code> values of the previous download, and it will only
+	 * be downloaded again if it did. If the server can't be reached the cached file
+	 * will be used regardless of its age.
+	 *
+	 * @param fileURL HTTP URL of the file to be downloaded
+	 * @param maxAge  The number of seconds a cached file can be used without
+	 *                checking for changes
+	 * @return Path to the downloaded file
+	 * @throws IOException
+	 */
+	public static Path downloadAndCacheFile(String fileURL, long maxAge) throws IOException {
+		Path urlCache = Util.getUrlCache(fileURL);
+		Path file = getFirstFile(urlCache);
+		if (file == null || (Util.isFresh() && !Util.isOffline())) {
+			return downloadAndCacheFile(fileURL);
+		}
+		if (Util.isOffline() || !isCacheExpired(urlCache, maxAge)) {
+			Util.verboseMsg(String.format("Retrieved file from cache %s = %s", fileURL, file));
+			return urlCache.resolve(file);
+		}
+		try (LockFile lock = Cache.lock(Cache.CacheClass.urls, urlCache.getFileName().toString())) {
+			file = getFirstFile(urlCache);
+			if (lock.isContended() && file != null && !isCacheExpired(urlCache, maxAge)) {
+				Util.verboseMsg(String.format("Retrieved file from cache %s = %s", fileURL, file));
+				return urlCache.resolve(file);
+			}
+			return downloadFileAndCache(fileURL, urlCache, true);
+		} catch (IOException e) {
+			file = getFirstFile(urlCache);
+			if (file == null) {
+				throw e;
+			}
+			Util.warnMsg("Unable to check " + fileURL + " for changes, using cached copy");
+			Util.verboseMsg("Revalidation failed", e);
+			return urlCache.resolve(file);
+		}
+	}
+
+	private static boolean isCacheExpired(Path urlCache, long maxAge) throws IOException {
+		Path meta = getUrlCacheValidatorsFile(urlCache);
+		Path stamp = Files.isRegularFile(meta) ? meta : urlCache;
+		long age = System.currentTimeMillis() - Files.getLastModifiedTime(stamp).toMillis();
+		return age > TimeUnit.SECONDS.toMillis(maxAge);
+	}
+
+	private static Path getUrlCacheValidatorsFile(Path urlCache) {
+		return urlCache.resolveSibling(urlCache.getFileName() + ".properties");
+	}
+
+	private static Properties readUrlCacheValidators(Path urlCache) {
+		Properties validators = new Properties();
+		Path meta = getUrlCacheValidatorsFile(urlCache);
+		if (Files.isRegularFile(meta)) {
+			try (BufferedReader in = Files.newBufferedReader(meta)) {
+				validators.load(in);
+			} catch (IOException e) {
+				Util.verboseMsg("Unable to read " + meta, e);
+			}
+		}
+		return validators;
+	}
+
+	private static void writeUrlCacheValidators(Path urlCache, Properties validators) {
+		Path meta = getUrlCacheValidatorsFile(urlCache);
+		try (BufferedWriter out = Files.newBufferedWriter(meta)) {
+			validators.store(out, null);
+		} catch (IOException e) {
+			Util.verboseMsg("Unable to write " + meta, e);
+		}
 	}
 
 	private static Path downloadFileAndCache(String fileURL, Path urlCache) throws IOException {
+		return downloadFileAndCache(fileURL, urlCache, false);
+	}
+
+	private static Path downloadFileAndCache(String fileURL, Path urlCache, boolean revalidate)
+			throws IOException {
 		// create a temp directory for the downloaded content
 		Path saveTmpDir = urlCache.getParent().resolve(urlCache.getFileName() + ".tmp");
 		Path saveOldDir = urlCache.getParent().resolve(urlCache.getFileName() + ".old");
@@ -762,7 +907,14 @@ public class Util {
 			Util.deletePath(saveTmpDir, true);
 			Util.deletePath(saveOldDir, true);
 
-			Path saveFilePath = downloadFile(fileURL, saveTmpDir.toFile());
+			Properties validators = revalidate ? readUrlCacheValidators(urlCache) : new Properties();
+			Path saveFilePath = downloadFile(fileURL, saveTmpDir.toFile(), -1, validators);
+			if (saveFilePath == null) {
+				// Not modified, so we keep using the cached file
+				Util.deletePath(saveTmpDir, true);
+				writeUrlCacheValidators(urlCache, validators);
+				return urlCache.resolve(getFirstFile(urlCache));
+			}
 
 			// temporarily save the old content
 			if (Files.isDirectory(urlCache)) {
@@ -772,6 +924,7 @@ public class Util {
 			Files.move(saveTmpDir, urlCache);
 			// remove any old content
 			Util.deletePath(saveOldDir, true);
+			writeUrlCacheValidators(urlCache, validators);
 
 			return urlCache.resolve(saveFilePath.getFileName());
 		} catch (Throwable th) {
@@ -1347,16 +1500,10 @@ public class Util {
 		if (dir == null) {
 			dir = getCwd();
 		}
-		while (dir != null) {
-			Path file = dir.resolve(fileName);
-			if (Files.isRegularFile(file) && Files.isReadable(file) && accept.apply(file)) {
-				return file;
-			}
-			file = dir.resolve(Settings.JBANG_DOT_DIR).resolve(fileName);
-			if (Files.isRegularFile(file) && Files.isReadable(file) && accept.apply(file)) {
+		for (Path file : DirectoryScan.findAll(dir, fileName, Settings.LOCAL_FILES)) {
+			if (Files.isReadable(file) && accept.apply(file)) {
 				return file;
 			}
-			dir = dir.getParent();
 		}
 		return null;
 	}
@@ -21,6 +21,7 @@ import org.junit.jupiter.api.io.TempDir;
 
 import dev.jbang.cli.BaseCommand;
 import dev.jbang.cli.JBang;
+import dev.jbang.net.JdkManager;
 import dev.jbang.util.Util;
 
 import picocli.CommandLine;
@@ -35,10 +36,12 @@ public abstract class BaseTest {
 		environmentVariables.set(Settings.JBANG_DIR, jbangTempDir.toString());
 		environmentVariables.set(Settings.JBANG_CACHE_DIR, jbangTempDir.resolve("cache").toString());
 		environmentVariables.set(Settings.ENV_NO_VERSION_CHECK, "true");
+		environmentVariables.set(Settings.ENV_NO_JDK_DISCOVERY, "true");
 		if (Util.isWindows()) {
 			environmentVariables.set(Util.JBANG_RUNTIME_SHELL, "cmd");
 		}
 		Configuration.instance(null);
+		JdkManager.clearSystemJdks();
 	}
 
 	public static final String EXAMPLES_FOLDER = "itests";
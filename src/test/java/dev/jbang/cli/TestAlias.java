@@ -12,6 +12,7 @@ import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -411,4 +412,25 @@ public class TestAlias extends BaseTest {
 
 	}
 
+	@Test
+	void testGetAliasFromIndex() throws IOException {
+		Path catFile = jbangTempDir.resolve(Catalog.JBANG_CATALOG_JSON);
+		long past = System.currentTimeMillis() - 60000;
+		Files.setLastModifiedTime(catFile, FileTime.fromMillis(past));
+		clearSettingsCaches();
+		assertThat(Alias.get("two").description, equalTo("twodesc"));
+		assertThat(Files.list(Settings.getCacheDir(dev.jbang.Cache.CacheClass.aliases)).count(), equalTo(1L));
+
+		clearSettingsCaches();
+		Alias alias = Alias.get("two");
+		assertThat(alias.description, equalTo("twodesc"));
+		assertThat(alias.scriptRef, equalTo("http://dummy"));
+		assertThat(alias.catalog.catalogRef.getFile(), equalTo(catFile));
+
+		// Changing the catalog must invalidate the index
+		Util.writeString(catFile, aliases.replace("twodesc", "newdesc"));
+		Files.setLastModifiedTime(catFile, FileTime.fromMillis(past + 1000));
+		clearSettingsCaches();
+		assertThat(Alias.get("two").description, equalTo("newdesc"));
+	}
 }
@@ -260,4 +260,34 @@ public class TestEdit extends BaseTest {
 		Edit edit = (Edit) pr.subcommand().commandSpec().userObject();
 		edit.doCall();
 	}
+
+	@Test
+	void testLiveStateChanges(@TempDir Path outputDir) throws IOException {
+		Path p = outputDir.resolve("edit.java");
+		JBang.getCommandLine().execute("init", p.toString());
+		String original = Util.readString(p);
+
+		ProjectWatcher.State state = new ProjectWatcher.State(RunContext.empty().forResource(p.toString()));
+		assertThat(state.files, containsInAnyOrder(p.toAbsolutePath().normalize()));
+
+		// changing code doesn't require the project to be regenerated
+		Util.writeString(p, original + "\n// just a comment\n");
+		assertThat(new ProjectWatcher.State(RunContext.empty().forResource(p.toString())), equalTo(state));
+
+		// changing dependencies does
+		Util.writeString(p, "//DEPS info.picocli:picocli:4.6.3\n" + original);
+		ProjectWatcher.State depState = new ProjectWatcher.State(RunContext.empty().forResource(p.toString()));
+		assertThat(depState, not(equalTo(state)));
+		assertThat(depState.sameClassPath(state), is(false));
+
+		// and so do sources, which should then also be watched
+		Path other = outputDir.resolve("Other.java");
+		Util.writeString(other, "class Other {}\n");
+		Util.writeString(p, "//SOURCES Other.java\n" + original);
+		ProjectWatcher.State newState = new ProjectWatcher.State(RunContext.empty().forResource(p.toString()));
+		assertThat(newState, not(equalTo(state)));
+		assertThat(newState.sameClassPath(state), is(true));
+		assertThat(newState.files, containsInAnyOrder(p.toAbsolutePath().normalize(),
+				other.toAbsolutePath().normalize()));
+	}
 }
@@ -3,8 +3,12 @@ package dev.jbang.cli;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.io.FileMatchers.anExistingDirectory;
 import static org.hamcrest.io.FileMatchers.anExistingFile;
 import static org.hamcrest.io.FileMatchers.anExistingFileOrDirectory;
@@ -13,18 +17,39 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
 import java.util.jar.Manifest;
 
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.condition.OS;
 
 import dev.jbang.BaseTest;
 import dev.jbang.Settings;
+import dev.jbang.util.Util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 
 import picocli.CommandLine;
 
@@ -89,6 +114,140 @@ public class TestExport extends BaseTest {
 		Files.delete(jar.toPath());
 	}
 
+	@Test
+	void testExportPortableWithLink() throws IOException {
+		String src = examplesTestFolder.resolve("classpath_log.java").toString();
+		String outFile = cwdDir.resolve("classpath_log.jar").toString();
+		ExecutionResult result = checkedRun(null, "export", "portable", "--link", "-O", outFile, src);
+		assertThat(result.err, matchesPattern("(?s).*Exported to.*classpath_log.jar.*"));
+		assertThat(new File(outFile), anExistingFile());
+		File[] libs = cwdDir.resolve(ExportPortable.LIB).toFile().listFiles();
+		assertThat(libs.length, Matchers.equalTo(1));
+		assertThat(libs[0].getName(), equalTo("log4j-1.2.17.jar"));
+		assertThat(libs[0].length(), Matchers.greaterThan(0L));
+	}
+
+	@Test
+	void testExportFatjar() throws IOException {
+		String src = examplesTestFolder.resolve("classpath_log.java").toString();
+		String outFile = cwdDir.resolve("classpath_log.jar").toString();
+		ExecutionResult result = checkedRun(null, "export", "fatjar", "-O", outFile, src);
+		assertThat(result.err, matchesPattern("(?s).*Exported to.*classpath_log.jar.*"));
+		assertThat(new File(outFile), anExistingFile());
+		assertThat(cwdDir.resolve(ExportPortable.LIB).toFile(), not(anExistingFileOrDirectory()));
+
+		try (JarFile jar = new JarFile(outFile)) {
+			Attributes attrs = jar.getManifest().getMainAttributes();
+			assertThat(attrs.getValue(Attributes.Name.MAIN_CLASS), equalTo("classpath_example"));
+			assertThat(attrs.getValue(Attributes.Name.CLASS_PATH), nullValue());
+			assertThat(jar.getEntry("classpath_example.class"), notNullValue());
+			assertThat(jar.getEntry("org/apache/log4j/Logger.class"), notNullValue());
+			// make sure all the copied entries are intact
+			Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				try (InputStream in = jar.getInputStream(entries.nextElement())) {
+					while (in.read() != -1) {
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_11)
+	void testExportJlink() throws IOException {
+		String src = examplesTestFolder.resolve("classpath_log.java").toString();
+		Path outDir = cwdDir.resolve("classpath_log");
+		ExecutionResult result = checkedRun(null, "export", "jlink", "-O", outDir.toString(), src);
+		assertThat(result.err, matchesPattern("(?s).*Exported to.*classpath_log.*"));
+		assertThat(outDir.resolve("release").toFile(), anExistingFile());
+		assertThat(outDir.resolve("app/classpath_log.jar").toFile(), anExistingFile());
+		assertThat(outDir.resolve("app/lib/log4j-1.2.17.jar").toFile(), anExistingFile());
+		String launcher = Util.isWindows() ? "classpath_log.cmd" : "classpath_log";
+		assertThat(outDir.resolve("bin").resolve(launcher).toFile(), anExistingFile());
+	}
+
+	@Test
+	@EnabledOnOs(OS.LINUX)
+	void testExportImage() throws IOException {
+		String src = examplesTestFolder.resolve("classpath_log.java").toString();
+		Path outFile = cwdDir.resolve("classpath_log.tar");
+		Path base = createBaseLayout();
+		ExecutionResult result = checkedRun(null, "export", "image", "--base", base.toString(), "-O",
+				outFile.toString(), src);
+		assertThat(result.err, matchesPattern("(?s).*Exported classpath_log:latest to .*classpath_log.tar.*"));
+		assertThat(outFile.toFile(), anExistingFile());
+
+		JsonArray manifests = null;
+		List<String> names = new ArrayList<>();
+		try (TarArchiveInputStream tar = new TarArchiveInputStream(Files.newInputStream(outFile))) {
+			TarArchiveEntry entry;
+			while ((entry = tar.getNextTarEntry()) != null) {
+				names.add(entry.getName());
+				if (entry.getName().equals("manifest.json")) {
+					Reader reader = new InputStreamReader(tar, StandardCharsets.UTF_8);
+					manifests = JsonParser.parseReader(reader).getAsJsonArray();
+				}
+			}
+		}
+		assertThat(names, hasItems("oci-layout", "index.json", "manifest.json"));
+		assertThat(manifests, notNullValue());
+		JsonObject manifest = manifests.get(0).getAsJsonObject();
+		assertThat(manifest.getAsJsonArray("RepoTags").get(0).getAsString(), equalTo("classpath_log:latest"));
+		// jdk, dependencies, resources and classes
+		JsonArray layers = manifest.getAsJsonArray("Layers");
+		assertThat(layers.size(), equalTo(4));
+		for (JsonElement layer : layers) {
+			assertThat(names, hasItem(layer.getAsString()));
+		}
+	}
+
+	@Test
+	void testExportImageRequiresBase() {
+		String src = examplesTestFolder.resolve("classpath_log.java").toString();
+		Path outFile = cwdDir.resolve("classpath_log.tar");
+		assertThrows(CommandLine.MissingParameterException.class,
+				() -> checkedRun(null, "export", "image", "-O", outFile.toString(), src));
+	}
+
+	// An OCI image layout without any layers, just enough to build on
+	private Path createBaseLayout() throws IOException {
+		Path base = jbangTempDir.resolve("base");
+		JsonObject config = new JsonObject();
+		config.addProperty("architecture", ExportImage.getArchitecture());
+		config.addProperty("os", "linux");
+		JsonObject rootfs = new JsonObject();
+		rootfs.addProperty("type", "layers");
+		rootfs.add("diff_ids", new JsonArray());
+		config.add("rootfs", rootfs);
+		JsonObject manifest = new JsonObject();
+		manifest.addProperty("schemaVersion", 2);
+		manifest.add("config", writeBlob(base, config));
+		manifest.add("layers", new JsonArray());
+		JsonObject desc = writeBlob(base, manifest);
+		desc.addProperty("mediaType", "application/vnd.oci.image.manifest.v1+json");
+		JsonObject index = new JsonObject();
+		index.addProperty("schemaVersion", 2);
+		JsonArray manifests = new JsonArray();
+		manifests.add(desc);
+		index.add("manifests", manifests);
+		Util.writeString(base.resolve("index.json"), index.toString());
+		Util.writeString(base.resolve("oci-layout"), "{\"imageLayoutVersion\":\"1.0.0\"}");
+		return base;
+	}
+
+	private static JsonObject writeBlob(Path layoutDir, JsonObject json) throws IOException {
+		byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+		String digest = "sha256:" + Util.getStableID(json.toString());
+		Path blob = layoutDir.resolve("blobs").resolve(digest.replace(':', '/'));
+		Files.createDirectories(blob.getParent());
+		Files.write(blob, bytes);
+		JsonObject desc = new JsonObject();
+		desc.addProperty("digest", digest);
+		desc.addProperty("size", bytes.length);
+		return desc;
+	}
+
 	@Test
 	void testExportWithClasspath() throws IOException {
 		String src = examplesTestFolder.resolve("classpath_log.java").toString();
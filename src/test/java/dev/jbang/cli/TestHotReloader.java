@@ -0,0 +1,201 @@
+package dev.jbang.cli;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+import dev.jbang.agent.HotReloadAgent;
+import dev.jbang.source.RunContext;
+
+public class TestHotReloader extends BaseTest {
+
+	@Test
+	void testAgentJar() throws IOException {
+		Path jar = HotReloader.getAgentJar();
+		try (JarFile jf = new JarFile(jar.toFile())) {
+			Attributes attrs = jf.getManifest().getMainAttributes();
+			assertThat(attrs.getValue("Premain-Class"), equalTo(HotReloadAgent.class.getName()));
+			assertThat(attrs.getValue("Can-Redefine-Classes"), equalTo("true"));
+			assertThat(jf.getEntry("dev/jbang/agent/HotReloadAgent.class"), notNullValue());
+		}
+		// the jar gets reused
+		assertThat(HotReloader.getAgentJar(), equalTo(jar));
+	}
+
+	@Test
+	void testReloadSendsOnlyChangedClasses() throws IOException {
+		Path v1 = createJar("v1.jar", null, "app/Main.class", "main", "app/Util.class", "util", "app.txt", "app");
+		Path v2 = createJar("v2.jar", null, "app/Main.class", "main2", "app/Util.class", "util", "app.txt", "app");
+		try (HotReloader reloader = new HotReloader();
+				FakeAgent agent = new FakeAgent(reloader, v1)) {
+			assertThat(reloader.reload(v2), equalTo(true));
+			assertThat(agent.requests, hasSize(1));
+			assertThat(agent.requests.get(0).keySet(), equalTo(Collections.singleton("app/Main")));
+			assertThat(agent.requests.get(0).get("app/Main"), equalTo("main2"));
+
+			// Going back to the original sends the class again
+			assertThat(reloader.reload(v1), equalTo(true));
+			assertThat(agent.requests, hasSize(2));
+			assertThat(agent.requests.get(1).get("app/Main"), equalTo("main"));
+		}
+	}
+
+	@Test
+	void testReloadUnchangedJar() throws IOException {
+		Path v1 = createJar("v1.jar", null, "app/Main.class", "main", "app.txt", "app");
+		Path v2 = createJar("v2.jar", null, "app/Main.class", "main", "app.txt", "app");
+		try (HotReloader reloader = new HotReloader();
+				FakeAgent agent = new FakeAgent(reloader, v1)) {
+			assertThat(reloader.reload(v2), equalTo(true));
+			assertThat(agent.requests, empty());
+		}
+	}
+
+	@Test
+	void testReloadChangedResources() throws IOException {
+		Path v1 = createJar("v1.jar", null, "app/Main.class", "main", "app.txt", "app");
+		Path v2 = createJar("v2.jar", null, "app/Main.class", "main2", "app.txt", "app2");
+		try (HotReloader reloader = new HotReloader();
+				FakeAgent agent = new FakeAgent(reloader, v1)) {
+			assertThat(reloader.reload(v2), equalTo(false));
+			assertThat(agent.requests, empty());
+		}
+	}
+
+	@Test
+	void testReloadChangedManifest() throws IOException {
+		Manifest mf1 = new Manifest();
+		mf1.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		mf1.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "app.Main");
+		Manifest mf2 = new Manifest(mf1);
+		mf2.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "app.Other");
+		Path v1 = createJar("v1.jar", mf1, "app/Main.class", "main", "app/Other.class", "other");
+		Path v2 = createJar("v2.jar", mf2, "app/Main.class", "main", "app/Other.class", "other");
+		try (HotReloader reloader = new HotReloader();
+				FakeAgent agent = new FakeAgent(reloader, v1)) {
+			assertThat(reloader.reload(v2), equalTo(false));
+			assertThat(agent.requests, empty());
+		}
+	}
+
+	@Test
+	void testReloadAddedClasses() throws IOException {
+		Path v1 = createJar("v1.jar", null, "app/Main.class", "main");
+		Path v2 = createJar("v2.jar", null, "app/Main.class", "main2", "app/Added.class", "added");
+		try (HotReloader reloader = new HotReloader();
+				FakeAgent agent = new FakeAgent(reloader, v1)) {
+			assertThat(reloader.reload(v2), equalTo(false));
+			assertThat(agent.requests, empty());
+		}
+	}
+
+	@Test
+	void testReloadRejectedByAgent() throws IOException {
+		Path v1 = createJar("v1.jar", null, "app/Main.class", "main");
+		Path v2 = createJar("v2.jar", null, "app/Main.class", "main2");
+		try (HotReloader reloader = new HotReloader();
+				FakeAgent agent = new FakeAgent(reloader, v1)) {
+			agent.error = "schema change";
+			assertThat(reloader.reload(v2), equalTo(false));
+			assertThat(agent.requests, hasSize(1));
+		}
+	}
+
+	private Path createJar(String name, Manifest mf, String... entries) throws IOException {
+		Path jar = jbangTempDir.resolve(name);
+		try (OutputStream os = Files.newOutputStream(jar);
+				JarOutputStream jos = mf != null ? new JarOutputStream(os, mf) : new JarOutputStream(os)) {
+			for (int i = 0; i < entries.length; i += 2) {
+				jos.putNextEntry(new ZipEntry(entries[i]));
+				jos.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+				jos.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+	/**
+	 * Stands in for the <code>HotReloadAgent</code> of a launched script. It
+	 * connects to the reloader, records the classes it gets sent and replies with
+	 * the configured error, if any.
+	 */
+	private static class FakeAgent implements Closeable {
+		final List<Map<String, String>> requests = new CopyOnWriteArrayList<>();
+		volatile String error = "";
+		private final Socket socket;
+		private final Thread thread;
+
+		FakeAgent(HotReloader reloader, Path jar) throws IOException {
+			RunContext ctx = RunContext.empty();
+			reloader.prepareLaunch(ctx, jar);
+			String[] option = ctx.getJavaAgents().get(0).context.getJavaAgentOption().split(":", 2);
+			socket = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(option[0]));
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			out.writeUTF(option[1]);
+			out.flush();
+			thread = new Thread(() -> listen(out));
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		private void listen(DataOutputStream out) {
+			try {
+				DataInputStream in = new DataInputStream(socket.getInputStream());
+				while (true) {
+					int count = in.readInt();
+					Map<String, String> classes = new HashMap<>();
+					for (int i = 0; i < count; i++) {
+						String name = in.readUTF();
+						byte[] bytes = new byte[in.readInt()];
+						in.readFully(bytes);
+						classes.put(name, new String(bytes, StandardCharsets.UTF_8));
+					}
+					requests.add(classes);
+					out.writeUTF(error);
+					out.flush();
+				}
+			} catch (EOFException e) {
+				// The reloader went away
+			} catch (IOException e) {
+				// Closed by the test
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			socket.close();
+			try {
+				thread.join(5000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
@@ -1,7 +1,9 @@
 package dev.jbang.cli;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -16,6 +18,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import dev.jbang.BaseTest;
+import dev.jbang.Settings;
 import dev.jbang.net.JdkManager;
 import dev.jbang.util.Util;
 
@@ -47,6 +50,36 @@ class TestJdk extends BaseTest {
 				equalTo("Installed JDKs (<=default):\n  11\n  12\n  13\n"));
 	}
 
+	@Test
+	void testSystemJdksListed() throws IOException {
+		final Path jdkPath = JdkManager.getJdksPath();
+		Arrays	.asList("11", "17")
+				.forEach(jdkId -> new File(jdkPath.toFile(), jdkId).mkdirs());
+		Path candidates = jbangTempDir.resolve("sdkman").resolve("candidates").resolve("java");
+		Path managed = createSystemJdk(candidates.resolve("17.0.2-tem"), "17.0.2");
+		Path system = createSystemJdk(candidates.resolve("99.0.1-tem"), "99.0.1");
+		environmentVariables.set("SDKMAN_DIR", jbangTempDir.resolve("sdkman").toString());
+		environmentVariables.set("PATH", "");
+		environmentVariables.set(Settings.ENV_NO_JDK_DISCOVERY, "false");
+
+		ExecutionResult result = checkedRun(jdk -> jdk.list(false, FormatMixin.Format.text));
+
+		assertThat(result.exitCode, equalTo(SUCCESS_EXIT));
+		assertThat(result.normalizedOut(), containsString("Installed JDKs (<=default):\n"));
+		assertThat(result.normalizedOut(), containsString("  11\n"));
+		assertThat(result.normalizedOut(), containsString("  99 (system) " + system + "\n"));
+		// Versions installed by JBang itself take precedence
+		assertThat(result.normalizedOut(), containsString("  17\n"));
+		assertThat(result.normalizedOut(), not(containsString(managed.toString())));
+	}
+
+	private static Path createSystemJdk(Path home, String version) throws IOException {
+		Files.createDirectories(home.resolve("bin"));
+		Files.createFile(home.resolve("bin").resolve(Util.isWindows() ? "javac.exe" : "javac"));
+		Util.writeString(home.resolve("release"), "JAVA_VERSION=\"" + version + "\"\n");
+		return home;
+	}
+
 	@Test
 	void testJdkInstallWithLinkingToExistingJdkPathWhenPathIsInvalid() {
 		checkedRunWithException(jdk -> {
@@ -0,0 +1,49 @@
+package dev.jbang.cli;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+import dev.jbang.util.Util;
+
+public class TestProjectWatcher extends BaseTest {
+
+	@Test
+	@Timeout(60)
+	void testAwaitChanges(@TempDir Path dir) throws IOException, InterruptedException {
+		Path watched = dir.resolve("watched.java").toAbsolutePath().normalize();
+		Path other = dir.resolve("other.txt").toAbsolutePath().normalize();
+		Util.writeString(watched, "class watched {}");
+		Util.writeString(other, "not watched");
+
+		try (ProjectWatcher watcher = new ProjectWatcher()) {
+			watcher.watch(Arrays.asList(watched));
+			Thread writer = new Thread(() -> {
+				try {
+					Thread.sleep(500);
+					// changes to files we're not interested in are ignored
+					Util.writeString(other, "still not watched");
+					Thread.sleep(500);
+					// several changes in a row get reported as one
+					Util.writeString(watched, "class watched { }");
+					Util.writeString(watched, "class watched {  }");
+				} catch (IOException | InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+			});
+			writer.start();
+			Set<Path> changed = watcher.awaitChanges();
+			writer.join();
+			assertThat(changed, contains(watched));
+		}
+	}
+}
@@ -21,6 +21,7 @@ import java.io.PrintWriter;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
@@ -243,6 +244,26 @@ public class TestRun extends BaseTest {
 		assertThat(result, matchesPattern("^.*jshell(.exe)?.+--class-path=.*figlet.*? --startup.*$"));
 	}
 
+	@Test
+	void testMarkdownCached(@TempDir Path dir) throws IOException {
+		Path md = dir.resolve("notes.md");
+		writeString(md, "# Notes\n\n```java\nSystem.out.println(\"hello\");\n```\n");
+
+		Project prj = RunContext.empty().forFile(md);
+		Path scriptFile = prj.getResourceRef().getFile();
+		assertThat(Util.readString(scriptFile), containsString("System.out.println(\"hello\");"));
+
+		// Make sure the transformed script isn't written again
+		Files.setLastModifiedTime(scriptFile, FileTime.fromMillis(1000));
+		Project prj2 = RunContext.empty().forFile(md);
+		assertThat(prj2.getResourceRef().getFile(), equalTo(scriptFile));
+		assertThat(Files.getLastModifiedTime(scriptFile).toMillis(), equalTo(1000L));
+
+		writeString(md, "# Notes\n\n```java\nSystem.out.println(\"changed\");\n```\n");
+		Project prj3 = RunContext.empty().forFile(md);
+		assertThat(prj3.getResourceRef().getFile(), not(equalTo(scriptFile)));
+	}
+
 	@Test
 	void testRemoteMarkdown() throws IOException {
 
@@ -2071,6 +2092,40 @@ public class TestRun extends BaseTest {
 		});
 	}
 
+	@Test
+	void testRunInProcess(@TempDir Path dir) throws IOException {
+		Path script = dir.resolve("inproc.java");
+		Util.writeString(script, "class inproc {\n" +
+				"	public static void main(String... args) {\n" +
+				"		System.out.println(\"Hello \" + args[0] + \" \" + System.getProperty(\"foo\"));\n" +
+				"	}\n" +
+				"}\n");
+		ExecutionResult result = checkedRun(null, "run", "--in-process", "-Dfoo=bar", script.toString(), "World");
+		assertThat(result.exitCode, equalTo(BaseCommand.EXIT_OK));
+		assertThat(result.normalizedOut(), containsString("Hello World bar"));
+		assertThat(System.getProperty("foo"), nullValue());
+	}
+
+	@Test
+	void testRunInProcessFallback() throws IOException {
+		// helloworld.java has //JAVA_OPTIONS so it needs its own JVM
+		String arg = examplesTestFolder.resolve("helloworld.java").toAbsolutePath().toString();
+		ExecutionResult result = checkedRun(null, "run", "--in-process", arg);
+		assertThat(result.exitCode, equalTo(BaseCommand.EXIT_EXECUTE));
+		assertThat(result.normalizedOut(), containsString("helloworld"));
+	}
+
+	@Test
+	void testRunWatchWithCode() {
+		assertThrows(IllegalArgumentException.class, () -> {
+			CommandLine.ParseResult pr = JBang.getCommandLine()
+												.parseArgs("run", "--watch", "--code",
+														"System.out.println(\"Hello\")");
+			Run run = (Run) pr.subcommand().commandSpec().userObject();
+			run.doCall();
+		});
+	}
+
 	@Test
 	void testReposWorksWithFresh() throws IOException {
 		File f = Util.getCwd().resolve("classpath_example.java").toFile();
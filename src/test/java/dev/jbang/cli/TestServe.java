@@ -0,0 +1,107 @@
+package dev.jbang.cli;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.jbang.BaseTest;
+import dev.jbang.util.Util;
+
+public class TestServe extends BaseTest {
+	private static final String TOKEN = "test-token";
+
+	@Test
+	void testServe(@TempDir Path dir) throws Exception {
+		Path script = dir.resolve("served.java");
+		Util.writeString(script, "import java.io.*;\n" +
+				"class served {\n" +
+				"	static int runs;\n" +
+				"	public static void main(String... args) throws IOException {\n" +
+				"		String line = new BufferedReader(new InputStreamReader(System.in)).readLine();\n" +
+				"		System.out.println(\"run \" + (++runs) + \" \" + args[0] + \" \" + line);\n" +
+				"	}\n" +
+				"}\n");
+
+		PrintStream originalOut = System.out;
+		Thread t;
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			int port = server.getLocalPort();
+			Path tokenFile = Serve.getTokenFile(port);
+			Files.createDirectories(tokenFile.getParent());
+			Util.writeString(tokenFile, TOKEN);
+			t = new Thread(() -> new Serve().serve(server, TOKEN));
+			t.setDaemon(true);
+			t.start();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			// the script is resolved against the client's working directory
+			int exitCode = execute(port, dir, "served.java", "one", "first", out);
+			assertThat(exitCode, equalTo(0));
+			assertThat(out.toString("UTF-8"), containsString("run 1 one first"));
+
+			// the script stays loaded, so its static state is still there
+			out = new ByteArrayOutputStream();
+			exitCode = execute(port, dir, "served.java", "two", "second", out);
+			assertThat(exitCode, equalTo(0));
+			assertThat(out.toString("UTF-8"), containsString("run 2 two second"));
+		}
+		// the server's streams are gone once it stopped
+		t.join(5000);
+		assertThat(System.out, sameInstance(originalOut));
+	}
+
+	@Test
+	void testConnectWithoutServer() {
+		ExitException e = assertThrows(ExitException.class,
+				() -> execute(1, cwdDir, "helloworld.java", "one", "first", new ByteArrayOutputStream()));
+		assertThat(e.getStatus(), equalTo(BaseCommand.EXIT_INVALID_INPUT));
+	}
+
+	@Test
+	void testServeInvalidToken() throws Exception {
+		try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			Thread t = new Thread(() -> new Serve().serve(server, TOKEN));
+			t.setDaemon(true);
+			t.start();
+
+			try (Socket s = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+					DataOutputStream out = new DataOutputStream(s.getOutputStream());
+					DataInputStream in = new DataInputStream(s.getInputStream())) {
+				out.writeUTF("not-the-token");
+				out.writeUTF(cwdDir.toString());
+				out.writeUTF(examplesTestFolder.resolve("helloworld.java").toString());
+				out.writeInt(0);
+				out.writeInt(0);
+				out.flush();
+				// the server closes the connection without executing anything
+				assertThat(in.read(), equalTo(-1));
+			}
+		}
+	}
+
+	private static int execute(int port, Path cwd, String script, String arg, String input,
+			ByteArrayOutputStream stdout) throws IOException {
+		InputStream stdin = new ByteArrayInputStream((input + "\n").getBytes(StandardCharsets.UTF_8));
+		return Serve.connect(port, cwd, script, Collections.singletonList(arg), stdin, stdout, System.err);
+	}
+}
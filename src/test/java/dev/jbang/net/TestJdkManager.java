@@ -2,15 +2,24 @@ package dev.jbang.net;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import dev.jbang.BaseTest;
+import dev.jbang.Settings;
+import dev.jbang.util.JdkInfo;
 import dev.jbang.util.Util;
 
 class TestJdkManager extends BaseTest {
@@ -69,4 +78,90 @@ class TestJdkManager extends BaseTest {
 		assertFalse(javaVersion.isPresent());
 	}
 
-}
\ No newline at end of file
+	@Test
+	void testGetInstalledJdkFindsSdkmanJdk() throws IOException {
+		Path sdkman = jbangTempDir.resolve("sdkman");
+		Path home = sdkman.resolve("candidates").resolve("java").resolve("17.0.2-tem");
+		Files.createDirectories(home.resolve("bin"));
+		Files.createFile(home.resolve("bin").resolve(Util.isWindows() ? "javac.exe" : "javac"));
+		Util.writeString(home.resolve("release"), "JAVA_VERSION=\"17.0.2\"");
+		environmentVariables.set("SDKMAN_DIR", sdkman.toString());
+		environmentVariables.set("PATH", "");
+		environmentVariables.set(Settings.ENV_NO_JDK_DISCOVERY, "false");
+
+		Path jdk = JdkManager.getInstalledJdk(17);
+
+		assertEquals(home.toRealPath(), jdk.toRealPath());
+		assertEquals(Optional.of(17), JdkManager.nextAvailableJdk(17));
+	}
+
+	@Test
+	void testFindSystemJdkPrefersNewestVersion() throws IOException {
+		Path sdkman = jbangTempDir.resolve("sdkman");
+		Path candidates = sdkman.resolve("candidates").resolve("java");
+		createJdk(candidates.resolve("17.0.9-tem"), "17.0.9", null);
+		Path newest = createJdk(candidates.resolve("17.0.10-tem"), "17.0.10", null);
+		createJdk(candidates.resolve("17.0.11-other"), "17.0.11", otherArch());
+		environmentVariables.set("SDKMAN_DIR", sdkman.toString());
+		environmentVariables.set("PATH", "");
+		environmentVariables.set(Settings.ENV_NO_JDK_DISCOVERY, "false");
+
+		Optional<JdkInfo> jdk = JdkManager.findSystemJdk(17);
+
+		assertTrue(jdk.isPresent());
+		assertEquals(newest.toRealPath(), jdk.get().home.toRealPath());
+		assertEquals(2, JdkManager.listSystemJdks().size());
+	}
+
+	@Test
+	void testCompareVersions() {
+		assertTrue(JdkManager.compareVersions("17.0.10", "17.0.9") > 0);
+		assertTrue(JdkManager.compareVersions("1.8.0_302", "1.8.0_92") > 0);
+		assertTrue(JdkManager.compareVersions("11", "11.0.1") < 0);
+		assertEquals(0, JdkManager.compareVersions("21.0.1", "21.0.1"));
+	}
+
+	@Test
+	void testDownloadAndInstallJdkReusesExistingInstall() throws IOException {
+		// Another process finished installing after the caller checked
+		Path jdkDir = JdkManager.getJdkPath(17);
+		Files.createDirectories(jdkDir);
+		Path marker = Files.createFile(jdkDir.resolve("marker"));
+
+		assertEquals(jdkDir, JdkManager.downloadAndInstallJdk(17));
+		assertTrue(Files.exists(marker));
+	}
+
+	@Test
+	void testDownloadAndInstallJdkWaitsForOtherProcess() throws Exception {
+		Path jdkDir = JdkManager.getJdkPath(17);
+		Path lockFile = JdkManager.getJdksPath().resolve("17.lock");
+		Files.createDirectories(lockFile.getParent());
+		CompletableFuture<Path> installed;
+		try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock lock = channel.lock()) {
+			installed = CompletableFuture.supplyAsync(() -> JdkManager.downloadAndInstallJdk(17));
+			Thread.sleep(200);
+			assertFalse(installed.isDone());
+			Files.createDirectories(jdkDir);
+			Files.createFile(jdkDir.resolve("marker"));
+		}
+		assertEquals(jdkDir, installed.get());
+		assertTrue(Files.exists(jdkDir.resolve("marker")));
+	}
+
+	private static Path createJdk(Path home, String version, String arch) throws IOException {
+		Files.createDirectories(home.resolve("bin"));
+		Files.createFile(home.resolve("bin").resolve(Util.isWindows() ? "javac.exe" : "javac"));
+		String release = "JAVA_VERSION=\"" + version + "\"\n";
+		if (arch != null) {
+			release += "OS_ARCH=\"" + arch + "\"\n";
+		}
+		Util.writeString(home.resolve("release"), release);
+		return home;
+	}
+
+	private static String otherArch() {
+		return Util.getArch() == Util.Arch.x64 ? "aarch64" : "x86_64";
+	}
+}
@@ -0,0 +1,26 @@
+package dev.jbang.net;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+
+class TestKotlinManager extends BaseTest {
+
+	@Test
+	void testDownloadAndInstallKotlinReusesExistingInstall() throws IOException {
+		// Another process finished installing after the caller checked
+		Path dir = KotlinManager.getKotlinPath("1.0.0");
+		Files.createDirectories(dir);
+		Path marker = Files.createFile(dir.resolve("marker"));
+
+		assertEquals(dir, KotlinManager.downloadAndInstallKotlin("1.0.0"));
+		assertTrue(Files.exists(marker));
+	}
+}
@@ -4,8 +4,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.jupiter.api.Test;
@@ -107,4 +110,161 @@ public class TestTrustedSources extends BaseTest {
 
 	}
 
+	@ParameterizedTest(name = "{0}: {1} with rules {2} = {3}")
+	@MethodSource("simple")
+	public void testTrustedSourcesLinear(String type, String url, String[] rules, boolean expected)
+			throws URISyntaxException {
+		assertEquals(expected, isURLTrustedLinear(rules, new URI(url)));
+	}
+
+	@Test
+	public void testCompiledMatchesLinear() throws URISyntaxException {
+		String[] rules = generateRules(new Random(42), 500);
+		TrustedSources ts = new TrustedSources(rules);
+		for (URI url : generateUrls(new Random(7), 2000)) {
+			assertEquals(isURLTrustedLinear(rules, url), ts.isURLTrusted(url), "Mismatch for " + url);
+		}
+	}
+
+	private static String[] generateRules(Random rnd, int count) {
+		String[] rules = new String[count];
+		for (int i = 0; i < count; i++) {
+			switch (rnd.nextInt(4)) {
+			case 0:
+				rules[i] = "https://github.com/org" + i + "/";
+				break;
+			case 1:
+				rules[i] = "*.domain" + i + ".org";
+				break;
+			case 2:
+				rules[i] = "https://host" + i + ".example.com";
+				break;
+			default:
+				rules[i] = "gitlab.com/group" + i;
+				break;
+			}
+		}
+		return rules;
+	}
+
+	private static List<URI> generateUrls(Random rnd, int count) throws URISyntaxException {
+		List<URI> urls = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			int n = rnd.nextInt(600);
+			switch (rnd.nextInt(4)) {
+			case 0:
+				urls.add(new URI("https://github.com/org" + n + "/project/blob/main/app.java"));
+				break;
+			case 1:
+				urls.add(new URI("https://www.domain" + n + ".org/app.java"));
+				break;
+			case 2:
+				urls.add(new URI("http://host" + n + ".example.com/app.java"));
+				break;
+			default:
+				urls.add(new URI("https://gitlab.com/group" + n + "/app.java"));
+				break;
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * The original implementation of <code>TrustedSources.isURLTrusted()</code>
+	 * that goes over all the rules one by one, the compiled
+	 * <code>TrustedSourcesMatcher</code> must give the same results.
+	 */
+	private static boolean isURLTrustedLinear(String[] trustedSources, URI url) throws URISyntaxException {
+		if (url.getScheme().equals("file") || TrustedSources.rLocalhost.matcher(url.getAuthority()).matches()
+				|| TrustedSources.r127.matcher(url.getAuthority()).matches()) {
+			return true;
+		}
+
+		final String domain = String.format("%s://%s", url.getScheme(), url.getAuthority());
+
+		for (String trustedSource : trustedSources) {
+			if ("*".equals(trustedSource)) {
+				return true;
+			}
+
+			if (domain.equals(trustedSource)) {
+				return true;
+			}
+
+			URI parsedTrustedSource;
+			if (trustedSource.startsWith("https://")) {
+				parsedTrustedSource = new URI(trustedSource);
+				if (!url.getScheme().equals(parsedTrustedSource.getScheme())) {
+					continue;
+				}
+			} else {
+				parsedTrustedSource = new URI("https://" + trustedSource);
+			}
+
+			if (url.getAuthority().equals(parsedTrustedSource.getAuthority())) {
+				if (pathMatches(url.getPath(), parsedTrustedSource.getPath())) {
+					return true;
+				} else {
+					continue;
+				}
+			}
+
+			if (trustedSource.contains("*")) {
+
+				String[] reversedAuthoritySegments = TrustedSources.reverse(url.getAuthority().split("\\."));
+
+				String[] reversedTrustedSourceAuthoritySegments = TrustedSources.reverse(
+						parsedTrustedSource.getAuthority().split("\\."));
+
+				boolean ruleIsSmaller = reversedTrustedSourceAuthoritySegments.length < reversedAuthoritySegments.length;
+				boolean ruleHasStarAtEnd = reversedTrustedSourceAuthoritySegments[reversedTrustedSourceAuthoritySegments.length
+						- 1].equals("*");
+				if (ruleIsSmaller && ruleHasStarAtEnd) {
+					reversedAuthoritySegments = Arrays.copyOfRange(reversedAuthoritySegments, 0,
+							reversedTrustedSourceAuthoritySegments.length);
+				}
+
+				boolean authorityMatches = true;
+				for (int i = 0; i < reversedAuthoritySegments.length; i++) {
+					String val = reversedAuthoritySegments[i];
+					String elementRule = reversedTrustedSourceAuthoritySegments[i];
+					if (elementRule.equals("*")
+							|| val.equals(elementRule)) {
+						// they match
+					} else {
+						authorityMatches = false;
+						break;
+					}
+				}
+
+				if (authorityMatches && pathMatches(url.getPath(), parsedTrustedSource.getPath())) {
+					return true;
+				}
+			}
+
+		}
+
+		// default trusted for usability and trust
+		return url.toString().startsWith("https://github.com/jbangdev/");
+	}
+
+	private static boolean pathMatches(String open, String rule) {
+		if ("/".equals(rule)) {
+			return true;
+		}
+
+		if (rule.endsWith("/")) {
+			rule = rule.substring(0, rule.length() - 1);
+		}
+
+		String[] openSegments = open.split("/");
+		String[] ruleSegments = rule.split("/");
+		for (int i = 0; i < ruleSegments.length; i++) {
+			if (openSegments.length - 1 < i || !ruleSegments[i].equals(openSegments[i])) {
+				return false;
+			}
+		}
+
+		return true;
+	}
 }
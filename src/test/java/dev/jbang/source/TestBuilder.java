@@ -8,21 +8,35 @@ import static org.hamcrest.Matchers.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 
 import dev.jbang.BaseTest;
+import dev.jbang.Configuration;
+import dev.jbang.Settings;
 import dev.jbang.catalog.CatalogUtil;
+import dev.jbang.source.builders.GroovyBuilder;
 import dev.jbang.source.builders.JavaBuilder;
+import dev.jbang.source.builders.JshBuilder;
+import dev.jbang.source.builders.KotlinBuilder;
+import dev.jbang.util.JavaUtil;
 import dev.jbang.util.Util;
 
 public class TestBuilder extends BaseTest {
@@ -329,4 +343,146 @@ public class TestBuilder extends BaseTest {
 		}
 
 	}
+
+	@Test
+	void testBuildCompiledJsh() throws IOException {
+		Configuration.instance().put(Settings.CONFIG_JSH_COMPILE, "true");
+		Path mainFile = examplesTestFolder.resolve("helloworld.jsh");
+
+		RunContext ctx = RunContext.empty();
+		Project prj = ctx.forResource(mainFile.toFile().getAbsolutePath());
+		Code code = prj.builder().build();
+
+		assertThat(code, instanceOf(Jar.class));
+		assertThat(ctx.getMainClassOr(code), equalTo("helloworld"));
+		assertThat(code.cmdGenerator(ctx).generate(), not(containsString("jshell")));
+	}
+
+	@Test
+	void testBuildJshFallback(@TempDir Path dir) throws IOException {
+		Configuration.instance().put(Settings.CONFIG_JSH_COMPILE, "true");
+		Path mainFile = dir.resolve("commands.jsh");
+		writeString(mainFile, "System.out.println(\"hello\");\n/list\n");
+
+		RunContext ctx = RunContext.empty();
+		Project prj = ctx.forResource(mainFile.toFile().getAbsolutePath());
+		Code code = prj.builder().build();
+
+		assertThat(code, sameInstance(prj));
+		assertThat(code.cmdGenerator(ctx).generate(), containsString("jshell"));
+	}
+
+	@Test
+	void testTranslateJsh() {
+		String wrapper = JshBuilder.translate("import java.time.*;\n" +
+				"int count = 3;\n" +
+				"var name = \"x;y\";\n" +
+				"String greet() { return \"Hi \" + count; }\n" +
+				"for (int i = 0; i < count; i++) {\n" +
+				"  println(greet() + name);\n" +
+				"}\n" +
+				"/exit 1\n", "Script");
+
+		assertThat(wrapper, containsString("import java.time.*;"));
+		assertThat(wrapper, containsString("class Script {"));
+		assertThat(wrapper, containsString("static int count;"));
+		assertThat(wrapper, containsString("static String greet() {"));
+		assertThat(wrapper, containsString("count = 3;"));
+		assertThat(wrapper, containsString("var name = \"x;y\";"));
+		assertThat(wrapper, containsString("System.exit(1);"));
+		assertThat(JshBuilder.translate("/open foo.jsh\n", "Script"), nullValue());
+	}
+
+	@Test
+	void testBuildWaitsForOtherProcess(@TempDir Path dir) throws Exception {
+		Path mainFile = dir.resolve("waiting.java");
+		writeString(mainFile, "class waiting { public static void main(String... args) {} }\n");
+		Project prj = RunContext.empty().forResource(mainFile.toString());
+		Path jarFile = prj.builder().build().getJarFile();
+		Path builtJar = dir.resolve("built.jar");
+		Files.move(jarFile, builtJar);
+
+		Path lockFile = jarFile.resolveSibling(jarFile.getFileName() + ".lock");
+		int[] compiles = { 0 };
+		CompletableFuture<Jar> waiting;
+		try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock lock = channel.lock()) {
+			waiting = CompletableFuture.supplyAsync(() -> {
+				try {
+					return new JavaBuilder(prj) {
+						@Override
+						protected void runCompiler(List<String> optionList) throws IOException {
+							compiles[0]++;
+							super.runCompiler(optionList);
+						}
+					}.build();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			Thread.sleep(200);
+			assertThat(waiting.isDone(), is(false));
+			// The other process finishes its build
+			Files.move(builtJar, jarFile);
+		}
+
+		assertThat(waiting.get().getJarFile(), equalTo(jarFile));
+		assertThat(compiles[0], is(0));
+	}
+
+	@ParameterizedTest(name = "{0}, in-process: {1}")
+	@CsvSource({ "kotlin, true", "kotlin, false", "groovy, true", "groovy, false" })
+	void testBuildCompiler(String language, boolean inProcess, @TempDir Path dir) throws IOException {
+		if (!inProcess) {
+			environmentVariables.set(Settings.ENV_NO_INPROCESS_COMPILE, "true");
+		}
+		boolean[] forked = { false };
+		Jar jar;
+		String mainClass;
+		if (language.equals("kotlin")) {
+			Path mainFile = dir.resolve("hello.kt");
+			writeString(mainFile, "fun main(args: Array<String>) {\n" +
+					"    println(\"Hello Kotlin\")\n" +
+					"}\n");
+			jar = new KotlinBuilder(compilerProject(mainFile)) {
+				@Override
+				protected void runCompiler(ProcessBuilder processBuilder) throws IOException {
+					forked[0] = true;
+					super.runCompiler(processBuilder);
+				}
+			}.setFresh(true).build();
+			mainClass = "HelloKt.class";
+		} else {
+			Path mainFile = dir.resolve("hello.groovy");
+			writeString(mainFile, "println(\"Hello Groovy\")\n");
+			jar = new GroovyBuilder(compilerProject(mainFile)) {
+				@Override
+				protected void runCompiler(ProcessBuilder processBuilder) throws IOException {
+					forked[0] = true;
+					super.runCompiler(processBuilder);
+				}
+			}.setFresh(true).build();
+			mainClass = "hello.class";
+		}
+
+		// The compiler only gets forked when compiling in-process is turned off
+		assertThat(forked[0], is(!inProcess));
+		assertJarEntry(jar, mainClass);
+	}
+
+	private static Project compilerProject(Path mainFile) {
+		Project prj = RunContext.empty().forResource(mainFile.toString());
+		// Compiling in-process needs the Java version JBang runs on
+		return prj.setJavaVersion(currentJavaVersion());
+	}
+
+	private static String currentJavaVersion() {
+		return Integer.toString(JavaUtil.parseJavaVersion(System.getProperty("java.version")));
+	}
+
+	private static void assertJarEntry(Jar jar, String name) throws IOException {
+		try (JarFile jf = new JarFile(jar.getJarFile().toFile())) {
+			assertThat(jf.getEntry(name), notNullValue());
+		}
+	}
 }
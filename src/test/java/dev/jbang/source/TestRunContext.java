@@ -1,14 +1,21 @@
 package dev.jbang.source;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Test;
 
 import dev.jbang.BaseTest;
 import dev.jbang.cli.ExitException;
+import dev.jbang.dependencies.ModularClassPath;
 
 public class TestRunContext extends BaseTest {
 
@@ -44,4 +51,68 @@ public class TestRunContext extends BaseTest {
 			ctx.resolveClassPath(code);
 		});
 	}
+
+	@Test
+	void testProvisionPropagatesErrors() {
+		RunContext ctx = new RunContext();
+		ctx.setAdditionalRepositories(Arrays.asList("foo=http://foo", "foo=http://bar"));
+		Path src = examplesTestFolder.resolve("quote.java");
+		Project prj = ctx.forFile(src);
+		assertThrows(IllegalArgumentException.class, () -> {
+			ctx.provision(prj);
+		});
+	}
+
+	@Test
+	void testResolveClassPathReusesProjectClassPath() {
+		RunContext ctx = new RunContext();
+		Path src = examplesTestFolder.resolve("helloworld.java");
+		Project prj = ctx.forFile(src);
+		ModularClassPath mcp = new ModularClassPath(Collections.emptyList());
+		prj.setResolvedClassPath(mcp);
+		assertThat(ctx.resolveClassPath(prj), sameInstance(mcp));
+		assertThat(new RunContext().resolveClassPath(prj.asJar()), sameInstance(mcp));
+	}
+
+	@Test
+	void testProvisionResolvesContextClassPath() {
+		RunContext ctx = new RunContext();
+		Path src = examplesTestFolder.resolve("helloworld.java");
+		Project prj = ctx.forFile(src);
+		ctx.provision(prj);
+		assertThat(ctx.resolveClassPath(prj), sameInstance(prj.resolveClassPath()));
+	}
+
+	@Test
+	void testRunConcurrently() {
+		// Each task waits for all the others, so this only finishes in time when
+		// they are all running at the same time
+		CountDownLatch latch = new CountDownLatch(3);
+		Runnable task = () -> {
+			latch.countDown();
+			try {
+				assertThat(latch.await(5, TimeUnit.SECONDS), equalTo(true));
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+		};
+		RunContext.runConcurrently(task, Arrays.asList(task, task));
+		assertThat(latch.getCount(), equalTo(0L));
+	}
+
+	@Test
+	void testRunConcurrentlyWaitsForAllTasks() {
+		CountDownLatch latch = new CountDownLatch(2);
+		Runnable task = () -> {
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			latch.countDown();
+		};
+		RunContext.runConcurrently(() -> {
+		}, Arrays.asList(task, task));
+		assertThat(latch.getCount(), equalTo(0L));
+	}
 }
@@ -0,0 +1,68 @@
+package dev.jbang.spi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+import dev.jbang.Cache;
+import dev.jbang.Settings;
+
+public class TestIntegrationIndex extends BaseTest {
+
+	@BeforeEach
+	void clearIndex() {
+		IntegrationIndex.clearCache();
+	}
+
+	@Test
+	void testFindIntegrations() throws IOException {
+		Path plain = createJar("plain.jar", null);
+		Path integ = createJar("integ.jar", "# comment\ndev.jbang.test.Integ # trailing\n\n");
+		assertThat(IntegrationIndex.findIntegrationClassNames(Arrays.asList(plain)), is(empty()));
+		assertThat(IntegrationIndex.findIntegrationClassNames(Arrays.asList(plain, integ)),
+				contains("dev.jbang.test.Integ"));
+		assertThat(Files.isRegularFile(
+				Settings.getCacheDir(Cache.CacheClass.integrations).resolve(IntegrationIndex.INDEX_JSON)), is(true));
+	}
+
+	@Test
+	void testIndexRevalidates() throws IOException {
+		Path jar = createJar("changing.jar", null);
+		assertThat(IntegrationIndex.findIntegrationClassNames(Arrays.asList(jar)), is(empty()));
+		Files.delete(jar);
+		createJar("changing.jar", "dev.jbang.test.Other\n");
+		// Make sure the modification time is different
+		Files.setLastModifiedTime(jar, FileTime.fromMillis(1000));
+		IntegrationIndex.clearCache();
+		assertThat(IntegrationIndex.findIntegrationClassNames(Arrays.asList(jar)), contains("dev.jbang.test.Other"));
+	}
+
+	private Path createJar(String name, String integrationList) throws IOException {
+		Path jar = jbangTempDir.resolve(name);
+		try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(jar))) {
+			zos.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+			zos.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+			zos.closeEntry();
+			if (integrationList != null) {
+				zos.putNextEntry(new ZipEntry(IntegrationIndex.INTEGRATION_LIST));
+				zos.write(integrationList.getBytes(StandardCharsets.UTF_8));
+				zos.closeEntry();
+			}
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,102 @@
+package dev.jbang.spi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+import dev.jbang.cli.ExitException;
+import dev.jbang.util.JavaUtil;
+import dev.jbang.util.Util;
+
+public class TestIntegrationManager extends BaseTest {
+
+	@Test
+	void testRunIntegrationsExternal() throws Exception {
+		Path classes = jbangTempDir.resolve("classes");
+		Files.createDirectories(classes);
+
+		IntegrationResult result = IntegrationManager.runIntegrationsExternal(input(classes),
+				Arrays.asList(MainClassIntegration.class.getName(), JavaArgsIntegration.class.getName()),
+				javaVersion());
+
+		// Both ran in the same JVM, which isn't this one
+		String jvm = Util.readString(classes.resolve("main.txt"));
+		assertThat(Util.readString(classes.resolve("args.txt")), equalTo(jvm));
+		assertThat(jvm, not(equalTo(currentJvm())));
+		// The merged result made it back
+		assertThat(result.mainClass, equalTo("main.Class"));
+		assertThat(result.javaArgs, contains("-Djvm=" + jvm));
+	}
+
+	@Test
+	void testRunIntegrationsExternalFailure() throws Exception {
+		Path classes = jbangTempDir.resolve("classes");
+		Files.createDirectories(classes);
+
+		ExitException e = assertThrows(ExitException.class,
+				() -> IntegrationManager.runIntegrationsExternal(input(classes),
+						Arrays.asList(MainClassIntegration.class.getName(), FailingIntegration.class.getName()),
+						javaVersion()));
+		assertThat(e.getMessage(), containsString("Issue running postBuild()"));
+	}
+
+	private static IntegrationInput input(Path classes) {
+		return new IntegrationInput(null, null, classes, null, new LinkedHashMap<>(), new LinkedHashMap<>(),
+				Collections.emptyList(), false);
+	}
+
+	private static String javaVersion() {
+		return String.valueOf(JavaUtil.determineJavaVersion());
+	}
+
+	private static String currentJvm() {
+		return ManagementFactory.getRuntimeMXBean().getName();
+	}
+
+	public static class MainClassIntegration {
+		public static Map<String, Object> postBuild(Path classes, Path pom, List<Map.Entry<String, String>> repos,
+				List<Map.Entry<String, Path>> deps, List<String> comments, boolean nativeImage) throws IOException {
+			Map<String, Object> result = new HashMap<>();
+			result.put(IntegrationManager.FILES,
+					Collections.singletonMap("main.txt", currentJvm().getBytes(StandardCharsets.UTF_8)));
+			result.put(IntegrationManager.MAIN_CLASS, "main.Class");
+			return result;
+		}
+	}
+
+	public static class JavaArgsIntegration {
+		public static Map<String, Object> postBuild(Path classes, Path pom, List<Map.Entry<String, String>> repos,
+				List<Map.Entry<String, Path>> deps, List<String> comments, boolean nativeImage) throws IOException {
+			Map<String, Object> result = new HashMap<>();
+			result.put(IntegrationManager.FILES,
+					Collections.singletonMap("args.txt", currentJvm().getBytes(StandardCharsets.UTF_8)));
+			result.put(IntegrationManager.JAVA_ARGS, Collections.singletonList("-Djvm=" + currentJvm()));
+			return result;
+		}
+	}
+
+	public static class FailingIntegration {
+		public static Map<String, Object> postBuild(Path classes, Path pom, List<Map.Entry<String, String>> repos,
+				List<Map.Entry<String, Path>> deps, List<String> comments, boolean nativeImage) {
+			throw new IllegalStateException("failing integration");
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package dev.jbang.spi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+import dev.jbang.util.Util;
+
+public class TestIntegrationResultCache extends BaseTest {
+
+	@Test
+	void testStoreAndReplay() throws IOException {
+		Path classes = jbangTempDir.resolve("classes");
+		Files.createDirectories(classes.resolve("pkg"));
+		Util.writeString(classes.resolve("pkg/Main.class"), "main");
+		IntegrationInput input = input(classes);
+		List<String> integrations = Collections.singletonList("test.Integration");
+
+		IntegrationResultCache cache = IntegrationResultCache.forInput(input, integrations, null,
+				Collections.emptyMap());
+		assertThat(cache.replay(), nullValue());
+
+		// Simulate an integration generating a file
+		Files.createDirectories(classes.resolve("generated"));
+		Util.writeString(classes.resolve("generated/config.txt"), "generated");
+		cache.store(new IntegrationResult(null, "pkg.Main", Arrays.asList("-Dfoo=bar")));
+
+		// A new build with identical classes
+		Util.deletePath(classes, true);
+		Files.createDirectories(classes.resolve("pkg"));
+		Util.writeString(classes.resolve("pkg/Main.class"), "main");
+		cache = IntegrationResultCache.forInput(input, integrations, null, Collections.emptyMap());
+		IntegrationResult result = cache.replay();
+		assertThat(result, notNullValue());
+		assertThat(result.mainClass, equalTo("pkg.Main"));
+		assertThat(result.javaArgs, contains("-Dfoo=bar"));
+		assertThat(Util.readString(classes.resolve("generated/config.txt")), equalTo("generated"));
+
+		// Changed classes don't replay
+		Util.writeString(classes.resolve("pkg/Main.class"), "changed");
+		cache = IntegrationResultCache.forInput(input, integrations, null, Collections.emptyMap());
+		assertThat(cache.replay(), nullValue());
+	}
+
+	@Test
+	void testNativeImageNotCached() throws IOException {
+		Path classes = jbangTempDir.resolve("classes");
+		Files.createDirectories(classes);
+		IntegrationInput input = input(classes);
+		List<String> integrations = Collections.singletonList("test.Integration");
+
+		IntegrationResultCache cache = IntegrationResultCache.forInput(input, integrations, null,
+				Collections.emptyMap());
+		cache.store(new IntegrationResult(jbangTempDir.resolve("image"), null, null));
+		cache = IntegrationResultCache.forInput(input, integrations, null, Collections.emptyMap());
+		assertThat(cache.replay(), is(nullValue()));
+	}
+
+	@Test
+	void testOldResultsEvicted() throws IOException {
+		Path classes = jbangTempDir.resolve("classes");
+		Files.createDirectories(classes);
+		Path otherClasses = jbangTempDir.resolve("other");
+		Files.createDirectories(otherClasses);
+		List<String> integrations = Collections.singletonList("test.Integration");
+
+		IntegrationResultCache other = IntegrationResultCache.forInput(input(otherClasses), integrations, null,
+				Collections.emptyMap());
+		other.store(new IntegrationResult(null, "pkg.Other", null));
+
+		// Each build with different properties adds a result for the same classes
+		int count = IntegrationResultCache.MAX_RESULTS_PER_PROJECT + 1;
+		long now = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			IntegrationResultCache cache = cache(classes, integrations, i);
+			cache.store(new IntegrationResult(null, "pkg.Main" + i, null));
+			Files.setLastModifiedTime(cache.getCacheDir().resolve("result.json"),
+					FileTime.fromMillis(now - TimeUnit.MINUTES.toMillis(count - i)));
+		}
+
+		// Only the oldest one is gone
+		assertThat(cache(classes, integrations, 0).replay(), nullValue());
+		for (int i = 1; i < count; i++) {
+			assertThat(cache(classes, integrations, i).replay().mainClass, equalTo("pkg.Main" + i));
+		}
+		// Results of other classes folders are kept
+		assertThat(IntegrationResultCache	.forInput(input(otherClasses), integrations, null, Collections.emptyMap())
+											.replay(),
+				notNullValue());
+	}
+
+	private static IntegrationResultCache cache(Path classes, List<String> integrations, int build)
+			throws IOException {
+		return IntegrationResultCache.forInput(input(classes), integrations, null,
+				Collections.singletonMap("build", String.valueOf(build)));
+	}
+
+	private static IntegrationInput input(Path classes) {
+		return new IntegrationInput(null, null, classes, null, new LinkedHashMap<>(), new LinkedHashMap<>(),
+				Collections.emptyList(), false);
+	}
+}
@@ -0,0 +1,75 @@
+package dev.jbang.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+import dev.jbang.Configuration;
+import dev.jbang.Settings;
+import dev.jbang.catalog.Catalog;
+
+public class TestDirectoryScan extends BaseTest {
+
+	@Test
+	void testFindAll() throws IOException {
+		Path sub = Files.createDirectories(cwdDir.resolve("a").resolve("b"));
+		Path dot = Files.createDirectories(cwdDir.resolve("a").resolve(Settings.JBANG_DOT_DIR));
+		Path cat1 = Files.createFile(sub.resolve(Catalog.JBANG_CATALOG_JSON));
+		Path cat2 = Files.createFile(dot.resolve(Catalog.JBANG_CATALOG_JSON));
+		Path cat3 = Files.createFile(cwdDir.resolve(Catalog.JBANG_CATALOG_JSON));
+		Path cfg = Files.createFile(dot.resolve(Configuration.JBANG_CONFIG_PROPS));
+		makeOld(sub, dot, dot.getParent(), cwdDir);
+
+		assertThat(DirectoryScan.findAll(sub, Catalog.JBANG_CATALOG_JSON, Settings.LOCAL_FILES), contains(cat1, cat2, cat3));
+		assertThat(DirectoryScan.findAll(sub, Configuration.JBANG_CONFIG_PROPS, Settings.LOCAL_FILES), contains(cfg));
+	}
+
+	@Test
+	void testCachedScanIsInvalidated() throws IOException {
+		Path sub = Files.createDirectories(cwdDir.resolve("a"));
+		Path cat1 = Files.createFile(cwdDir.resolve(Catalog.JBANG_CATALOG_JSON));
+		makeOld(sub, cwdDir);
+
+		assertThat(DirectoryScan.findAll(sub, Catalog.JBANG_CATALOG_JSON, Settings.LOCAL_FILES), contains(cat1));
+
+		DirectoryScan.clearCache();
+		Path cat2 = Files.createFile(sub.resolve(Catalog.JBANG_CATALOG_JSON));
+		Files.setLastModifiedTime(sub, FileTime.fromMillis(System.currentTimeMillis() - 30000));
+		assertThat(DirectoryScan.findAll(sub, Catalog.JBANG_CATALOG_JSON, Settings.LOCAL_FILES), contains(cat2, cat1));
+	}
+
+	@Test
+	void testFindAllScanNames() throws IOException {
+		Path sub = Files.createDirectories(cwdDir.resolve("a"));
+		Path foo = Files.createFile(sub.resolve("foo.txt"));
+		Path bar = Files.createFile(cwdDir.resolve("bar.txt"));
+		makeOld(sub, cwdDir);
+
+		List<String> names = Arrays.asList("foo.txt", "bar.txt");
+		assertThat(DirectoryScan.findAll(sub, "foo.txt", names), contains(foo));
+		assertThat(DirectoryScan.findAll(sub, "bar.txt", names), contains(bar));
+		// Names that aren't part of the scan are found as well
+		assertThat(DirectoryScan.findAll(sub, "bar.txt", Collections.singletonList("foo.txt")), contains(bar));
+		// Scans for other names don't see these files
+		assertThat(DirectoryScan.findAll(sub, Catalog.JBANG_CATALOG_JSON, Settings.LOCAL_FILES), empty());
+	}
+
+	private void makeOld(Path... dirs) throws IOException {
+		// Recently modified folders are never cached
+		FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+		for (Path dir : dirs) {
+			Files.setLastModifiedTime(dir, old);
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package dev.jbang.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+
+public class TestJarMerger extends BaseTest {
+
+	@Test
+	void testMerge() throws IOException {
+		Manifest mf = new Manifest();
+		mf.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		mf.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "app.Main");
+		mf.getMainAttributes().put(Attributes.Name.CLASS_PATH, "lib/dep.jar");
+		Path app = createJar("app.jar", mf, false,
+				"app/Main.class", "main",
+				"dup.txt", "from app",
+				"META-INF/services/foo.Service", "app.FooImpl");
+		Path dep = createJar("dep.jar", null, true,
+				"dep/Dep.class", "dep",
+				"dup.txt", "from dep",
+				"module-info.class", "module",
+				"META-INF/DEP.SF", "signature",
+				"META-INF/DEP.RSA", "signature",
+				"META-INF/services/foo.Service", "dep.FooImpl");
+
+		Path target = jbangTempDir.resolve("fat.jar");
+		JarMerger.merge(target, Arrays.asList(app, dep));
+
+		try (JarFile jar = new JarFile(target.toFile())) {
+			Attributes attrs = jar.getManifest().getMainAttributes();
+			assertThat(attrs.getValue(Attributes.Name.MAIN_CLASS), equalTo("app.Main"));
+			assertThat(attrs.getValue(Attributes.Name.CLASS_PATH), nullValue());
+			assertThat(read(jar, "app/Main.class"), equalTo("main"));
+			assertThat(read(jar, "dep/Dep.class"), equalTo("dep"));
+			assertThat(read(jar, "dup.txt"), equalTo("from app"));
+			assertThat(read(jar, "META-INF/services/foo.Service"), equalTo("app.FooImpl\ndep.FooImpl\n"));
+			assertThat(jar.getEntry("module-info.class"), nullValue());
+			assertThat(jar.getEntry("META-INF/DEP.SF"), nullValue());
+			assertThat(jar.getEntry("META-INF/DEP.RSA"), nullValue());
+			assertThat(jar.getEntry("META-INF/"), notNullValue());
+		}
+	}
+
+	private Path createJar(String name, Manifest mf, boolean stored, String... entries) throws IOException {
+		Path jar = jbangTempDir.resolve(name);
+		try (OutputStream os = Files.newOutputStream(jar);
+				JarOutputStream jos = mf != null ? new JarOutputStream(os, mf) : new JarOutputStream(os)) {
+			if (stored) {
+				jos.setMethod(JarOutputStream.STORED);
+			}
+			for (int i = 0; i < entries.length; i += 2) {
+				byte[] content = entries[i + 1].getBytes(StandardCharsets.UTF_8);
+				ZipEntry entry = new ZipEntry(entries[i]);
+				if (stored) {
+					CRC32 crc = new CRC32();
+					crc.update(content);
+					entry.setSize(content.length);
+					entry.setCrc(crc.getValue());
+				}
+				jos.putNextEntry(entry);
+				jos.write(content);
+				jos.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+	private static String read(JarFile jar, String name) throws IOException {
+		try (InputStream in = jar.getInputStream(jar.getEntry(name))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int b;
+			while ((b = in.read()) != -1) {
+				out.write(b);
+			}
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package dev.jbang.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+
+public class TestJdkInfo extends BaseTest {
+
+	@Test
+	void testFromReleaseFile() throws IOException {
+		Path home = jbangTempDir.resolve("jdk");
+		Files.createDirectories(home);
+		Util.writeString(home.resolve("release"),
+				"IMPLEMENTOR=\"Eclipse Adoptium\"\nJAVA_VERSION=\"17.0.2\"\nOS_ARCH=\"x86_64\"\n");
+
+		Optional<JdkInfo> info = JdkInfo.fromReleaseFile(home);
+
+		assertTrue(info.isPresent());
+		assertThat(info.get().version, equalTo("17.0.2"));
+		assertThat(info.get().vendor, equalTo("Eclipse Adoptium"));
+		assertThat(info.get().arch, equalTo("x86_64"));
+		assertThat(info.get().getMajorVersion(), equalTo(17));
+	}
+
+	@Test
+	void testForJavaCmdUsesReleaseFile() throws IOException {
+		Path home = jbangTempDir.resolve("jdk8");
+		Files.createDirectories(home.resolve("bin"));
+		Util.writeString(home.resolve("release"), "JAVA_VERSION=\"1.8.0_302\"\n");
+		Path java = Files.createFile(home.resolve("bin").resolve("java"));
+
+		Optional<JdkInfo> info = JdkInfo.forJavaCmd(java);
+
+		assertTrue(info.isPresent());
+		assertThat(info.get().getMajorVersion(), equalTo(8));
+	}
+
+	@Test
+	void testForJavaCmdMissing() {
+		assertFalse(JdkInfo.forJavaCmd(jbangTempDir.resolve("nope").resolve("bin").resolve("java")).isPresent());
+	}
+}
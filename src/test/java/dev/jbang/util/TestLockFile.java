@@ -0,0 +1,62 @@
+package dev.jbang.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.Test;
+
+import dev.jbang.BaseTest;
+
+public class TestLockFile extends BaseTest {
+
+	@Test
+	void testUncontended() {
+		Path lockPath = jbangTempDir.resolve("locks").resolve("test.lock");
+		try (LockFile lock = LockFile.acquire(lockPath)) {
+			assertFalse(lock.isContended());
+			assertTrue(Files.exists(lockPath));
+		}
+	}
+
+	@Test
+	void testContended() throws ExecutionException, InterruptedException {
+		Path lockPath = jbangTempDir.resolve("test.lock");
+		CompletableFuture<Boolean> other;
+		try (LockFile lock = LockFile.acquire(lockPath)) {
+			other = CompletableFuture.supplyAsync(() -> {
+				try (LockFile lock2 = LockFile.acquire(lockPath)) {
+					return lock2.isContended();
+				}
+			});
+			Thread.sleep(200);
+			assertFalse(other.isDone());
+		}
+		assertTrue(other.get());
+	}
+
+	@Test
+	void testContendedByOtherProcess() throws Exception {
+		// Another process holds the OS level lock, not just the one in this JVM
+		Path lockPath = jbangTempDir.resolve("test.lock");
+		CompletableFuture<Boolean> other;
+		try (FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock lock = channel.lock()) {
+			other = CompletableFuture.supplyAsync(() -> {
+				try (LockFile lock2 = LockFile.acquire(lockPath)) {
+					return lock2.isContended();
+				}
+			});
+			Thread.sleep(200);
+			assertFalse(other.isDone());
+		}
+		assertTrue(other.get());
+	}
+}
@@ -0,0 +1,148 @@
+package dev.jbang.util;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItems;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import dev.jbang.BaseTest;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+public class TestOciImageWriter extends BaseTest {
+
+	@Test
+	void testWrite() throws IOException {
+		Path tree = jbangTempDir.resolve("tree");
+		Files.createDirectories(tree.resolve("bin"));
+		Files.createDirectories(tree.resolve("lib"));
+		Util.writeString(tree.resolve("bin/tool"), "tool");
+		Util.writeString(tree.resolve("lib/data.txt"), "data");
+
+		Path target = jbangTempDir.resolve("image.tar");
+		Path target2 = jbangTempDir.resolve("image2.tar");
+		for (Path t : Arrays.asList(target, target2)) {
+			try (OciImageWriter image = new OciImageWriter("amd64")) {
+				image.addLayer("tree", layer -> layer.addTree("/opt/tree", tree));
+				byte[] content = "classes".getBytes(StandardCharsets.UTF_8);
+				image.addLayer("classes", layer -> layer.addFile("/app/classes/Main.class",
+						new ByteArrayInputStream(content), content.length));
+				image.write(t, "test:1.0", Arrays.asList("/opt/tree/bin/tool", "arg"),
+						Arrays.asList("PATH=/opt/tree/bin"), "/app");
+			}
+		}
+		// Nothing in the image depends on when it was created
+		assertThat(Files.readAllBytes(target), equalTo(Files.readAllBytes(target2)));
+
+		Map<String, byte[]> files = readTar(target);
+		assertThat(files.keySet(), hasItems("oci-layout", "index.json", "manifest.json"));
+		JsonObject index = parse(files.get("index.json"));
+		JsonObject desc = index.getAsJsonArray("manifests").get(0).getAsJsonObject();
+		assertThat(desc.getAsJsonObject("annotations").get("io.containerd.image.name").getAsString(),
+				equalTo("test:1.0"));
+		JsonObject manifest = parse(files.get(blobPath(desc.get("digest").getAsString())));
+		JsonArray layers = manifest.getAsJsonArray("layers");
+		assertThat(layers.size(), equalTo(2));
+		JsonObject config = parse(
+				files.get(blobPath(manifest.getAsJsonObject("config").get("digest").getAsString())));
+		assertThat(config.getAsJsonObject("rootfs").getAsJsonArray("diff_ids").size(), equalTo(2));
+		assertThat(config.getAsJsonObject("config").getAsJsonArray("Entrypoint").get(1).getAsString(),
+				equalTo("arg"));
+		for (int i = 0; i < layers.size(); i++) {
+			String digest = layers.get(i).getAsJsonObject().get("digest").getAsString();
+			assertThat(files.containsKey(blobPath(digest)), equalTo(true));
+		}
+	}
+
+	@Test
+	@DisabledOnOs(OS.WINDOWS)
+	void testSymbolicLinks() throws IOException {
+		Path outside = jbangTempDir.resolve("etc");
+		Files.createDirectories(outside.resolve("conf"));
+		Util.writeString(outside.resolve("jvm.cfg"), "cfg");
+		Util.writeString(outside.resolve("conf/security.properties"), "security");
+		Path tree = jbangTempDir.resolve("tree");
+		Files.createDirectories(tree.resolve("lib"));
+		Util.writeString(tree.resolve("lib/data.txt"), "data");
+		Files.createSymbolicLink(tree.resolve("lib/jvm.cfg"), outside.resolve("jvm.cfg").toAbsolutePath());
+		Files.createSymbolicLink(tree.resolve("conf"), tree.relativize(outside.resolve("conf")));
+		Files.createSymbolicLink(tree.resolve("lib/link.txt"), Paths.get("data.txt"));
+
+		Path target = jbangTempDir.resolve("image.tar");
+		try (OciImageWriter image = new OciImageWriter("amd64")) {
+			image.addLayer("tree", layer -> layer.addTree("/opt/tree", tree));
+			image.write(target, "test:1.0", Arrays.asList("/opt/tree/bin/tool"), Arrays.asList(), "/");
+		}
+
+		Map<String, byte[]> files = readTar(target);
+		JsonObject index = parse(files.get("index.json"));
+		JsonObject desc = index.getAsJsonArray("manifests").get(0).getAsJsonObject();
+		JsonObject manifest = parse(files.get(blobPath(desc.get("digest").getAsString())));
+		String digest = manifest.getAsJsonArray("layers").get(0).getAsJsonObject().get("digest").getAsString();
+		Map<String, TarArchiveEntry> entries = new HashMap<>();
+		Map<String, byte[]> layer = readTar(new GZIPInputStream(new ByteArrayInputStream(files.get(blobPath(digest)))),
+				entries);
+		// Links pointing outside the tree are replaced by what they point to
+		assertThat(entries.get("opt/tree/lib/jvm.cfg").isSymbolicLink(), equalTo(false));
+		assertThat(new String(layer.get("opt/tree/lib/jvm.cfg"), StandardCharsets.UTF_8), equalTo("cfg"));
+		assertThat(entries.get("opt/tree/conf/").isDirectory(), equalTo(true));
+		assertThat(new String(layer.get("opt/tree/conf/security.properties"), StandardCharsets.UTF_8),
+				equalTo("security"));
+		// Relative links inside the tree are kept
+		assertThat(entries.get("opt/tree/lib/link.txt").isSymbolicLink(), equalTo(true));
+		assertThat(entries.get("opt/tree/lib/link.txt").getLinkName(), equalTo("data.txt"));
+	}
+
+	private static Map<String, byte[]> readTar(Path tar) throws IOException {
+		try (InputStream is = Files.newInputStream(tar)) {
+			return readTar(is, new HashMap<>());
+		}
+	}
+
+	private static Map<String, byte[]> readTar(InputStream is, Map<String, TarArchiveEntry> entries)
+			throws IOException {
+		Map<String, byte[]> files = new HashMap<>();
+		try (TarArchiveInputStream tis = new TarArchiveInputStream(is)) {
+			TarArchiveEntry entry;
+			while ((entry = tis.getNextTarEntry()) != null) {
+				entries.put(entry.getName(), entry);
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buf = new byte[8192];
+				int n;
+				while ((n = tis.read(buf)) != -1) {
+					out.write(buf, 0, n);
+				}
+				files.put(entry.getName(), out.toByteArray());
+			}
+		}
+		return files;
+	}
+
+	private static JsonObject parse(byte[] json) {
+		return JsonParser.parseString(new String(json, StandardCharsets.UTF_8)).getAsJsonObject();
+	}
+
+	private static String blobPath(String digest) {
+		return "blobs/" + digest.replace(':', '/');
+	}
+}
@@ -9,8 +9,15 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.Test;
 
@@ -136,4 +143,49 @@ public class TestUtil extends BaseTest {
 		// assertThat(Util.getDispositionFilename("inline;
 		// filename*=iso-fake-1''dummy"), equalTo(""));
 	}
+
+	@Test
+	void testDownloadAndCacheFileWithMaxAge() throws IOException {
+		Path src = cwdDir.resolve("cat.json");
+		Util.writeString(src, "one");
+		String url = src.toUri().toString();
+
+		Path cached = Util.downloadAndCacheFile(url, 3600);
+		assertThat(Util.readString(cached), equalTo("one"));
+
+		Util.writeString(src, "two");
+		cached = Util.downloadAndCacheFile(url, 3600);
+		assertThat(Util.readString(cached), equalTo("one"));
+
+		// Make the cached copy older than the max age
+		Path meta = cached.getParent().resolveSibling(cached.getParent().getFileName() + ".properties");
+		Files.setLastModifiedTime(meta, FileTime.fromMillis(System.currentTimeMillis() - 7200 * 1000));
+		cached = Util.downloadAndCacheFile(url, 3600);
+		assertThat(Util.readString(cached), equalTo("two"));
+	}
+
+	@Test
+	void testDownloadAndCacheFileWaitsForOtherProcess() throws Exception {
+		String url = "https://example.invalid/file.txt";
+		Path urlCache = Util.getUrlCache(url);
+		Path lockFile = urlCache.resolveSibling(urlCache.getFileName() + ".lock");
+		Files.createDirectories(lockFile.getParent());
+		CompletableFuture<Path> downloaded;
+		try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				FileLock lock = channel.lock()) {
+			downloaded = CompletableFuture.supplyAsync(() -> {
+				try {
+					return Util.downloadAndCacheFile(url);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			Thread.sleep(200);
+			assertFalse(downloaded.isDone());
+			Files.createDirectories(urlCache);
+			Util.writeString(urlCache.resolve("file.txt"), "downloaded by another process");
+		}
+		// The file gets used instead of being downloaded again
+		assertThat(downloaded.get(), equalTo(urlCache.resolve("file.txt")));
+	}
 }